@@ -55,6 +55,8 @@ public class AppProperties {
     private List<String> panSouFilterExclude;
     private String systemId;
     private int tgTimeout = 5000;
+    private int tgEnoughResults;
+    private String outboundRateLimits;
     private int tempShareExpiration = 72;
     private int validateSharesInterval = 4;
     private Set<String> formats;
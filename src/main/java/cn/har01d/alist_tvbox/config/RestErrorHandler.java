@@ -2,6 +2,7 @@ package cn.har01d.alist_tvbox.config;
 
 import cn.har01d.alist_tvbox.exception.BadRequestException;
 import cn.har01d.alist_tvbox.exception.NotFoundException;
+import cn.har01d.alist_tvbox.exception.ServiceUnavailableException;
 import cn.har01d.alist_tvbox.exception.UserUnauthorizedException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
@@ -50,6 +51,14 @@ public class RestErrorHandler extends ResponseEntityExceptionHandler {
         return handleExceptionInternal(ex, body, headers, status, request);
     }
 
+    @ExceptionHandler({ServiceUnavailableException.class})
+    public ResponseEntity<Object> handleServiceUnavailableException(Exception ex, WebRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        HttpStatusCode status = HttpStatusCode.valueOf(503);
+        ProblemDetail body = ProblemDetail.forStatusAndDetail(status, ex.getMessage());
+        return handleExceptionInternal(ex, body, headers, status, request);
+    }
+
     /**
      * Catch-all exception handler for unhandled exceptions.
      * Logs full exception details for debugging.
@@ -1,6 +1,7 @@
 package cn.har01d.alist_tvbox.dto.sync;
 
 import cn.har01d.alist_tvbox.entity.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Data;
 import java.util.HashMap;
@@ -11,6 +12,7 @@ import java.util.Map;
 public class SyncData {
     private String appVersion;  // 应用版本号
     private Map<String, Object> modules = new HashMap<>();
+    private Map<String, List<String>> deleted;  // 增量同步时对方已删除的记录主键，为 null 表示全量数据
 
     // ObjectMapper 用于类型转换
     private static final ObjectMapper MAPPER = new ObjectMapper();
@@ -65,47 +67,57 @@ public class SyncData {
     }
 
     // 类型化的 getter 方法，处理 JSON 反序列化后的类型转换
+    // 数据只通过 modules 序列化，避免每个模块在请求体中重复一份
     @SuppressWarnings("unchecked")
+    @JsonIgnore
     public List<Site> getSites() {
         return convertList(modules.get("sites"), Site.class);
     }
 
     @SuppressWarnings("unchecked")
+    @JsonIgnore
     public List<Share> getShares() {
         return convertList(modules.get("shares"), Share.class);
     }
 
     @SuppressWarnings("unchecked")
+    @JsonIgnore
     public List<Account> getAccounts() {
         return convertList(modules.get("accounts"), Account.class);
     }
 
     @SuppressWarnings("unchecked")
+    @JsonIgnore
     public List<DriverAccount> getDriverAccounts() {
         return convertList(modules.get("driverAccounts"), DriverAccount.class);
     }
 
     @SuppressWarnings("unchecked")
+    @JsonIgnore
     public List<PikPakAccount> getPikpakAccounts() {
         return convertList(modules.get("pikpakAccounts"), PikPakAccount.class);
     }
 
     @SuppressWarnings("unchecked")
+    @JsonIgnore
     public List<Subscription> getSubscriptions() {
         return convertList(modules.get("subscriptions"), Subscription.class);
     }
 
     @SuppressWarnings("unchecked")
+    @JsonIgnore
     public List<Plugin> getPlugins() {
         return convertList(modules.get("plugins"), Plugin.class);
     }
 
     @SuppressWarnings("unchecked")
+    @JsonIgnore
     public List<PluginFilter> getPluginFilters() {
         return convertList(modules.get("pluginFilters"), PluginFilter.class);
     }
 
     @SuppressWarnings("unchecked")
+    @JsonIgnore
     public Map<String, String> getSettings() {
         Object obj = modules.get("settings");
         if (obj == null) {
@@ -118,16 +130,19 @@ public class SyncData {
     }
 
     @SuppressWarnings("unchecked")
+    @JsonIgnore
     public List<Jellyfin> getJellyfins() {
         return convertList(modules.get("jellyfins"), Jellyfin.class);
     }
 
     @SuppressWarnings("unchecked")
+    @JsonIgnore
     public List<Emby> getEmbys() {
         return convertList(modules.get("embys"), Emby.class);
     }
 
     @SuppressWarnings("unchecked")
+    @JsonIgnore
     public List<Feiniu> getFenius() {
         return convertList(modules.get("fenius"), Feiniu.class);
     }
@@ -0,0 +1,15 @@
+package cn.har01d.alist_tvbox.dto.sync;
+
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 增量同步清单：每个模块中各条记录的业务主键和内容指纹
+ */
+@Data
+public class SyncManifest {
+    private String appVersion;  // 应用版本号
+    private Map<String, Map<String, String>> modules = new HashMap<>();  // 模块 -> (主键 -> 指纹)
+}
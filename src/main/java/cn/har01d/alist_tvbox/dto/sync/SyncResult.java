@@ -9,5 +9,6 @@ public class SyncResult {
     private int imported = 0;    // 新增数量
     private int updated = 0;     // 更新数量
     private int failed = 0;      // 失败数量
+    private int deleted = 0;     // 删除数量（增量同步的删除标记）
     private List<String> errors = new ArrayList<>();  // 错误信息列表
 }
@@ -2,10 +2,13 @@ package cn.har01d.alist_tvbox.entity;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.TableGenerator;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -20,6 +23,7 @@ import java.time.Instant;
 @ToString
 @RequiredArgsConstructor
 @Entity
+@EntityListeners(MetaListener.class)
 @TableGenerator(name = "tableGenerator", table = "id_generator", pkColumnName = "entity_name", valueColumnName = "next_id", allocationSize = 1)
 @SQLRestriction("disabled = false")
 public class Meta {
@@ -44,4 +48,13 @@ public class Meta {
     @Column(columnDefinition = "BOOLEAN DEFAULT false")
     private boolean disabled;
     private Instant time = Instant.now();
+
+    @PrePersist
+    @PreUpdate
+    void fillTime() {
+        // 按时间的游标翻页不能比较空值
+        if (time == null) {
+            time = Instant.now();
+        }
+    }
 }
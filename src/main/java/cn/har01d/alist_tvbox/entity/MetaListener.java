@@ -0,0 +1,68 @@
+package cn.har01d.alist_tvbox.entity;
+
+import cn.har01d.alist_tvbox.service.MetaListCache;
+import cn.har01d.alist_tvbox.service.MetaSearchIndex;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 同步 Meta 的写入到搜索索引和列表缓存
+ * 实体回调在事务提交前触发，有事务时等提交后再更新，回滚的写入不会进入索引和缓存；没有事务时立即更新
+ */
+public class MetaListener {
+    private final ObjectProvider<MetaSearchIndex> searchIndex;
+    private final ObjectProvider<MetaListCache> listCache;
+
+    public MetaListener(ObjectProvider<MetaSearchIndex> searchIndex, ObjectProvider<MetaListCache> listCache) {
+        this.searchIndex = searchIndex;
+        this.listCache = listCache;
+    }
+
+    @PostPersist
+    public void onPersist(Meta meta) {
+        Integer id = meta.getId();
+        String path = meta.getPath();
+        String name = meta.getName();
+        afterCommit(() -> {
+            searchIndex.ifAvailable(index -> index.onCreated(id, path, name));
+            listCache.ifAvailable(MetaListCache::invalidate);
+        });
+    }
+
+    @PostUpdate
+    public void onUpdate(Meta meta) {
+        Integer id = meta.getId();
+        String path = meta.getPath();
+        String name = meta.getName();
+        afterCommit(() -> {
+            searchIndex.ifAvailable(index -> index.add(id, path, name));
+            listCache.ifAvailable(MetaListCache::invalidate);
+        });
+    }
+
+    @PostRemove
+    public void onRemove(Meta meta) {
+        Integer id = meta.getId();
+        afterCommit(() -> {
+            searchIndex.ifAvailable(index -> index.onRemoved(id));
+            listCache.ifAvailable(MetaListCache::invalidate);
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
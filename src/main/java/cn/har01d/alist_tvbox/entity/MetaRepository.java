@@ -3,13 +3,24 @@ package cn.har01d.alist_tvbox.entity;
 import jakarta.transaction.Transactional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 
-public interface MetaRepository extends JpaRepository<Meta, Integer> {
+public interface MetaRepository extends JpaRepository<Meta, Integer>, JpaSpecificationExecutor<Meta> {
+    /**
+     * 列表和搜索分页时一起取出关联的豆瓣和TMDB数据，避免每行单独查询
+     */
+    @Override
+    @EntityGraph(attributePaths = {"movie", "tmdb"})
+    Page<Meta> findAll(Specification<Meta> spec, Pageable pageable);
+
     @Modifying
     @Transactional
     @Query("UPDATE Meta m SET m.disabled = true WHERE m.path LIKE ?1%")
@@ -32,6 +43,8 @@ public interface MetaRepository extends JpaRepository<Meta, Integer> {
 
     Meta findByPath(String path);
 
+    List<Meta> findByPathIn(Collection<String> paths);
+
     List<Meta> findByTmdb(Tmdb tmdb);
 
     List<Meta> findByMovieNull();
@@ -42,29 +55,17 @@ public interface MetaRepository extends JpaRepository<Meta, Integer> {
 
     boolean existsByPath(String path);
 
-    boolean existsByPathStartsWith(String path);
-
-    Page<Meta> findByPathStartsWith(String prefix, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndYear(String prefix, Integer year, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndYearLessThan(String prefix, Integer year, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndScoreGreaterThanEqual(String prefix, Integer score, Pageable pageable);
+    boolean existsByTimeIsNull();
 
-    Page<Meta> findByPathStartsWithAndScoreGreaterThanEqualAndYear(String prefix, Integer score, Integer year, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndScoreGreaterThanEqualAndYearLessThan(String prefix, Integer score, Integer year, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndScoreLessThan(String prefix, Integer score, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndScoreLessThanAndYear(String prefix, Integer score, Integer year, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndScoreLessThanAndYearLessThan(String prefix, Integer score, Integer year, Pageable pageable);
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE meta SET time = TIMESTAMP '2000-01-01 00:00:00' WHERE time IS NULL", nativeQuery = true)
+    int fillMissingTime();
 
-    Page<Meta> findByPathStartsWithAndScoreIsNull(String prefix, Pageable pageable);
+    @Query("SELECT m.path FROM Meta m WHERE m.path IN ?1")
+    List<String> findPathsByPathIn(Collection<String> paths);
 
-    Page<Meta> findByPathStartsWithAndScoreIsNullAndYear(String prefix, Integer year, Pageable pageable);
+    boolean existsByPathStartsWith(String path);
 
-    Page<Meta> findByPathStartsWithAndScoreIsNullAndYearLessThan(String prefix, Integer year, Pageable pageable);
+    Page<Meta> findByPathStartsWith(String prefix, Pageable pageable);
 }
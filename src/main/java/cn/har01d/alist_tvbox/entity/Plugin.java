@@ -15,6 +15,7 @@ import java.time.OffsetDateTime;
 @ToString
 @RequiredArgsConstructor
 @Entity
+@EntityListeners(PluginContentListener.class)
 @TableGenerator(name = "tableGenerator", table = "id_generator", pkColumnName = "entity_name", valueColumnName = "next_id", allocationSize = 1)
 @Table(indexes = {
     @Index(name = "idx_plugin_external_id", columnList = "external_id"),
@@ -0,0 +1,44 @@
+package cn.har01d.alist_tvbox.entity;
+
+import cn.har01d.alist_tvbox.service.PluginContentCache;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 插件或过滤器修改、删除后失效内容缓存，事务提交后再失效一次，避免并发读取把旧内容重新放回缓存
+ */
+public class PluginContentListener {
+    private final ObjectProvider<PluginContentCache> contentCache;
+
+    public PluginContentListener(ObjectProvider<PluginContentCache> contentCache) {
+        this.contentCache = contentCache;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        String key;
+        if (entity instanceof Plugin plugin) {
+            key = PluginContentCache.pluginKey(plugin.getId());
+        } else if (entity instanceof PluginFilter filter) {
+            key = PluginContentCache.filterKey(filter.getId());
+        } else {
+            return;
+        }
+
+        contentCache.ifAvailable(cache -> {
+            cache.invalidate(key);
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        cache.invalidate(key);
+                    }
+                });
+            }
+        });
+    }
+}
@@ -15,6 +15,7 @@ import java.time.OffsetDateTime;
 @ToString
 @RequiredArgsConstructor
 @Entity
+@EntityListeners(PluginContentListener.class)
 @Table(name = "plugin_filter", indexes = {
     @Index(name = "idx_plugin_filter_url", columnList = "url")
 })
@@ -3,13 +3,18 @@ package cn.har01d.alist_tvbox.entity;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface ShareRepository extends JpaRepository<Share, Integer> {
     boolean existsByPath(String path);
 
+    @Query("SELECT s.path FROM Share s WHERE s.path IN ?1")
+    List<String> findPathsByPathIn(Collection<String> paths);
+
     Share findByPath(String path);
 
     int countByType(int type);
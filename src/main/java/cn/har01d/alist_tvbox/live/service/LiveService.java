@@ -1,5 +1,6 @@
 package cn.har01d.alist_tvbox.live.service;
 
+import cn.har01d.alist_tvbox.service.CircuitBreaker;
 import cn.har01d.alist_tvbox.tvbox.Category;
 import cn.har01d.alist_tvbox.tvbox.CategoryList;
 import cn.har01d.alist_tvbox.tvbox.MovieDetail;
@@ -27,9 +28,11 @@ public class LiveService {
             .expireAfterWrite(Duration.ofMinutes(15))
             .build();
     private final HuyaService huyaService;
+    private final CircuitBreaker circuitBreaker;
 
-    public LiveService(HuyaService huyaService, DouyuService douyuService, BilibiliService bilibiliService, CcService ccService, KuaishouService kuaishouService, DouyinService douyinService) {
+    public LiveService(HuyaService huyaService, DouyuService douyuService, BilibiliService bilibiliService, CcService ccService, KuaishouService kuaishouService, DouyinService douyinService, CircuitBreaker circuitBreaker) {
         this.huyaService = huyaService;
+        this.circuitBreaker = circuitBreaker;
         platforms.add(huyaService);
         platforms.add(douyuService);
         platforms.add(bilibiliService);
@@ -39,7 +42,7 @@ public class LiveService {
     }
 
     public MovieList home() throws IOException {
-        return huyaService.home();
+        return circuitBreaker.call(key(huyaService), huyaService::home);
     }
 
     public CategoryList category() throws IOException {
@@ -66,7 +69,7 @@ public class LiveService {
             String[] parts = id.split("-");
             for (LivePlatform platform : platforms) {
                 if (platform.getType().equals(parts[0])) {
-                    return platform.list(id, ac, sort, pg);
+                    return circuitBreaker.call(key(platform), () -> platform.list(id, ac, sort, pg));
                 }
             }
         } else {
@@ -77,7 +80,7 @@ public class LiveService {
 
             for (LivePlatform platform : platforms) {
                 if (platform.getType().equals(id)) {
-                    var categoryList = platform.category();
+                    var categoryList = circuitBreaker.call(key(platform), platform::category);
                     List<MovieDetail> list = new ArrayList<>();
                     for (var item : categoryList.getCategories()) {
                         MovieDetail detail = new MovieDetail();
@@ -114,7 +117,7 @@ public class LiveService {
         String[] parts = tid.split("\\$");
         for (LivePlatform platform : platforms) {
             if (platform.getType().equals(parts[0])) {
-                result = platform.detail(tid, client);
+                result = circuitBreaker.call(key(platform), () -> platform.detail(tid, client));
                 if (!result.getList().isEmpty()) {
                     result.getList().get(0).setVod_director(platform.getName());
                 }
@@ -125,6 +128,10 @@ public class LiveService {
         return result;
     }
 
+    private static String key(LivePlatform platform) {
+        return "live:" + platform.getType();
+    }
+
     public Object play(String id) {
         Map<String, Object> result = new HashMap<>();
         //result.put("url", urls);
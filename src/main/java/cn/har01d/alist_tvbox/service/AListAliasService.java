@@ -21,6 +21,7 @@ public class AListAliasService {
     private final ShareService shareService;
     private final AListLocalService aListLocalService;
     private final JdbcTemplate alistJdbcTemplate;
+    private final TvBoxService tvBoxService;
 
     private int shareId = 6000;
 
@@ -28,12 +29,14 @@ public class AListAliasService {
                              AccountService accountService,
                              ShareService shareService,
                              AListLocalService aListLocalService,
-                             @Qualifier("alistJdbcTemplate") JdbcTemplate alistJdbcTemplate) {
+                             @Qualifier("alistJdbcTemplate") JdbcTemplate alistJdbcTemplate,
+                             TvBoxService tvBoxService) {
         this.aliasRepository = aliasRepository;
         this.accountService = accountService;
         this.shareService = shareService;
         this.aListLocalService = aListLocalService;
         this.alistJdbcTemplate = alistJdbcTemplate;
+        this.tvBoxService = tvBoxService;
     }
 
     @PostConstruct
@@ -53,6 +56,7 @@ public class AListAliasService {
             Alias storage = new Alias(alias);
             aListLocalService.saveStorage(storage);
             aliasRepository.save(alias);
+            tvBoxService.invalidateCategoryCache();
             shareService.enableStorage(alias.getId(), token);
         } catch (Exception e) {
             throw new BadRequestException(e);
@@ -67,6 +71,7 @@ public class AListAliasService {
         AListAlias alias = new AListAlias(dto);
         alias.setId(id);
         aliasRepository.save(alias);
+        tvBoxService.invalidateCategoryCache();
 
         String token = accountService.login();
         try {
@@ -105,6 +110,7 @@ public class AListAliasService {
     public void delete(Integer id) {
         aListLocalService.validateAListStatus();
         aliasRepository.deleteById(id);
+        tvBoxService.invalidateCategoryCache();
         String token = accountService.login();
         shareService.deleteStorage(id, token);
     }
@@ -27,6 +27,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
@@ -35,13 +36,16 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.SQLException;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static cn.har01d.alist_tvbox.util.Constants.ALIST_RESTART_REQUIRED;
 import static cn.har01d.alist_tvbox.util.Constants.ALIST_START_TIME;
@@ -54,6 +58,9 @@ public class AListLocalService {
     private static final int OFFLINE_DOWNLOAD_GROUP = 6;
     private static final int PRIVATE_FLAG = 2;
     private static final String PROXY_CONFIG_KEY = "proxy_config";
+    private static final String INSERT_STORAGE = "INSERT INTO x_storages " +
+            "(id,mount_path,`order`,driver,cache_expiration,custom_cache_policies,status,addition,modified,disabled,order_by,order_direction,extract_folder,web_proxy,webdav_policy) " +
+            "VALUES (?, ?, 0, ?, ?, ?, 'work', ?, ?, ?, 'name','asc','front', ?, ?)";
     // alist-tvbox 网盘类型 -> PowerList 驱动名(storage.driver)，用于把 local_proxy_config 转成 PowerList 全局 proxy_config
     private static final Map<String, String> PROXY_DRIVER_NAMES = Map.of(
             "ALI", "AliyundriveOpen",
@@ -75,9 +82,9 @@ public class AListLocalService {
     private final JdbcTemplate alistJdbcTemplate;
 
     private volatile int aListStatus;
+    private final AtomicInteger startCount = new AtomicInteger();
     private int internalPort = 5244;
     private int externalPort = 5344;
-    private String database = "sqlite3";
     private String aListLogPath = "/opt/alist/log/alist.log";
 
     public AListLocalService(SettingRepository settingRepository,
@@ -176,7 +183,6 @@ public class AListLocalService {
                 aListLogPath = Utils.getAListPath(json.get("log").get("name").asText());
                 log.info("AList log path: {}", aListLogPath);
                 port = json.get("scheme").get("http_port").asInt();
-                database = json.get("database").get("type").asText();
             } catch (IOException e) {
                 log.warn("read AList config failed", e);
             }
@@ -319,20 +325,53 @@ public class AListLocalService {
 
     public void saveStorage(Storage storage) {
         executeUpdate("DELETE FROM x_storages WHERE id = ?", storage.getId());
+        executeUpdate(INSERT_STORAGE, storageArgs(storage));
+        log.info("[{}] insert {} storage : {}", storage.getId(), storage.getDriver(), storage.getPath());
+    }
+
+    /**
+     * 批量写入存储，在一个事务中执行，失败时抛出异常由调用方处理
+     */
+    public void saveStorages(List<Storage> storages) {
+        if (storages.isEmpty()) {
+            return;
+        }
+        alistJdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (var delete = connection.prepareStatement("DELETE FROM x_storages WHERE id = ?");
+                 var insert = connection.prepareStatement(INSERT_STORAGE)) {
+                for (Storage storage : storages) {
+                    delete.setObject(1, storage.getId());
+                    delete.addBatch();
+                    Object[] args = storageArgs(storage);
+                    for (int i = 0; i < args.length; i++) {
+                        insert.setObject(i + 1, args[i]);
+                    }
+                    insert.addBatch();
+                }
+                delete.executeBatch();
+                insert.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+        log.info("insert {} storages: {}-{}", storages.size(), storages.get(0).getId(), storages.get(storages.size() - 1).getId());
+    }
+
+    private Object[] storageArgs(Storage storage) {
         String time = storage.getTime().truncatedTo(ChronoUnit.SECONDS).atZone(ZoneId.systemDefault()).toLocalDateTime().toString();
-        String sql = "INSERT INTO x_storages " +
-                "(id,mount_path,`order`,driver,cache_expiration,custom_cache_policies,status,addition,modified,disabled,order_by,order_direction,extract_folder,web_proxy,webdav_policy) " +
-                "VALUES (?, ?, 0, ?, ?, ?, 'work', ?, ?, ?, 'name','asc','front', ?, ?)";
-        executeUpdate(sql, storage.getId(), storage.getPath(), storage.getDriver(),
+        return new Object[]{storage.getId(), storage.getPath(), storage.getDriver(),
                 storage.getCacheExpiration(), storage.getCustomCachePolicies(),
-                storage.getAddition(), time, storage.isDisabled() ? 1 : 0, storage.isWebProxy() ? 1 : 0, storage.getWebdavPolicy());
-        log.info("[{}] insert {} storage : {}", storage.getId(), storage.getDriver(), storage.getPath());
+                storage.getAddition(), time, storage.isDisabled() ? 1 : 0, storage.isWebProxy() ? 1 : 0, storage.getWebdavPolicy()};
     }
 
     public int executeUpdate(String sql) {
-        if (System.getenv("NATIVE") != null && "sqlite3".equals(database)) {
-            return Utils.executeUpdate(sql);
-        }
         try {
             log.debug("executeUpdate: {}", sql);
             return alistJdbcTemplate.update(sql);
@@ -343,12 +382,10 @@ public class AListLocalService {
     }
 
     /**
-     * 参数化执行(JDBC 路径真参数化,防 SQL 注入;NATIVE/CLI 路径转义单引号后渲染为字面量)。
+     * 参数化执行，防 SQL 注入。
+     * NATIVE 模式同样走 sqlite-jdbc，不再调用 sqlite3 命令行。
      */
     public int executeUpdate(String sql, Object... args) {
-        if (System.getenv("NATIVE") != null && "sqlite3".equals(database)) {
-            return Utils.executeUpdate(renderSql(sql, args));
-        }
         try {
             log.debug("executeUpdate: {} args: {}", sql, args);
             return alistJdbcTemplate.update(sql, args);
@@ -358,34 +395,7 @@ public class AListLocalService {
         }
     }
 
-    /** 把 ? 占位符渲染为 SQL 字面量(字符串单引号转义,数字/布尔直接),仅用于 sqlite3 CLI 路径。 */
-    private static String renderSql(String sql, Object[] args) {
-        StringBuilder sb = new StringBuilder();
-        int i = 0;
-        for (int j = 0; j < sql.length(); j++) {
-            char c = sql.charAt(j);
-            if (c == '?' && i < args.length) {
-                Object a = args[i++];
-                if (a == null) {
-                    sb.append("NULL");
-                } else if (a instanceof Number || a instanceof Boolean) {
-                    sb.append(a);
-                } else {
-                    sb.append("'").append(String.valueOf(a).replace("'", "''")).append("'");
-                }
-            } else {
-                sb.append(c);
-            }
-        }
-        return sb.toString();
-    }
-
     public boolean existsById(String tableName, long id) {
-        if (System.getenv("NATIVE") != null && "sqlite3".equals(database)) {
-            String sql = "SELECT 1 FROM " + tableName + " WHERE id = " + id + " LIMIT 1";
-            return StringUtils.isNotBlank(Utils.executeQuery(sql));
-        }
-
         try {
             String sql = "SELECT 1 FROM " + tableName + " WHERE id = ? LIMIT 1";
             Integer result = alistJdbcTemplate.queryForObject(sql, new Object[]{id}, Integer.class);
@@ -396,15 +406,6 @@ public class AListLocalService {
     }
 
     public int getNextStorageId() {
-        if (System.getenv("NATIVE") != null && "sqlite3".equals(database)) {
-            try {
-                String maxId = Utils.executeQuery("SELECT MAX(ID) FROM x_storages");
-                return Integer.parseInt(maxId) + 1;
-            } catch (Exception e) {
-                log.warn("get next storage id failed", e);
-            }
-        }
-
         try {
             Integer result = alistJdbcTemplate.queryForObject("SELECT MAX(ID) FROM x_storages", new Object[]{}, Integer.class);
             if (result != null) {
@@ -487,6 +488,7 @@ public class AListLocalService {
             settingRepository.save(new Setting(ALIST_RESTART_REQUIRED, "false"));
             settingRepository.save(new Setting(ALIST_START_TIME, Instant.now().toString()));
             log.info("{} server starting, PID: {}", alist, process.pid());
+            startCount.incrementAndGet();
             aListStatus = 1;
         } catch (Exception e) {
             throw new IllegalStateException(e);
@@ -511,6 +513,13 @@ public class AListLocalService {
         }
     }
 
+    /**
+     * AList进程的启动次数，用于判断缓存的登录令牌是否属于当前进程
+     */
+    public int getStartCount() {
+        return startCount.get();
+    }
+
     public void restartAListServer() {
         stopAListServer();
         startAListServer();
@@ -46,6 +46,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -60,24 +63,37 @@ public class AListService {
     private final SettingRepository settingRepository;
     private final SiteService siteService;
     private final AListLocalService aListLocalService;
+    private final CircuitBreaker circuitBreaker;
     private final Cache<String, VideoPreview> cache = Caffeine.newBuilder()
             .maximumSize(10)
             .expireAfterWrite(Duration.ofSeconds(895))
             .build();
+    // 目录列表短时缓存，多个盒子浏览同一目录以及播放、字幕重复读取父目录时共用一次请求
+    // 按文件数计算权重，索引时每页5000个文件的大目录不会按条目数把内存撑大
+    private final Cache<String, FsResponse> listCache = Caffeine.newBuilder()
+            .maximumWeight(100_000)
+            .weigher((String key, FsResponse value) -> 1 + size(value.getContent()) + size(value.getFiles()))
+            .expireAfterWrite(Duration.ofSeconds(30))
+            .build();
+    private final Map<String, CompletableFuture<FsResponse>> listInFlight = new ConcurrentHashMap<>();
 
     public AListService(RestTemplateBuilder builder,
                         SettingRepository settingRepository,
                         SiteService siteService,
-                        AListLocalService aListLocalService) {
+                        AListLocalService aListLocalService,
+                        CircuitBreaker circuitBreaker,
+                        OutboundRateLimiter rateLimiter) {
         this.restTemplate = builder
                 .defaultHeader(HttpHeaders.ACCEPT, Constants.ACCEPT)
                 .defaultHeader(HttpHeaders.USER_AGENT, Constants.USER_AGENT)
                 .connectTimeout(Duration.ofSeconds(60))
                 .readTimeout(Duration.ofSeconds(60))
+                .additionalInterceptors(rateLimiter)
                 .build();
         this.settingRepository = settingRepository;
         this.siteService = siteService;
         this.aListLocalService = aListLocalService;
+        this.circuitBreaker = circuitBreaker;
     }
 
     public List<SearchResult> search(Site site, String keyword) {
@@ -125,7 +141,78 @@ public class AListService {
         return listFiles(site, path, page, size, false);
     }
 
+    /**
+     * 列出目录文件
+     * 相同站点、路径和分页的请求共用缓存结果，并发时只请求一次AList。refresh为true时跳过缓存并更新缓存结果。
+     */
     public FsResponse listFiles(Site site, String path, int page, int size, boolean refresh) {
+        String key = site.getId() + "|" + path + "|" + page + "|" + size;
+        if (!refresh) {
+            FsResponse response = listCache.getIfPresent(key);
+            if (response != null) {
+                log.debug("list cache: {}", key);
+                return copy(response);
+            }
+        }
+
+        CompletableFuture<FsResponse> future = new CompletableFuture<>();
+        CompletableFuture<FsResponse> existing = refresh ? null : listInFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return copy(existing.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException ex) {
+                    throw ex;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            FsResponse response = loadFiles(site, path, page, size, refresh);
+            if (response != null) {
+                listCache.put(key, response);
+            }
+            future.complete(response);
+            return copy(response);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            listInFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 文件变更后丢弃该站点的目录缓存
+     */
+    private void invalidateListCache(Site site) {
+        String prefix = site.getId() + "|";
+        listCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private static int size(List<FsInfo> list) {
+        return list == null ? 0 : list.size();
+    }
+
+    /**
+     * 复制列表容器，调用方可以增删列表而不影响缓存
+     * 列表中的FsInfo仍与缓存共用，调用方不能修改这些元素
+     */
+    private static FsResponse copy(FsResponse response) {
+        if (response == null) {
+            return null;
+        }
+        FsResponse copy = new FsResponse();
+        copy.setProvider(response.getProvider());
+        copy.setTotal(response.getTotal());
+        copy.setWrite(response.isWrite());
+        copy.setContent(response.getContent() == null ? null : new ArrayList<>(response.getContent()));
+        copy.setFiles(response.getFiles() == null ? null : new ArrayList<>(response.getFiles()));
+        return copy;
+    }
+
+    private FsResponse loadFiles(Site site, String path, int page, int size, boolean refresh) {
         int version = getVersion(site);
         String url = getUrl(site) + (version == 2 ? "/api/public/path" : "/api/fs/list");
         FsRequest request = new FsRequest();
@@ -246,6 +333,7 @@ public class AListService {
         log.debug("call api: {} request: {}", url, data);
         LoginResponse response = postAdmin(site, url, data, LoginResponse.class);
         logError(response);
+        invalidateListCache(site);
     }
 
     public void move(Site site, String path, String newFolder) {
@@ -261,6 +349,7 @@ public class AListService {
         log.debug("call api: {} request: {}", url, data);
         LoginResponse response = postAdmin(site, url, data, LoginResponse.class);
         logError(response);
+        invalidateListCache(site);
     }
 
     public void remove(Site site, String path) {
@@ -274,6 +363,7 @@ public class AListService {
         log.debug("call api: {} request: {}", url, data);
         LoginResponse response = postAdmin(site, url, data, LoginResponse.class);
         logError(response);
+        invalidateListCache(site);
     }
 
     public FsDetail getFile(Site site, String path) {
@@ -365,8 +455,7 @@ public class AListService {
             headers.set(HttpHeaders.AUTHORIZATION, site.getToken());
         }
         HttpEntity<Void> entity = new HttpEntity<>(null, headers);
-        ResponseEntity<T> response = restTemplate.exchange(url, HttpMethod.GET, entity, responseType);
-        return response.getBody();
+        return exchange(site, url, HttpMethod.GET, entity, responseType);
     }
 
     private <T, R> T post(Site site, String url, R request, Class<T> responseType) {
@@ -375,15 +464,20 @@ public class AListService {
             headers.set(HttpHeaders.AUTHORIZATION, site.getToken());
         }
         HttpEntity<R> entity = new HttpEntity<>(request, headers);
-        ResponseEntity<T> response = restTemplate.exchange(url, HttpMethod.POST, entity, responseType);
-        return response.getBody();
+        return exchange(site, url, HttpMethod.POST, entity, responseType);
     }
 
     private <T, R> T postAdmin(Site site, String url, R request, Class<T> responseType) {
         HttpHeaders headers = new HttpHeaders();
         headers.set(HttpHeaders.AUTHORIZATION, login(site));
         HttpEntity<R> entity = new HttpEntity<>(request, headers);
-        ResponseEntity<T> response = restTemplate.exchange(url, HttpMethod.POST, entity, responseType);
+        return exchange(site, url, HttpMethod.POST, entity, responseType);
+    }
+
+    private <T> T exchange(Site site, String url, HttpMethod method, HttpEntity<?> entity, Class<T> responseType) {
+        // 内置AList使用单独的策略，不因网盘慢而打开断路器
+        String name = (site.getId() == 1 ? "alist-local:" : "alist:") + site.getName();
+        ResponseEntity<T> response = circuitBreaker.call(name, () -> restTemplate.exchange(url, method, entity, responseType));
         return response.getBody();
     }
 
@@ -16,6 +16,7 @@ import cn.har01d.alist_tvbox.exception.NotFoundException;
 import cn.har01d.alist_tvbox.model.AListUser;
 import cn.har01d.alist_tvbox.model.LoginRequest;
 import cn.har01d.alist_tvbox.model.LoginResponse;
+import cn.har01d.alist_tvbox.model.Response;
 import cn.har01d.alist_tvbox.model.UserResponse;
 import cn.har01d.alist_tvbox.storage.AliyundriveOpen;
 import cn.har01d.alist_tvbox.util.Constants;
@@ -38,10 +39,12 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.support.CronTrigger;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -57,6 +60,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static cn.har01d.alist_tvbox.util.Constants.ACCESS_TOKEN;
 import static cn.har01d.alist_tvbox.util.Constants.ALIST_LOGIN;
@@ -83,6 +87,14 @@ public class AccountService {
     public static final ZoneOffset ZONE_OFFSET = ZoneOffset.of("+08:00");
     public static final int IDX = 4600;
     private static final String ALI_USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) aDrive/6.1.0 Chrome/112.0.5615.165 Electron/24.1.3.7 Safari/537.36";
+    // 令牌剩余有效期小于该值时提前刷新
+    private static final Duration TOKEN_REFRESH_MARGIN = Duration.ofMinutes(30);
+    // 无法从令牌读取过期时间时使用的有效期
+    private static final Duration TOKEN_DEFAULT_TTL = Duration.ofHours(1);
+
+    private record AdminToken(String token, Instant expiresAt, int aListStartCount) {
+    }
+
     private final AccountRepository accountRepository;
     private final SettingRepository settingRepository;
     private final AListLocalService aListLocalService;
@@ -94,6 +106,8 @@ public class AccountService {
     private final JdbcTemplate alistJdbcTemplate;
     private final AppProperties appProperties;
     private ScheduledFuture<?> scheduledFuture;
+    private final ReentrantLock tokenLock = new ReentrantLock();
+    private volatile AdminToken adminToken;
 
     public AccountService(AccountRepository accountRepository,
                           SettingRepository settingRepository,
@@ -165,7 +179,12 @@ public class AccountService {
             }
             readLogin();
         }
+    }
 
+    /**
+     * 刷新阿里云盘令牌并写入AList账号配置，需要访问网络，由 {@link StartupService} 在启动后执行
+     */
+    public void warmup() {
         if (accountRepository.count() > 0) {
             try {
                 updateAliAccountId();
@@ -226,6 +245,7 @@ public class AccountService {
             aListLocalService.executeUpdate(sql);
             sql = "INSERT INTO x_users (id,username,password,base_path,role,permission) VALUES(4,'atv',\"" + generatePassword() + "\",'/',2,65535)";
             aListLocalService.executeUpdate(sql);
+            invalidateToken();
         } catch (Exception e) {
             log.warn("", e);
         }
@@ -247,6 +267,7 @@ public class AccountService {
         settingRepository.save(new Setting(ATV_PASSWORD, password));
         String sql = "UPDATE x_users SET password = ? WHERE username = 'atv'";
         aListLocalService.executeUpdate(sql, password);
+        invalidateToken();
         return password;
     }
 
@@ -739,7 +760,114 @@ public class AccountService {
         return login;
     }
 
+    /**
+     * 获取AList管理令牌
+     * 令牌在有效期内共享给所有调用方，临近过期时由一个调用方提前刷新，其余调用方继续使用旧令牌。
+     * AList重启或atv密码变更后重新登录。
+     */
     public String login() {
+        AdminToken current = adminToken;
+        Instant now = Instant.now();
+        if (isUsable(current, now)) {
+            if (now.isBefore(current.expiresAt().minus(TOKEN_REFRESH_MARGIN)) || !tokenLock.tryLock()) {
+                return current.token();
+            }
+        } else {
+            tokenLock.lock();
+        }
+
+        try {
+            current = adminToken;
+            now = Instant.now();
+            if (isUsable(current, now) && now.isBefore(current.expiresAt().minus(TOKEN_REFRESH_MARGIN))) {
+                return current.token();
+            }
+            int startCount = aListLocalService.getStartCount();
+            String token = requestToken();
+            adminToken = new AdminToken(token, getExpireTime(token, now), startCount);
+            return token;
+        } catch (RuntimeException e) {
+            if (isUsable(current, Instant.now())) {
+                log.warn("refresh AList token failed: {}", e.getMessage());
+                return current.token();
+            }
+            throw e;
+        } finally {
+            tokenLock.unlock();
+        }
+    }
+
+    /**
+     * 丢弃缓存的AList管理令牌，下次调用 {@link #login()} 时重新登录
+     */
+    public void invalidateToken() {
+        adminToken = null;
+    }
+
+    /**
+     * 只有缓存的仍是这个令牌时才丢弃，避免并发时把其它调用方刚刷新的令牌丢掉
+     */
+    public void invalidateToken(String token) {
+        tokenLock.lock();
+        try {
+            AdminToken current = adminToken;
+            if (current != null && current.token().equals(token)) {
+                adminToken = null;
+            }
+        } finally {
+            tokenLock.unlock();
+        }
+    }
+
+    /**
+     * 用管理令牌调用AList管理接口
+     * AList返回401(HTTP状态或响应体code)时令牌已失效，丢弃后重新登录并重试一次
+     */
+    public <T> ResponseEntity<T> exchangeAdmin(RestTemplate client, String url, HttpMethod method, Object body, Class<T> responseType, String token) {
+        try {
+            ResponseEntity<T> response = sendAdmin(client, url, method, body, responseType, token);
+            if (!isUnauthorized(response.getBody())) {
+                return response;
+            }
+        } catch (HttpClientErrorException.Unauthorized e) {
+            log.debug("AList token rejected: {}", url);
+        }
+        log.info("AList token expired, login again: {}", url);
+        invalidateToken(token);
+        return sendAdmin(client, url, method, body, responseType, login());
+    }
+
+    private <T> ResponseEntity<T> sendAdmin(RestTemplate client, String url, HttpMethod method, Object body, Class<T> responseType, String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.AUTHORIZATION, token);
+        HttpEntity<Object> entity = new HttpEntity<>(body, headers);
+        return client.exchange(url, method, entity, responseType);
+    }
+
+    private boolean isUnauthorized(Object body) {
+        if (body instanceof Response<?> response) {
+            return response.getCode() != null && response.getCode() == 401;
+        } else if (body instanceof Map<?, ?> map) {
+            return map.get("code") instanceof Number code && code.intValue() == 401;
+        } else if (body instanceof JsonNode json) {
+            return json.path("code").asInt() == 401;
+        } else if (body instanceof String text && text.contains("401")) {
+            try {
+                return objectMapper.readTree(text).path("code").asInt() == 401;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private boolean isUsable(AdminToken token, Instant now) {
+        return token != null
+                && token.aListStartCount() == aListLocalService.getStartCount()
+                && now.isBefore(token.expiresAt());
+    }
+
+    private String requestToken() {
         String username = "atv";
         String password = settingRepository.findById(ATV_PASSWORD).map(Setting::getValue).orElseThrow(BadRequestException::new);
         LoginRequest request = new LoginRequest();
@@ -747,39 +875,49 @@ public class AccountService {
         request.setPassword(password);
         LoginResponse response = aListClient.postForObject("/api/auth/login", request, LoginResponse.class);
         log.debug("AList login response: {}", response);
+        if (response == null || response.getData() == null || StringUtils.isBlank(response.getData().getToken())) {
+            throw new BadRequestException("AList登录失败: " + (response == null ? "" : response.getMessage()));
+        }
         return response.getData().getToken();
     }
 
+    /**
+     * 从JWT的exp字段读取过期时间
+     */
+    private Instant getExpireTime(String token, Instant now) {
+        try {
+            String[] parts = token.split("\\.");
+            if (parts.length == 3) {
+                JsonNode payload = objectMapper.readTree(Base64.getUrlDecoder().decode(parts[1]));
+                long exp = payload.path("exp").asLong();
+                if (exp > 0) {
+                    return Instant.ofEpochSecond(exp);
+                }
+            }
+        } catch (Exception e) {
+            log.debug("parse AList token failed", e);
+        }
+        return now.plus(TOKEN_DEFAULT_TTL);
+    }
+
     private AListUser getUser(Integer id, String token) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, token);
-        HttpEntity<String> entity = new HttpEntity<>(null, headers);
-        ResponseEntity<UserResponse> response = aListClient.exchange("/api/admin/user/get?id=" + id, HttpMethod.GET, entity, UserResponse.class);
+        ResponseEntity<UserResponse> response = exchangeAdmin(aListClient, "/api/admin/user/get?id=" + id, HttpMethod.GET, null, UserResponse.class, token);
         log.info("get AList user {} response: {}", id, response.getBody());
         return response.getBody().getData();
     }
 
     private void deleteUser(Integer id, String token) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, token);
-        HttpEntity<String> entity = new HttpEntity<>(null, headers);
-        ResponseEntity<String> response = aListClient.exchange("/api/admin/user/delete?id=" + id, HttpMethod.POST, entity, String.class);
+        ResponseEntity<String> response = exchangeAdmin(aListClient, "/api/admin/user/delete?id=" + id, HttpMethod.POST, null, String.class, token);
         log.info("delete AList user {} response: {}", id, response.getBody());
     }
 
     private void updateUser(AListUser user, String token) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, token);
-        HttpEntity<AListUser> entity = new HttpEntity<>(user, headers);
-        ResponseEntity<String> response = aListClient.exchange("/api/admin/user/update", HttpMethod.POST, entity, String.class);
+        ResponseEntity<String> response = exchangeAdmin(aListClient, "/api/admin/user/update", HttpMethod.POST, user, String.class, token);
         log.info("update AList user {} response: {}", user.getId(), response.getBody());
     }
 
     private void createUser(AListUser user, String token) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, token);
-        HttpEntity<AListUser> entity = new HttpEntity<>(user, headers);
-        ResponseEntity<String> response = aListClient.exchange("/api/admin/user/create", HttpMethod.POST, entity, String.class);
+        ResponseEntity<String> response = exchangeAdmin(aListClient, "/api/admin/user/create", HttpMethod.POST, user, String.class, token);
         log.info("create AList user response: {}", response.getBody());
     }
 
@@ -1079,15 +1217,12 @@ public class AccountService {
         }
 
         String token = status >= 2 ? login() : "";
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, token);
         Map<String, Object> body = new HashMap<>();
         body.put("key", "ali_account_id");
         body.put("type", "number");
         body.put("flag", 1);
         body.put("value", String.valueOf(storageId));
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-        ResponseEntity<String> response = aListClient.exchange("/api/admin/setting/update", HttpMethod.POST, entity, String.class);
+        ResponseEntity<String> response = exchangeAdmin(aListClient, "/api/admin/setting/update", HttpMethod.POST, body, String.class, token);
         log.info("updateAliAccountByApi {} response: {}", account.getId(), response.getBody());
     }
 
@@ -1169,18 +1304,12 @@ public class AccountService {
     }
 
     public void enableStorage(Integer id, String token) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, token);
-        HttpEntity<String> entity = new HttpEntity<>(null, headers);
-        ResponseEntity<String> response = aListClient.exchange("/api/admin/storage/enable?id=" + id, HttpMethod.POST, entity, String.class);
+        ResponseEntity<String> response = exchangeAdmin(aListClient, "/api/admin/storage/enable?id=" + id, HttpMethod.POST, null, String.class, token);
         log.info("enable AList storage {} response: {}", id, response.getBody());
     }
 
     public void deleteStorage(Integer id, String token) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, token);
-        HttpEntity<String> entity = new HttpEntity<>(null, headers);
-        ResponseEntity<String> response = aListClient.exchange("/api/admin/storage/delete?id=" + id, HttpMethod.POST, entity, String.class);
+        ResponseEntity<String> response = exchangeAdmin(aListClient, "/api/admin/storage/delete?id=" + id, HttpMethod.POST, null, String.class, token);
         log.info("delete AList storage {} response: {}", id, response.getBody());
     }
 
@@ -1206,16 +1335,13 @@ public class AccountService {
         if (time == null) {
             time = Instant.now();
         }
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, token);
         Map<String, Object> body = new HashMap<>();
         body.put("key", key);
         body.put("value", value);
         body.put("accountId", accountId);
         body.put("modified", time.atOffset(ZONE_OFFSET).toString());
         log.debug("updateTokenToAList: {}", body);
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-        ResponseEntity<String> response = aListClient.exchange("/api/admin/token/update", HttpMethod.POST, entity, String.class);
+        ResponseEntity<String> response = exchangeAdmin(aListClient, "/api/admin/token/update", HttpMethod.POST, body, String.class, token);
         log.info("updateTokenToAList {} response: {}", key, response.getBody());
     }
 
@@ -79,7 +79,9 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.Call;
@@ -101,6 +103,7 @@ import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
@@ -130,6 +133,8 @@ public class BiliBiliService {
     private static final int VIDEO_8K = 1024;
     private static final int VIDEO_AV1 = 2048;
     private static final int FN_VAL = VIDEO_DASH + VIDEO_HDR + VIDEO_4K + DOLBY_AUDIO + DOLBY_VIDEO + VIDEO_8K + VIDEO_AV1;
+    private static final Duration DASH_TTL = Duration.ofMinutes(10);
+    private static final Duration MAX_DASH_TTL = Duration.ofHours(1);
     private static final String INFO_API = "https://api.bilibili.com/x/web-interface/view?bvid=";
     private static final String HOT_API = "https://api.bilibili.com/x/web-interface/ranking/v2?type=%s&rid=%d";
     private static final String LIST_API = "https://api.bilibili.com/x/web-interface/newlist_rank?main_ver=v3&search_type=video&view_type=hot_rank&copy_right=-1&new_web_tag=1&order=click&cate_id=%s&page=%d&pagesize=30&time_from=%s&time_to=%s";
@@ -299,10 +304,32 @@ public class BiliBiliService {
     private final RestTemplate restTemplate;
     private final RestTemplate restTemplate1;
     private final ObjectMapper objectMapper;
-    private final OkHttpClient client = new OkHttpClient();
+    private final OkHttpClient client;
     private final LoadingCache<String, BiliBiliInfo> cache = Caffeine.newBuilder()
             .maximumSize(10)
             .build(this::getInfo);
+    private record CachedDash(Map<String, Object> result, Duration ttl) {
+    }
+
+    private final Cache<String, CachedDash> dashCache = Caffeine.newBuilder()
+            .maximumSize(200)
+            .expireAfter(new Expiry<String, CachedDash>() {
+                @Override
+                public long expireAfterCreate(String key, CachedDash value, long currentTime) {
+                    return value.ttl().toNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, CachedDash value, long currentTime, long currentDuration) {
+                    return value.ttl().toNanos();
+                }
+
+                @Override
+                public long expireAfterRead(String key, CachedDash value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
     private MovieDetail searchPlaylist;
     private String keyword = "";
     private int searchPage;
@@ -320,7 +347,8 @@ public class BiliBiliService {
                            AppProperties appProperties,
                            BiliCookieRefreshService biliCookieRefreshService,
                            RestTemplateBuilder builder,
-                           ObjectMapper objectMapper) {
+                           ObjectMapper objectMapper,
+                           OutboundRateLimiter rateLimiter) {
         this.settingRepository = settingRepository;
         this.navigationService = navigationService;
         this.appProperties = appProperties;
@@ -328,10 +356,13 @@ public class BiliBiliService {
         this.restTemplate1 = builder
                 .defaultHeader(HttpHeaders.ACCEPT, Constants.ACCEPT)
                 .defaultHeader(HttpHeaders.USER_AGENT, Constants.OK_USER_AGENT)
+                .additionalInterceptors(rateLimiter)
                 .build();
         this.restTemplate = builder
                 .defaultHeader(HttpHeaders.USER_AGENT, Constants.USER_AGENT)
+                .additionalInterceptors(rateLimiter)
                 .build();
+        this.client = new OkHttpClient.Builder().addInterceptor(rateLimiter.okHttpInterceptor()).build();
         this.objectMapper = objectMapper;
     }
 
@@ -1888,11 +1919,25 @@ public class BiliBiliService {
         map.put("fnval", dash ? FN_VAL : 0);
 
         HttpEntity<Void> entity = buildHttpEntity(null);
+        String dashKey = null;
+        if (dash) {
+            dashKey = aid + "-" + cid + "-" + client + "-" + qns + "-" + Utils.md5(entity.getHeaders().getFirst("Cookie"));
+            CachedDash cached = dashCache.getIfPresent(dashKey);
+            if (cached != null) {
+                log.debug("use cached dash: {} {}", bvid, client);
+                if (appProperties.isHeartbeat()) {
+                    heartbeat(aid, cid);
+                }
+                return new HashMap<>(cached.result());
+            }
+        }
+
         getKeys(entity);
         String url = PLAY_API + "?" + Utils.encryptWbi(map, imgKey, subKey);
 
         log.debug("bvid: {} dash: {}  url: {}", bvid, dash, url);
 
+        Duration dashTtl = Duration.ZERO;
         if (dash) {
             ResponseEntity<Resp> response = restTemplate.exchange(url, HttpMethod.GET, entity, Resp.class);
             log.debug("url: {}  response: {}", url, response.getBody());
@@ -1906,6 +1951,9 @@ public class BiliBiliService {
             }
 
             result = DashUtils.convert(response.getBody(), qns, client);
+            if (response.getBody().getCode() == 0) {
+                dashTtl = getDashTtl(DashUtils.getDeadline(response.getBody()));
+            }
         } else {
             ResponseEntity<BiliBiliPlayResponse> response = restTemplate.exchange(url, HttpMethod.GET, entity, BiliBiliPlayResponse.class);
             BiliBiliPlayResponse res = response.getBody();
@@ -1930,6 +1978,10 @@ public class BiliBiliService {
             result.put("danmaku", "https://comment.bilibili.com/" + cid + ".xml");
         }
 
+        if (dashTtl.isPositive()) {
+            dashCache.put(dashKey, new CachedDash(new HashMap<>(result), dashTtl));
+        }
+
         if (appProperties.isHeartbeat()) {
             heartbeat(aid, cid);
         }
@@ -1938,6 +1990,20 @@ public class BiliBiliService {
         return result;
     }
 
+    /**
+     * DASH清单的缓存时间，取播放地址过期时间提前5分钟，最长1小时
+     */
+    static Duration getDashTtl(long deadline) {
+        if (deadline <= 0) {
+            return DASH_TTL;
+        }
+        Duration ttl = Duration.ofSeconds(deadline - Instant.now().getEpochSecond()).minusMinutes(5);
+        if (ttl.compareTo(MAX_DASH_TTL) > 0) {
+            return MAX_DASH_TTL;
+        }
+        return ttl.isNegative() ? Duration.ZERO : ttl;
+    }
+
     private List<Sub> getSubtitles(String aid, String cid) {
         boolean allAi = true;
         List<Sub> list = new ArrayList<>();
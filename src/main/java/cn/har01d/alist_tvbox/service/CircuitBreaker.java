@@ -1,86 +1,254 @@
 package cn.har01d.alist_tvbox.service;
 
+import cn.har01d.alist_tvbox.exception.BadRequestException;
+import cn.har01d.alist_tvbox.exception.NotFoundException;
+import cn.har01d.alist_tvbox.exception.ServiceUnavailableException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 断路器
- * 防止系统雪崩，当连续失败达到阈值时，暂时拒绝请求
+ * 防止系统雪崩，按上游统计最近N次调用的失败率和慢调用比例，超过阈值时打开断路器暂时拒绝请求，
+ * 冷却后进入半开状态放行少量探测请求，探测失败则按指数退避延长冷却时间。
  */
 @Slf4j
 @Component
 public class CircuitBreaker {
 
+    /**
+     * 断路器策略
+     *
+     * @param windowSize         统计窗口，最近N次调用
+     * @param minCalls           窗口内至少多少次调用才计算比例
+     * @param failureRatePercent 失败率阈值
+     * @param slowCallMs         超过该耗时视为慢调用
+     * @param slowRatePercent    慢调用比例阈值
+     * @param openMs             首次打开的冷却时间
+     * @param maxOpenMs          指数退避的最长冷却时间
+     * @param halfOpenCalls      半开状态放行的探测请求数，全部成功后关闭
+     */
+    public record Policy(int windowSize, int minCalls, int failureRatePercent, long slowCallMs, int slowRatePercent,
+                         long openMs, long maxOpenMs, int halfOpenCalls) {
+    }
+
+    public static final Policy DEFAULT_POLICY = new Policy(20, 5, 50, 10_000, 80, 30_000, 600_000, 2);
+
+    @FunctionalInterface
+    public interface CheckedSupplier<T, E extends Exception> {
+        T get() throws E;
+    }
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
     private static class CircuitState {
-        AtomicInteger failureCount = new AtomicInteger(0);
-        AtomicLong lastFailTime = new AtomicLong(0);
-        AtomicInteger successCount = new AtomicInteger(0);
-        volatile boolean open = false;
+        final String name;
+        final Policy policy;
+        final boolean[] failed;
+        final boolean[] slow;
+        int index;
+        int count;
+        int failures;
+        int slows;
+        State state = State.CLOSED;
+        long openedAt;
+        long openMs;
+        int trips;
+        int probes;
+        int probeSuccess;
+        long totalCalls;
+        long rejected;
+
+        CircuitState(String name, Policy policy) {
+            this.name = name;
+            this.policy = policy;
+            this.failed = new boolean[policy.windowSize()];
+            this.slow = new boolean[policy.windowSize()];
+        }
     }
 
     private final ConcurrentHashMap<String, CircuitState> circuits = new ConcurrentHashMap<>();
+    private final Map<String, Policy> policies = new ConcurrentHashMap<>();
 
-    private static final int FAILURE_THRESHOLD = 3;  // 连续失败 3 次打开断路器
-    private static final long COOLDOWN_MS = 60_000;  // 冷却时间 60 秒
-    private static final int SUCCESS_TO_CLOSE = 2;   // 连续成功 2 次关闭断路器
+    public CircuitBreaker() {
+        // 直播平台和网页抓取较慢，放宽慢调用阈值
+        policies.put("alist", new Policy(20, 5, 50, 15_000, 80, 15_000, 300_000, 2));
+        // 内置AList在本机，慢通常是网盘本身慢，只按失败率打开，冷却也更短
+        policies.put("alist-local", new Policy(20, 5, 50, Long.MAX_VALUE, 100, 5_000, 60_000, 1));
+        policies.put("douban", new Policy(20, 5, 50, 10_000, 80, 60_000, 1_800_000, 1));
+        policies.put("tmdb", new Policy(20, 5, 50, 10_000, 80, 60_000, 1_800_000, 1));
+        policies.put("pansou", new Policy(10, 3, 50, 20_000, 80, 30_000, 600_000, 1));
+        policies.put("tg-search", new Policy(10, 3, 50, 20_000, 80, 30_000, 600_000, 1));
+        policies.put("telegram", new Policy(30, 10, 60, 15_000, 80, 30_000, 600_000, 2));
+        policies.put("live", new Policy(10, 3, 50, 15_000, 80, 30_000, 600_000, 1));
+    }
 
     /**
-     * 检查断路器是否打开
+     * 设置上游策略，名称中冒号前的部分作为策略名，如 alist:1 使用 alist 的策略
      */
-    public boolean isOpen(String name) {
-        CircuitState state = circuits.computeIfAbsent(name, k -> new CircuitState());
+    public void configure(String name, Policy policy) {
+        policies.put(name, policy);
+        circuits.keySet().removeIf(key -> key.equals(name) || key.startsWith(name + ":"));
+    }
+
+    /**
+     * 在断路器保护下调用上游，断路器打开时直接抛出 {@link ServiceUnavailableException}
+     */
+    public <T, E extends Exception> T call(String name, CheckedSupplier<T, E> supplier) throws E {
+        if (!tryAcquire(name)) {
+            throw new ServiceUnavailableException(name + " 暂时不可用，请稍后重试");
+        }
 
-        if (!state.open) {
+        long start = System.currentTimeMillis();
+        try {
+            T result = supplier.get();
+            record(name, System.currentTimeMillis() - start, false);
+            return result;
+        } catch (Exception e) {
+            if (isCancelled(e)) {
+                // 调用方取消的请求不说明上游状态，不计入统计
+                release(name);
+            } else {
+                record(name, System.currentTimeMillis() - start, isFailure(e));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 检查断路器是否拒绝请求，只查询状态，不占用半开状态的探测名额
+     */
+    public boolean isOpen(String name) {
+        CircuitState state = circuits.get(name);
+        if (state == null) {
             return false;
         }
+        synchronized (state) {
+            return switch (state.state) {
+                case CLOSED -> false;
+                case OPEN -> System.currentTimeMillis() - state.openedAt < state.openMs;
+                case HALF_OPEN -> state.probes >= state.policy.halfOpenCalls();
+            };
+        }
+    }
+
+    /**
+     * 申请一次调用，半开状态下占用一个探测名额，断路器打开时返回false
+     */
+    private boolean tryAcquire(String name) {
+        CircuitState state = getState(name);
+        synchronized (state) {
+            long now = System.currentTimeMillis();
+            if (state.state == State.OPEN && now - state.openedAt >= state.openMs) {
+                log.info("🔄 断路器 {} 进入半开状态，尝试恢复", name);
+                state.state = State.HALF_OPEN;
+                state.probes = 0;
+                state.probeSuccess = 0;
+            }
 
-        // 检查是否过了冷却期
-        long now = System.currentTimeMillis();
-        if (now - state.lastFailTime.get() > COOLDOWN_MS) {
-            log.info("🔄 断路器 {} 进入半开状态，尝试恢复", name);
-            return false;  // 半开状态，允许尝试
+            if (state.state == State.CLOSED) {
+                return false;
+            }
+            if (state.state == State.HALF_OPEN && state.probes < state.policy.halfOpenCalls()) {
+                state.probes++;
+                return false;
+            }
+
+            state.rejected++;
+            log.debug("⚠️ 断路器 {} 已打开，拒绝请求", name);
+            return true;
         }
+    }
 
-        log.warn("⚠️ 断路器 {} 已打开，拒绝请求", name);
-        return true;
+    /**
+     * 归还半开状态下占用的探测名额
+     */
+    private void release(String name) {
+        CircuitState state = getState(name);
+        synchronized (state) {
+            if (state.state == State.HALF_OPEN && state.probes > 0) {
+                state.probes--;
+            }
+        }
     }
 
     /**
      * 记录成功
      */
     public void recordSuccess(String name) {
-        CircuitState state = circuits.get(name);
-        if (state != null) {
-            state.failureCount.set(0);
-
-            if (state.open) {
-                int successCount = state.successCount.incrementAndGet();
-                if (successCount >= SUCCESS_TO_CLOSE) {
-                    state.open = false;
-                    state.successCount.set(0);
-                    log.info("✅ 断路器 {} 已关闭", name);
-                }
-            }
-        }
+        record(name, 0, false);
     }
 
     /**
      * 记录失败
      */
     public void recordFailure(String name) {
-        CircuitState state = circuits.computeIfAbsent(name, k -> new CircuitState());
+        record(name, 0, true);
+    }
+
+    /**
+     * 记录一次调用结果
+     */
+    public void record(String name, long durationMs, boolean failure) {
+        CircuitState state = getState(name);
+        synchronized (state) {
+            Policy policy = state.policy;
+            boolean slow = durationMs >= policy.slowCallMs();
+            state.totalCalls++;
 
-        int failures = state.failureCount.incrementAndGet();
-        state.lastFailTime.set(System.currentTimeMillis());
-        state.successCount.set(0);
+            if (state.state == State.HALF_OPEN) {
+                if (failure || slow) {
+                    trip(state, failure ? "探测失败" : "探测超时");
+                } else if (++state.probeSuccess >= policy.halfOpenCalls()) {
+                    close(state);
+                }
+                return;
+            }
+            if (state.state == State.OPEN) {
+                return;
+            }
+
+            if (state.count == policy.windowSize()) {
+                if (state.failed[state.index]) {
+                    state.failures--;
+                }
+                if (state.slow[state.index]) {
+                    state.slows--;
+                }
+            } else {
+                state.count++;
+            }
+            state.failed[state.index] = failure;
+            state.slow[state.index] = slow;
+            if (failure) {
+                state.failures++;
+            }
+            if (slow) {
+                state.slows++;
+            }
+            state.index = (state.index + 1) % policy.windowSize();
 
-        if (failures >= FAILURE_THRESHOLD && !state.open) {
-            state.open = true;
-            log.error("🚨 断路器 {} 已打开！连续失败 {} 次", name, failures);
+            if (state.count < policy.minCalls()) {
+                return;
+            }
+            if (state.failures * 100 >= policy.failureRatePercent() * state.count) {
+                trip(state, "失败率 " + state.failures + "/" + state.count);
+            } else if (state.slows * 100 >= policy.slowRatePercent() * state.count) {
+                trip(state, "慢调用 " + state.slows + "/" + state.count);
+            }
         }
     }
 
@@ -90,17 +258,103 @@ public class CircuitBreaker {
     public String getStatus(String name) {
         CircuitState state = circuits.get(name);
         if (state == null) {
-            return "CLOSED";
+            return State.CLOSED.name();
         }
+        synchronized (state) {
+            if (state.state == State.OPEN && System.currentTimeMillis() - state.openedAt >= state.openMs) {
+                return State.HALF_OPEN.name();
+            }
+            return state.state.name();
+        }
+    }
 
-        if (state.open) {
-            long now = System.currentTimeMillis();
-            if (now - state.lastFailTime.get() > COOLDOWN_MS) {
-                return "HALF_OPEN";
+    /**
+     * 各上游断路器状态，供健康检查接口展示
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (CircuitState state : circuits.values()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            synchronized (state) {
+                map.put("name", state.name);
+                map.put("state", getStatus(state.name));
+                map.put("calls", state.count);
+                map.put("failures", state.failures);
+                map.put("slowCalls", state.slows);
+                map.put("trips", state.trips);
+                map.put("totalCalls", state.totalCalls);
+                map.put("rejected", state.rejected);
+                if (state.state != State.CLOSED) {
+                    map.put("retryInMs", Math.max(0, state.openedAt + state.openMs - System.currentTimeMillis()));
+                }
+            }
+            list.add(map);
+        }
+        list.sort((a, b) -> ((String) a.get("name")).compareTo((String) b.get("name")));
+        return list;
+    }
+
+    private CircuitState getState(String name) {
+        return circuits.computeIfAbsent(name, k -> new CircuitState(k, getPolicy(k)));
+    }
+
+    private Policy getPolicy(String name) {
+        Policy policy = policies.get(name);
+        if (policy == null) {
+            int index = name.indexOf(':');
+            if (index > 0) {
+                policy = policies.get(name.substring(0, index));
+            }
+        }
+        return policy == null ? DEFAULT_POLICY : policy;
+    }
+
+    private void trip(CircuitState state, String reason) {
+        state.trips++;
+        int shift = Math.min(state.trips - 1, 20);
+        state.openMs = Math.min(state.policy.openMs() << shift, state.policy.maxOpenMs());
+        state.openedAt = System.currentTimeMillis();
+        state.state = State.OPEN;
+        log.error("🚨 断路器 {} 已打开！{}，{} 秒后重试", state.name, reason, state.openMs / 1000);
+    }
+
+    private void close(CircuitState state) {
+        state.state = State.CLOSED;
+        state.trips = 0;
+        state.index = 0;
+        state.count = 0;
+        state.failures = 0;
+        state.slows = 0;
+        Arrays.fill(state.failed, false);
+        Arrays.fill(state.slow, false);
+        log.info("✅ 断路器 {} 已关闭", state.name);
+    }
+
+    /**
+     * 线程被中断或任务被取消导致的异常，读超时不算
+     */
+    private static boolean isCancelled(Exception e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException
+                    || t instanceof ClosedByInterruptException
+                    || t instanceof CancellationException
+                    || (t instanceof InterruptedIOException && !(t instanceof SocketTimeoutException))) {
+                return true;
             }
-            return "OPEN";
         }
+        return false;
+    }
 
-        return "CLOSED";
+    /**
+     * 业务错误和普通的4xx响应说明上游可用，不计入失败
+     */
+    private static boolean isFailure(Exception e) {
+        if (e instanceof HttpClientErrorException ex) {
+            return ex.getStatusCode().value() == 429;
+        }
+        return !(e instanceof BadRequestException) && !(e instanceof NotFoundException);
     }
 }
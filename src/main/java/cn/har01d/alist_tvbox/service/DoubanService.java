@@ -20,13 +20,12 @@ import cn.har01d.alist_tvbox.exception.NotFoundException;
 import cn.har01d.alist_tvbox.tvbox.MovieDetail;
 import cn.har01d.alist_tvbox.util.Constants;
 import cn.har01d.alist_tvbox.util.H2SqlConverter;
+import cn.har01d.alist_tvbox.util.ProgressFile;
 import cn.har01d.alist_tvbox.util.TextUtils;
 import cn.har01d.alist_tvbox.util.Utils;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
-import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.Call;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -41,6 +40,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
@@ -51,15 +51,19 @@ import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -71,6 +75,10 @@ import static cn.har01d.alist_tvbox.util.Constants.USER_AGENT;
 @Service
 public class DoubanService {
     private static final int BATCH_SIZE = 1000;
+    private static final int SCRAPE_WORKERS = 2;
+    private static final int SCRAPE_CHUNK_SIZE = 500;
+    private static final String MOVIE_SHADOW_VERSION = "movie_shadow_version";
+    private static final List<String> SHADOW_TABLES = List.of("movie", "alias");
     private static final Pattern NUMBER = Pattern.compile("Season (\\d{1,2})");
     private static final Pattern NUMBER2 = Pattern.compile("SE(\\d{1,2})");
     private static final Pattern NUMBER3 = Pattern.compile("^S(\\d{1,2})$");
@@ -95,8 +103,12 @@ public class DoubanService {
     private final RestTemplate restTemplate;
     private final JdbcTemplate jdbcTemplate;
     private final Environment environment;
+    private final MetaSearchIndex metaSearchIndex;
+    private final MetaListCache metaListCache;
+    private final CircuitBreaker circuitBreaker;
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
-    private final OkHttpClient client = new OkHttpClient();
+    private final ExecutorService scrapeExecutor;
+    private final OkHttpClient client;
 
     private volatile boolean downloading;
 
@@ -110,7 +122,12 @@ public class DoubanService {
                          FileDownloader fileDownloader,
                          RestTemplateBuilder builder,
                          JdbcTemplate jdbcTemplate,
-                         Environment environment) {
+                         Environment environment,
+                         MetaSearchIndex metaSearchIndex,
+                         MetaListCache metaListCache,
+                         CircuitBreaker circuitBreaker,
+                         OutboundRateLimiter rateLimiter,
+                         UpstreamExecutor upstreamExecutor) {
         this.appProperties = appProperties;
         this.metaRepository = metaRepository;
         this.movieRepository = movieRepository;
@@ -122,12 +139,20 @@ public class DoubanService {
         this.restTemplate = builder
                 .defaultHeader(HttpHeaders.ACCEPT, Constants.ACCEPT)
                 .defaultHeader(HttpHeaders.USER_AGENT, USER_AGENT)
+                .additionalInterceptors(rateLimiter)
                 .build();
+        this.client = new OkHttpClient.Builder().addInterceptor(rateLimiter.okHttpInterceptor()).build();
         this.jdbcTemplate = jdbcTemplate;
         this.environment = environment;
+        this.metaSearchIndex = metaSearchIndex;
+        this.metaListCache = metaListCache;
+        this.circuitBreaker = circuitBreaker;
+        this.scrapeExecutor = upstreamExecutor.lane("douban-scrape", SCRAPE_WORKERS, SCRAPE_CHUNK_SIZE * 2);
     }
 
-    @PostConstruct
+    /**
+     * 执行数据文件中的SQL和ID修复，由 {@link StartupService} 在启动后执行
+     */
     public void setup() {
         try {
             Path path = Utils.getDataPath("atv", "movie_version");
@@ -163,6 +188,23 @@ public class DoubanService {
 
         fixMetaId();
         runCmd();
+        fillMissingMetaTime();
+    }
+
+    /**
+     * 数据文件和差异SQL导入的Meta可能没有时间，按时间的游标翻页不能比较空值。
+     * 补成固定的旧时间，不会挤到最新列表前面；批量SQL不经过监听器，需要手动失效列表缓存。
+     */
+    private void fillMissingMetaTime() {
+        try {
+            int count = metaRepository.fillMissingTime();
+            if (count > 0) {
+                log.info("fill missing time for {} metas", count);
+                metaListCache.invalidate();
+            }
+        } catch (Exception e) {
+            log.warn("fill missing meta time failed", e);
+        }
     }
 
     private void runCmd() {
@@ -260,7 +302,10 @@ public class DoubanService {
             Task task = fileDownloader.runTask("movie", remote);
             if (taskService.waitTaskFinish(task.getId(), 60)) {
                 log.info("movie data downloaded");
-                getSqlFiles(local).forEach(this::upgradeSqlFile);
+                applySqlFiles(local);
+                fillMissingMetaTime();
+                metaSearchIndex.invalidate();
+                metaListCache.invalidate();
             } else {
                 log.warn("download movie data failed");
             }
@@ -271,6 +316,130 @@ public class DoubanService {
         }
     }
 
+    /**
+     * 差异SQL先写入 movie/alias 的影子表，全部应用后再整体换入，升级期间线上表不受影响。
+     * 每个文件应用完记录检查点，中途崩溃后下次从检查点继续，不会留下半升级的线上数据。
+     * 升级期间刮削新写入线上表的行在换表前补进影子表，不会因换表丢失。
+     */
+    void applySqlFiles(String local) throws IOException {
+        H2SqlConverter.Dialect dialect = H2SqlConverter.detect(environment);
+        String from = local;
+        String checkpoint = settingRepository.findById(MOVIE_SHADOW_VERSION).map(Setting::getValue).orElse(null);
+        if (checkpoint != null && Double.parseDouble(checkpoint) > Double.parseDouble(local) && shadowTablesExist()) {
+            log.info("resume movie data upgrade from {}", checkpoint);
+            from = checkpoint;
+        } else {
+            checkpoint = null;
+        }
+
+        List<Path> files;
+        try (Stream<Path> stream = getSqlFiles(from)) {
+            files = stream.toList();
+        }
+        if (files.isEmpty() && checkpoint == null) {
+            return;
+        }
+
+        if (checkpoint == null) {
+            createShadowTables();
+        }
+        String version = checkpoint;
+        for (Path file : files) {
+            upgradeSqlFile(file, dialect);
+            version = getVersion(file);
+            settingRepository.save(new Setting(MOVIE_SHADOW_VERSION, version));
+        }
+
+        swapShadowTables(dialect);
+        settingRepository.save(new Setting(MOVIE_VERSION, version));
+        settingRepository.deleteById(MOVIE_SHADOW_VERSION);
+        log.info("movie data upgraded: {}", version);
+    }
+
+    private boolean shadowTablesExist() {
+        try {
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM movie_shadow WHERE 1 = 0", Integer.class);
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM alias_shadow WHERE 1 = 0", Integer.class);
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM movie_shadow_keys WHERE 1 = 0", Integer.class);
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM alias_shadow_keys WHERE 1 = 0", Integer.class);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 复制线上表作为影子表，同时记下复制时已有的主键，换表时据此区分升级期间新写入的行
+     */
+    private void createShadowTables() {
+        log.info("create movie shadow tables");
+        for (String table : SHADOW_TABLES) {
+            String key = shadowKey(table);
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + table + "_shadow");
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + table + "_shadow_keys");
+            jdbcTemplate.execute("CREATE TABLE " + table + "_shadow AS SELECT * FROM " + table);
+            jdbcTemplate.execute("ALTER TABLE " + table + "_shadow ADD CONSTRAINT " + table + "_shadow_pkey PRIMARY KEY (" + key + ")");
+            jdbcTemplate.execute("CREATE TABLE " + table + "_shadow_keys AS SELECT " + key + " FROM " + table);
+        }
+    }
+
+    private static String shadowKey(String table) {
+        return "movie".equals(table) ? "id" : "name";
+    }
+
+    /**
+     * MySQL 用一条 RENAME TABLE 原子交换；PostgreSQL 在同一个事务里改名并删除旧表；
+     * H2 的DDL会自动提交，但改名只修改元数据，交换窗口很短。
+     */
+    private void swapShadowTables(H2SqlConverter.Dialect dialect) {
+        List<String> sqls = new ArrayList<>();
+        for (String table : SHADOW_TABLES) {
+            // 复制之后才出现在线上表的行是升级期间刮削写入的，差异文件里没有，补进影子表；
+            // 复制时已有但影子表里没有的行是差异文件删除的，不补回
+            String key = shadowKey(table);
+            sqls.add("INSERT INTO " + table + "_shadow SELECT * FROM " + table
+                    + " WHERE " + key + " NOT IN (SELECT " + key + " FROM " + table + "_shadow)"
+                    + " AND " + key + " NOT IN (SELECT " + key + " FROM " + table + "_shadow_keys)");
+            sqls.add("DROP TABLE IF EXISTS " + table + "_old");
+        }
+        if (dialect == H2SqlConverter.Dialect.MYSQL) {
+            sqls.add("RENAME TABLE movie TO movie_old, movie_shadow TO movie, alias TO alias_old, alias_shadow TO alias");
+        } else {
+            for (String table : SHADOW_TABLES) {
+                sqls.add("ALTER TABLE " + table + " RENAME TO " + table + "_old");
+                sqls.add("ALTER TABLE " + table + "_shadow RENAME TO " + table);
+            }
+        }
+        for (String table : SHADOW_TABLES) {
+            sqls.add("DROP TABLE " + table + "_old");
+            sqls.add("DROP TABLE " + table + "_shadow_keys");
+        }
+        if (dialect != H2SqlConverter.Dialect.MYSQL) {
+            // 约束名在模式内唯一，改回原名，下次升级才能再建影子表
+            for (String table : SHADOW_TABLES) {
+                sqls.add("ALTER TABLE " + table + " RENAME CONSTRAINT " + table + "_shadow_pkey TO " + table + "_pkey");
+            }
+        }
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (var statement = connection.createStatement()) {
+                for (String sql : sqls) {
+                    statement.execute(sql);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+        log.info("movie shadow tables swapped");
+    }
+
     private Stream<Path> getSqlFiles(String version) throws IOException {
         double local = Double.parseDouble(version);
         return Files.list(Utils.getDataPath("atv", "sql"))
@@ -288,42 +457,29 @@ public class DoubanService {
         return name.substring(0, index);
     }
 
-    private void upgradeSqlFile(Path file) {
-        try {
-            //jdbcTemplate.execute("RUNSCRIPT FROM '" + file.toString() + "'");
-            H2SqlConverter.Dialect dialect = H2SqlConverter.detect(environment);
-            List<String> lines = Files.readAllLines(file);
-            if (dialect == H2SqlConverter.Dialect.H2) {
-                for (String line : lines) {
-                    try {
-                        jdbcTemplate.execute(line);
-                    } catch (Exception e) {
-                        log.debug("execute sql failed: {}", e);
-                    }
+    /**
+     * 应用一个差异文件，movie/alias 写入影子表，meta 直接写入线上表。
+     * 差异文件是 H2 方言，其他数据库逐条转换；按批执行，批量失败时逐条回退，坏行不会中断整个文件。
+     */
+    private void upgradeSqlFile(Path file, H2SqlConverter.Dialect dialect) throws IOException {
+        log.info("apply movie data file: {}", file);
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        try (Stream<String> lines = Files.lines(file)) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                if (StringUtils.isBlank(line)) {
+                    continue;
                 }
-            } else {
-                // diff files are H2 dialect (U& escapes, "PUBLIC" identifiers) — convert
-                // each statement to the target dialect and apply in batches, falling back
-                // to per-statement execution so one bad line never aborts the whole file.
-                List<String> batch = new ArrayList<>(BATCH_SIZE);
-                for (String line : lines) {
-                    String sql = H2SqlConverter.convert(line, dialect);
-                    if (sql == null) {
-                        continue;
-                    }
-                    batch.add(sql);
-                    if (batch.size() >= BATCH_SIZE) {
-                        executeBatch(batch);
-                    }
+                String sql = H2SqlConverter.convert(H2SqlConverter.toShadow(line), dialect);
+                if (sql == null) {
+                    continue;
+                }
+                batch.add(sql);
+                if (batch.size() >= BATCH_SIZE) {
+                    executeBatch(batch);
                 }
-                executeBatch(batch);
             }
-            String version = getVersion(file);
-            settingRepository.save(new Setting(MOVIE_VERSION, version));
-            log.info("movie data upgraded: {}", version);
-        } catch (Exception e) {
-            log.warn("upgrade SQL file failed: {}", file, e);
         }
+        executeBatch(batch);
     }
 
     private void executeBatch(List<String> batch) {
@@ -608,44 +764,74 @@ public class DoubanService {
         log.info("get {} lines from index file {}", lines.size(), path);
         Site site = siteService.getById(siteId);
         Task task = taskService.addScrapeTask(site);
-        scrapeIndexFile(task, lines, force);
+        try (var ignored = OutboundRateLimiter.background()) {
+            scrapeIndexFile(task, lines, force);
+        }
     }
 
+    /**
+     * 分阶段刮削索引文件：解析并规范化名称，按名称去重后批量匹配本地豆瓣数据，
+     * 只有本地找不到的名称才交给限速的线程池搜索豆瓣。同一部剧的多个季目录只搜索一次。
+     */
     public void scrapeIndexFile(Task task, List<String> lines, boolean force) {
         int count = 0;
-        Set<String> failed = loadFailed();
-        List<String> paths = new ArrayList<>();
-        log.debug("load {} failed names", failed.size());
         taskService.startTask(task.getId());
 
-        for (int i = 0; i < lines.size(); i++) {
-            if (isCancelled(task.getId())) {
-                break;
-            }
-            String line = lines.get(i).trim();
-            if (line.isEmpty() || line.startsWith("-") || line.startsWith("+")) {
-                continue;
-            }
+        try (ProgressFile pathsFile = ProgressFile.open(Utils.getDataPath("atv", "paths.txt"), true);
+             ProgressFile failedFile = ProgressFile.open(Utils.getDataPath("atv", "failed.txt"), false)) {
+            Set<String> failed = failedFile.track(loadFailed());
+            log.debug("load {} failed names", failed.size());
+            Map<String, Movie> local = new HashMap<>();
+            Map<String, Movie> remote = new HashMap<>();
 
-            try {
-                log.debug("handle {} {}", i, line);
-                taskService.updateTaskSummary(task.getId(), (i + 1) + ":" + line);
-                Movie movie = handleIndexLine(i, line, force, failed);
-                if (movie != null) {
-                    count++;
-                    taskService.updateTaskData(task.getId(), "成功刮削数量：" + count);
-                } else {
-                    paths.add(line.split("#")[0]);
+            for (int start = 0; start < lines.size(); start += SCRAPE_CHUNK_SIZE) {
+                if (isCancelled(task.getId())) {
+                    break;
                 }
-            } catch (Exception e) {
-                log.warn("{}: {}", i, line, e);
+
+                List<IndexEntry> entries = parseIndexLines(lines, start, Math.min(start + SCRAPE_CHUNK_SIZE, lines.size()));
+                if (entries.isEmpty()) {
+                    continue;
+                }
+                taskService.updateTaskSummary(task.getId(), (entries.getFirst().index + 1) + ":" + entries.getFirst().path);
+
+                Map<String, Meta> metas = new HashMap<>();
+                for (Meta meta : metaRepository.findByPathIn(entries.stream().map(e -> e.path).toList())) {
+                    metas.put(meta.getPath(), meta);
+                }
+                List<IndexEntry> pending = new ArrayList<>();
+                for (IndexEntry entry : entries) {
+                    Meta meta = metas.get(entry.path);
+                    if (meta != null && meta.getMovie() != null && !force) {
+                        count++;
+                        continue;
+                    }
+                    entry.meta = meta == null ? new Meta() : meta;
+                    pending.add(entry);
+                }
+
+                resolveByIds(pending, scrapeExecutor);
+                for (IndexEntry entry : pending) {
+                    normalizeName(entry);
+                }
+                resolveLocal(pending, failed, local);
+                resolveRemote(pending, failed, local, remote, scrapeExecutor);
+
+                for (IndexEntry entry : pending) {
+                    if (applyIndexEntry(entry, failed, local, remote)) {
+                        count++;
+                    } else {
+                        pathsFile.append(entry.path);
+                    }
+                }
+
+                taskService.updateTaskData(task.getId(), "成功刮削数量：" + count);
+                pathsFile.flush();
+                failedFile.flush();
             }
         }
 
         taskService.completeTask(task.getId());
-
-        writeText("paths.txt", String.join("\n", paths));
-        writeText("failed.txt", String.join("\n", failed));
     }
 
     private static void writeText(String name, String content) {
@@ -656,37 +842,60 @@ public class DoubanService {
         }
     }
 
-    private Movie handleIndexLine(int id, String path, boolean force, Set<String> failed) {
-        String[] parts = path.split("#");
-        path = parts[0];
+    private static final class IndexEntry {
+        private final int index;
+        private final String path;
+        private final String[] parts;
+        private Meta meta;
+        private String name = "";
+        private Movie movie;
+        private String searchName;
+        private String searchKey;
+
+        private IndexEntry(int index, String line) {
+            this.index = index;
+            this.parts = line.split("#");
+            this.path = parts[0];
+        }
+    }
+
+    private List<IndexEntry> parseIndexLines(List<String> lines, int start, int end) {
+        List<IndexEntry> entries = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("-") || line.startsWith("+")) {
+                continue;
+            }
+            entries.add(new IndexEntry(i, line));
+        }
+        return entries;
+    }
 
-        Meta meta = metaRepository.findByPath(path);
-        if (meta == null) {
-            meta = new Meta();
-            meta.setPath(path);
-        } else if (meta.getMovie() != null && !force) {
-            return meta.getMovie();
-        }
-
-        String name = "";
-        Movie movie = null;
-        if (parts.length == 2) {
-            name = TextUtils.fixName(parts[1]);
-        } else if (parts.length > 2) {
-            name = TextUtils.fixName(parts[1]);
-            String number = parts[2];
-            log.debug("{} {}", name, number);
-            if (number.length() > 5) {
-                try {
-                    movie = getById(Integer.parseInt(number));
-                } catch (Exception e) {
-                    log.warn("{} {}", id + 1, path, e);
-                }
-                if (movie != null) {
-                    name = movie.getName();
-                }
+    /**
+     * 索引行里带豆瓣ID的直接按ID获取，本地没有时需要访问豆瓣，放到线程池执行
+     */
+    private void resolveByIds(List<IndexEntry> entries, ExecutorService pool) {
+        Map<IndexEntry, Future<Movie>> futures = new LinkedHashMap<>();
+        for (IndexEntry entry : entries) {
+            if (entry.parts.length > 2 && entry.parts[2].length() > 5) {
+                futures.put(entry, pool.submit(() -> {
+                    try (var ignored = OutboundRateLimiter.background()) {
+                        return getById(Integer.parseInt(entry.parts[2]));
+                    }
+                }));
             }
         }
+        for (var item : futures.entrySet()) {
+            item.getKey().movie = await(item.getValue(), item.getKey());
+        }
+    }
+
+    private void normalizeName(IndexEntry entry) {
+        String path = entry.path;
+        String name = entry.parts.length > 1 ? TextUtils.fixName(entry.parts[1]) : "";
+        if (entry.movie != null) {
+            name = entry.movie.getName();
+        }
         if (name.isBlank()) {
             name = getName(path);
         }
@@ -695,19 +904,19 @@ public class DoubanService {
             name = getParentName(path);
         }
 
-        parts = name.split("丨");
+        String[] parts = name.split("丨");
         if (parts.length > 3) {
             name = parts[0];
         }
 
-        if (id > 0 && id % 1000 == 0) {
-            log.info("{} {} {}", id, name, path);
+        if (entry.index > 0 && entry.index % 1000 == 0) {
+            log.info("{} {} {}", entry.index, name, path);
         }
-
-        if (movie != null && TextUtils.isNormal(name) && TextUtils.isNormal(movie.getName())) {
-            log.info("[{}] - add {} {} for path {}", id, movie.getId(), movie.getName(), path);
-            return updateMeta(path, meta, movie);
+        entry.name = name;
+        if (entry.movie != null && TextUtils.isNormal(name) && TextUtils.isNormal(entry.movie.getName())) {
+            return;
         }
+        entry.movie = null;
 
         if (name.startsWith("Season ")) {
             Matcher m = NUMBER.matcher(name);
@@ -741,62 +950,145 @@ public class DoubanService {
             }
         }
 
-        name = TextUtils.fixName(name);
-        if (failed.contains(name)) {
-            return null;
+        entry.name = TextUtils.fixName(name);
+    }
+
+    /**
+     * 按去重后的名称批量匹配别名和电影名，精确匹配不到的再逐个走 {@link #getByName(String)} 的模糊规则
+     */
+    private void resolveLocal(List<IndexEntry> entries, Set<String> failed, Map<String, Movie> local) {
+        Set<String> names = new HashSet<>();
+        for (IndexEntry entry : entries) {
+            if (entry.movie == null && !failed.contains(entry.name) && !local.containsKey(entry.name)) {
+                names.add(entry.name);
+            }
+        }
+        if (names.isEmpty()) {
+            return;
+        }
+
+        for (Alias alias : aliasRepository.findAllById(names)) {
+            local.put(alias.getName(), alias.getMovie());
+        }
+
+        Set<String> exact = new HashSet<>();
+        for (String name : names) {
+            if (!local.containsKey(name) && name.equals(TextUtils.collapseCjkSpaces(TextUtils.fixName(TextUtils.cleanMediaTitle(name))))) {
+                exact.add(name);
+            }
+        }
+        Map<String, List<Movie>> movies = new HashMap<>();
+        if (!exact.isEmpty()) {
+            for (Movie movie : movieRepository.findByNameIn(exact)) {
+                movies.computeIfAbsent(movie.getName(), k -> new ArrayList<>()).add(movie);
+            }
+        }
+        for (var item : movies.entrySet()) {
+            local.put(item.getKey(), pickBest(item.getValue(), getYearFromText(item.getKey())));
+        }
+
+        for (String name : names) {
+            if (!local.containsKey(name)) {
+                local.put(name, getByName(name));
+            }
         }
+        log.debug("resolve {} names locally, {} exact matches", names.size(), movies.size());
+    }
 
-        movie = getByName(name);
-        if (movie == null && TextUtils.isNormal(name)) {
-            String newname = TextUtils.updateName(name);
+    /**
+     * 本地找不到的名称按搜索词和年份去重后并发搜索豆瓣，请求速率由 {@link OutboundRateLimiter} 控制
+     */
+    private void resolveRemote(List<IndexEntry> entries, Set<String> failed, Map<String, Movie> local,
+                               Map<String, Movie> remote, ExecutorService pool) {
+        Map<String, Future<Movie>> futures = new LinkedHashMap<>();
+        for (IndexEntry entry : entries) {
+            if (entry.movie != null || failed.contains(entry.name) || local.get(entry.name) != null
+                    || !TextUtils.isNormal(entry.name)) {
+                continue;
+            }
+            String newname = TextUtils.updateName(entry.name);
             if (failed.contains(newname) || !TextUtils.isNormal(newname)) {
-                log.debug("exclude {}: {}", path, newname);
-                failed.add(name);
-                return null;
+                log.debug("exclude {}: {}", entry.path, newname);
+                failed.add(entry.name);
+                continue;
             }
 
-            try {
-                log.info("[{}] handle name: {} - path: {}", id, newname, path);
-                movie = search(newname, getYearFromPath(path));
-            } catch (RuntimeException e) {
-                throw e;
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            } finally {
-                try {
-                    Thread.sleep(2000L);
-                } catch (InterruptedException e) {
-                    Thread.interrupted();
+            Integer year = getYearFromPath(entry.path);
+            entry.searchName = newname;
+            entry.searchKey = newname + "#" + year;
+            if (remote.containsKey(entry.searchKey) || futures.containsKey(entry.searchKey)) {
+                continue;
+            }
+            log.info("[{}] handle name: {} - path: {}", entry.index, newname, entry.path);
+            futures.put(entry.searchKey, pool.submit(() -> {
+                try (var ignored = OutboundRateLimiter.background()) {
+                    return search(newname, year);
                 }
+            }));
+        }
+
+        for (var item : futures.entrySet()) {
+            try {
+                remote.put(item.getKey(), item.getValue().get());
+            } catch (ExecutionException e) {
+                // 网络错误不缓存，下次任务重试
+                log.warn("search {} failed", item.getKey(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
+        }
+    }
+
+    private Movie await(Future<Movie> future, IndexEntry entry) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            log.warn("{} {}", entry.index + 1, entry.path, e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private boolean applyIndexEntry(IndexEntry entry, Set<String> failed, Map<String, Movie> local, Map<String, Movie> remote) {
+        String path = entry.path;
+        String name = entry.name;
+        Movie movie = entry.movie;
+        if (movie != null) {
+            log.info("[{}] - add {} {} for path {}", entry.index, movie.getId(), movie.getName(), path);
+            updateMeta(path, entry.meta, movie);
+            return true;
+        }
+        if (failed.contains(name) && entry.searchKey == null) {
+            return false;
+        }
 
+        movie = local.get(name);
+        if (movie == null && entry.searchKey != null) {
+            if (!remote.containsKey(entry.searchKey)) {
+                return false;
+            }
             if (failed.contains(getParent(path))) {
-                return null;
+                return false;
             }
-
+            movie = remote.get(entry.searchKey);
             if (movie != null && TextUtils.isNormal(movie.getName())) {
-                meta.setPath(path);
-                meta.setMovie(movie);
-                meta.setYear(movie.getYear());
-                meta.setName(movie.getName());
-                if (StringUtils.isNotBlank(movie.getDbScore())) {
-                    meta.setScore((int) (Double.parseDouble(movie.getDbScore()) * 10));
-                }
-                metaRepository.save(meta);
-                log.info("{} - add {} '{}' for path {}", id, movie.getId(), movie.getName(), path);
-                return movie;
+                updateMeta(path, entry.meta, movie);
+                log.info("{} - add {} '{}' for path {}", entry.index, movie.getId(), movie.getName(), path);
+                return true;
             }
         }
 
         if (movie != null && TextUtils.isNormal(name) && TextUtils.isNormal(movie.getName())) {
-            log.info("[{}] add {} {} for path {}", id, movie.getId(), movie.getName(), path);
-            return updateMeta(path, meta, movie);
-        } else {
-            log.debug("add failed: {}", name);
-            failed.add(name);
+            log.info("[{}] add {} {} for path {}", entry.index, movie.getId(), movie.getName(), path);
+            updateMeta(path, entry.meta, movie);
+            return true;
         }
-
-        return null;
+        log.debug("add failed: {}", name);
+        failed.add(name);
+        return false;
     }
 
     private boolean isCancelled(Integer taskId) {
@@ -1098,10 +1390,11 @@ public class DoubanService {
                 .addHeader("Referer", "https://movie.douban.com/")
                 .build();
 
-        Call call = client.newCall(request);
-        Response response = call.execute();
-        String html = response.body().string();
-        response.close();
+        String html = circuitBreaker.call("douban", () -> {
+            try (Response response = client.newCall(request).execute()) {
+                return response.body().string();
+            }
+        });
 
         if (html.contains("页面不存在")) {
             throw new NotFoundException("页面不存在: " + url);
@@ -3,7 +3,6 @@ package cn.har01d.alist_tvbox.service;
 import cn.har01d.alist_tvbox.entity.Task;
 import cn.har01d.alist_tvbox.util.Utils;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.springframework.boot.restclient.RestTemplateBuilder;
@@ -33,9 +32,6 @@ import java.util.Enumeration;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 
@@ -79,9 +75,11 @@ public class FileDownloader {
     private final TaskService taskService;
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
 
-    public FileDownloader(TaskService taskService, RestTemplateBuilder builder, GitHubProxyService gitHubProxyService, ObjectMapper objectMapper) {
+    public FileDownloader(TaskService taskService, RestTemplateBuilder builder, GitHubProxyService gitHubProxyService, ObjectMapper objectMapper, UpstreamExecutor upstreamExecutor) {
         this.taskService = taskService;
+        this.executor = upstreamExecutor.lane("file-downloader", 1, 100);
         this.restTemplate = builder
                 .connectTimeout(Duration.ofSeconds(5))
                 .readTimeout(Duration.ofSeconds(10))
@@ -106,16 +104,6 @@ public class FileDownloader {
         zxDataDir = Utils.getDataPath("zx");
     }
 
-    private final ExecutorService executor = new ThreadPoolExecutor(
-            1, 1,
-            0L, TimeUnit.MILLISECONDS,
-            new LinkedBlockingQueue<>(),
-            r -> {
-                Thread t = new Thread(r, "file-downloader");
-                t.setDaemon(true);
-                return t;
-            }
-    );
 
     public Task runTask(String type, String... args) {
         Task task = taskService.addDownloadTask(type);
@@ -684,17 +672,4 @@ public class FileDownloader {
                     }
                 });
     }
-
-    @PreDestroy
-    public void cleanup() {
-        executor.shutdown();
-        try {
-            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
-                executor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            executor.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
-    }
 }
@@ -7,6 +7,10 @@ import cn.har01d.alist_tvbox.dto.Index115SearchData;
 import cn.har01d.alist_tvbox.entity.Site;
 import cn.har01d.alist_tvbox.exception.BadRequestException;
 import cn.har01d.alist_tvbox.util.Constants;
+import cn.har01d.alist_tvbox.util.Utils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.restclient.RestTemplateBuilder;
 import org.springframework.core.ParameterizedTypeReference;
@@ -18,20 +22,152 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * PowerList /index115 接口客户端
+ * 浏览、搜索、详情和播放链接按类型缓存，相同的并发请求只发起一次远程调用。
+ */
 @Slf4j
 @Service
 public class Index115Client {
+    private static final Duration BROWSE_TTL = Duration.ofMinutes(10);
+    private static final Duration SEARCH_TTL = Duration.ofMinutes(5);
+    private static final Duration DETAIL_TTL = Duration.ofMinutes(30);
+    private static final Duration LINK_TTL = Duration.ofMinutes(5);
+    private static final Duration MAX_LINK_TTL = Duration.ofHours(2);
+    private static final Duration LINK_MARGIN = Duration.ofMinutes(1);
+    private static final Pattern LINK_EXPIRES = Pattern.compile("[?&](?:t|expires|Expires)=(\\d{10})(?:&|$)");
+
     private final RestTemplate restTemplate;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Cache<String, Cached> cache = Caffeine.newBuilder()
+            .maximumSize(2000)
+            .expireAfter(new Expiry<String, Cached>() {
+                @Override
+                public long expireAfterCreate(String key, Cached value, long currentTime) {
+                    return value.ttl.toNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Cached value, long currentTime, long currentDuration) {
+                    return value.ttl.toNanos();
+                }
+
+                @Override
+                public long expireAfterRead(String key, Cached value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    private record Cached(Object value, Duration ttl) {
+    }
 
     public Index115Client(RestTemplateBuilder builder) {
         this.restTemplate = builder.build();
     }
 
     public List<Index115File> browse(Site site, String shareCode, String receiveCode, String parentId) {
+        String key = key(site, "browse", shareCode, receiveCode, parentId);
+        return cached(key, () -> new Cached(doBrowse(site, shareCode, receiveCode, parentId), BROWSE_TTL));
+    }
+
+    public Index115SearchData search(Site site, String query, int page, int perPage) {
+        String key = key(site, "search", query, String.valueOf(page), String.valueOf(perPage));
+        return cached(key, () -> new Cached(doSearch(site, query, page, perPage), SEARCH_TTL));
+    }
+
+    public Index115File getFile(Site site, String id) {
+        String key = key(site, "detail", id);
+        return cached(key, () -> new Cached(doGetFile(site, id), DETAIL_TTL));
+    }
+
+    public String resolveLink(Site site, String cookie, String shareCode, String receiveCode, String fileId) {
+        String key = key(site, "link", cookie == null ? "" : Utils.md5(cookie), shareCode, receiveCode, fileId);
+        return cached(key, () -> {
+            Index115LinkData data = doResolveLink(site, cookie, shareCode, receiveCode, fileId);
+            if (data == null) {
+                throw new BadRequestException("empty PowerList link");
+            }
+            return new Cached(data.getUrl(), linkTtl(data, System.currentTimeMillis()));
+        });
+    }
+
+    /**
+     * 播放链接的缓存时间：优先使用接口返回的有效期，其次是链接参数中的过期时间戳，
+     * 提前一分钟过期，避免把即将失效的链接交给播放器。
+     */
+    static Duration linkTtl(Index115LinkData data, long now) {
+        Duration ttl = LINK_TTL;
+        if (data.getExpiredIn() > 0) {
+            ttl = Duration.ofSeconds(data.getExpiredIn());
+        } else if (data.getUrl() != null) {
+            Matcher m = LINK_EXPIRES.matcher(data.getUrl());
+            if (m.find()) {
+                ttl = Duration.ofMillis(Long.parseLong(m.group(1)) * 1000 - now);
+            }
+        }
+        ttl = ttl.minus(LINK_MARGIN);
+        if (ttl.compareTo(MAX_LINK_TTL) > 0) {
+            return MAX_LINK_TTL;
+        }
+        return ttl.isNegative() ? Duration.ZERO : ttl;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cached(String key, Supplier<Cached> loader) {
+        Cached cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return (T) cached.value;
+        }
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException ex) {
+                    throw ex;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            cached = loader.get();
+            if (cached.value != null && cached.ttl.isPositive()) {
+                cache.put(key, cached);
+            }
+            future.complete(cached.value);
+            return (T) cached.value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private static String key(Site site, String type, String... parts) {
+        StringBuilder sb = new StringBuilder(type).append('|').append(site.getId()).append('|').append(site.getUrl());
+        for (String part : parts) {
+            sb.append('|').append(part == null ? "" : part);
+        }
+        return sb.toString();
+    }
+
+    private List<Index115File> doBrowse(Site site, String shareCode, String receiveCode, String parentId) {
         String url = site.getUrl() + "/api/index115/browse?share_code={sc}&receive_code={rc}&parent_id={pid}";
         Map<String, String> vars = new HashMap<>();
         vars.put("sc", shareCode == null ? "" : shareCode);
@@ -40,7 +176,7 @@ public class Index115Client {
         return get(site, url, vars, new ParameterizedTypeReference<>() {});
     }
 
-    public Index115SearchData search(Site site, String query, int page, int perPage) {
+    private Index115SearchData doSearch(Site site, String query, int page, int perPage) {
         String url = site.getUrl() + "/api/index115/search?q={q}&page={page}&per_page={pp}";
         Map<String, String> vars = new HashMap<>();
         vars.put("q", query);
@@ -49,14 +185,14 @@ public class Index115Client {
         return get(site, url, vars, new ParameterizedTypeReference<>() {});
     }
 
-    public Index115File getFile(Site site, String id) {
+    private Index115File doGetFile(Site site, String id) {
         String url = site.getUrl() + "/api/index115/detail?id={id}";
         Map<String, String> vars = new HashMap<>();
         vars.put("id", id == null ? "" : id);
         return get(site, url, vars, new ParameterizedTypeReference<>() {});
     }
 
-    public String resolveLink(Site site, String cookie, String shareCode, String receiveCode, String fileId) {
+    private Index115LinkData doResolveLink(Site site, String cookie, String shareCode, String receiveCode, String fileId) {
         String url = site.getUrl() + "/api/index115/link";
         HttpHeaders h = headers(site);
         h.setContentType(MediaType.APPLICATION_JSON);
@@ -67,7 +203,7 @@ public class Index115Client {
         body.put("file_id", fileId);
         ResponseEntity<Index115Response<Index115LinkData>> resp = restTemplate.exchange(
                 url, HttpMethod.POST, new HttpEntity<>(body, h), new ParameterizedTypeReference<>() {});
-        return unwrap(resp).getUrl();
+        return unwrap(resp);
     }
 
     private <T> T get(Site site, String url, Map<String, String> vars, ParameterizedTypeReference<Index115Response<T>> type) {
@@ -21,28 +21,42 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 import java.util.zip.ZipOutputStream;
 
 @Slf4j
 @Service
 public class IndexFileService {
+    private static final long PROGRESS_INTERVAL_MS = 3000;
     private final int maxFolderSize = 30;
+    private final int validateConcurrency = 4;
     private final AListService aListService;
     private final SettingService settingService;
     private final TaskService taskService;
     private final AppProperties appProperties;
+    private final OutboundRateLimiter rateLimiter;
+    private final ExecutorService validateExecutor;
 
-    public IndexFileService(AListService aListService, SettingService settingService, TaskService taskService, AppProperties appProperties) {
+    public IndexFileService(AListService aListService, SettingService settingService, TaskService taskService, AppProperties appProperties, OutboundRateLimiter rateLimiter, UpstreamExecutor upstreamExecutor) {
         this.aListService = aListService;
         this.settingService = settingService;
         this.taskService = taskService;
         this.appProperties = appProperties;
+        this.rateLimiter = rateLimiter;
+        this.validateExecutor = upstreamExecutor.lane("index-validate", validateConcurrency, 1000);
     }
 
     public Page<String> getIndexContent(Pageable pageable, String siteId, String index) throws IOException {
@@ -238,13 +252,10 @@ public class IndexFileService {
         taskService.updateTaskSummary(task.getId(), "校验" + paths.size() + "个路径");
         log.info("validate {} paths: {}", paths.size(), paths);
 
-        List<String> results = new ArrayList<>();
-        for (var request : requests) {
-            if (taskService.isCancelled(task.getId())) {
-                log.warn("task is cancelled");
-                return;
-            }
-            results.addAll(validate(task.getId(), request));
+        List<String> results = validate(task.getId(), requests, paths.size());
+        if (taskService.isCancelled(task.getId())) {
+            log.warn("task is cancelled");
+            return;
         }
         log.info("invalid paths: {} {}", results.size(), results);
         taskService.completeTask(task.getId(), results.size() + "个失效路径", String.join("\n", results));
@@ -254,33 +265,120 @@ public class IndexFileService {
         }
     }
 
-    public List<String> validate(int taskId, ValidateRequest request) throws InterruptedException {
-        List<String> results = new ArrayList<>();
-        if (taskService.isCancelled(taskId)) {
-            log.warn("task is cancelled");
-            return results;
+    /**
+     * 并发校验路径树，子目录只在父目录校验通过后才提交，父目录失效时整棵子树被跳过。
+     * 所有工作线程作为后台任务共享限速器中 validate 的令牌桶，控制对AList的请求速率。
+     */
+    public List<String> validate(int taskId, List<ValidateRequest> requests, int total) throws InterruptedException {
+        ValidateContext context = new ValidateContext(taskId, total);
+        try {
+            for (var request : requests) {
+                context.submit(validateExecutor, request);
+            }
+            context.await();
+        } catch (InterruptedException e) {
+            // 通道是共享的，不能关闭，让已排队的任务直接跳过
+            context.cancelled = true;
+            throw e;
         }
 
-        String path = request.getPath();
-        var result = aListService.validate(path);
-        if (!result.success()) {
-            if (result.message().contains("object not found")) {
-                results.add(path);
+        List<String> results = new ArrayList<>(context.invalid);
+        Collections.sort(results);
+        return results;
+    }
+
+    private final class ValidateContext {
+        private final int taskId;
+        private final int total;
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicInteger checked = new AtomicInteger();
+        private final AtomicLong lastReport = new AtomicLong(System.currentTimeMillis());
+        private final Queue<String> invalid = new ConcurrentLinkedQueue<>();
+        private volatile boolean cancelled;
+
+        ValidateContext(int taskId, int total) {
+            this.taskId = taskId;
+            this.total = total;
+        }
+
+        void submit(ExecutorService executor, ValidateRequest request) {
+            pending.incrementAndGet();
+            Runnable task = () -> {
+                try (var ignored = OutboundRateLimiter.background()) {
+                    check(executor, request);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancelled = true;
+                } catch (Exception e) {
+                    log.warn("validate path {} failed", request.getPath(), e);
+                } finally {
+                    arrive();
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                if (executor.isShutdown()) {
+                    arrive();
+                } else {
+                    // 队列已满时在当前线程校验，不丢弃子目录
+                    task.run();
+                }
             }
-            log.warn("validate path {} failed: {}", path, result.message());
-            return results;
         }
 
-        if (request.getChildren().size() >= maxFolderSize) {
-            return results;
+        void await() throws InterruptedException {
+            arrive();
+            done.await();
         }
 
-        for (var child : request.getChildren()) {
-            Thread.sleep(500);
-            results.addAll(validate(taskId, child));
+        private void arrive() {
+            if (pending.decrementAndGet() == 0) {
+                done.countDown();
+            }
         }
 
-        return results;
+        private void check(ExecutorService executor, ValidateRequest request) throws InterruptedException {
+            if (cancelled) {
+                return;
+            }
+
+            rateLimiter.acquire("validate");
+            String path = request.getPath();
+            var result = aListService.validate(path);
+            report();
+            if (!result.success()) {
+                if (result.message().contains("object not found")) {
+                    invalid.add(path);
+                }
+                log.warn("validate path {} failed: {}", path, result.message());
+                return;
+            }
+
+            if (request.getChildren().size() >= maxFolderSize) {
+                return;
+            }
+
+            for (var child : request.getChildren()) {
+                submit(executor, child);
+            }
+        }
+
+        private void report() {
+            int count = checked.incrementAndGet();
+            long now = System.currentTimeMillis();
+            long last = lastReport.get();
+            if (now - last < PROGRESS_INTERVAL_MS || !lastReport.compareAndSet(last, now)) {
+                return;
+            }
+            if (taskService.isCancelled(taskId)) {
+                log.warn("task is cancelled");
+                cancelled = true;
+                return;
+            }
+            taskService.updateTaskSummary(taskId, "校验" + total + "个路径，已完成" + count + "个，失效" + invalid.size() + "个");
+        }
     }
 
     private boolean isMediaFile(String path) {
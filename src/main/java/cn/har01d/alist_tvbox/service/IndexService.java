@@ -25,7 +25,6 @@ import cn.har01d.alist_tvbox.util.TextUtils;
 import cn.har01d.alist_tvbox.util.Utils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -45,17 +44,21 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Writer;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalTime;
@@ -67,8 +70,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
@@ -83,12 +84,21 @@ import static cn.har01d.alist_tvbox.util.Constants.INDEX_VERSION;
 @Slf4j
 @Service
 public class IndexService {
-    private static final Pattern SEASON1 = Pattern.compile("Season ?\\d{1,2}.*");
-    private static final Pattern SEASON2 = Pattern.compile("SE\\d{1,2}.*");
-    private static final Pattern SEASON3 = Pattern.compile("^[Ss](\\d{1,2})$");
-    private static final Pattern SEASON4 = Pattern.compile("第.{1,3}季.*");
-    private static final Pattern EPISODE = Pattern.compile("S\\d+E\\d+");
-    private static final Pattern EPISODE1 = Pattern.compile("全\\d+集");
+    /**
+     * 正则表放在独立的持有类中，native 镜像构建期初始化，服务类本身仍在运行期初始化
+     */
+    static final class Patterns {
+        static final Pattern SEASON1 = Pattern.compile("Season ?\\d{1,2}.*");
+        static final Pattern SEASON2 = Pattern.compile("SE\\d{1,2}.*");
+        static final Pattern SEASON3 = Pattern.compile("^[Ss](\\d{1,2})$");
+        static final Pattern SEASON4 = Pattern.compile("第.{1,3}季.*");
+        static final Pattern EPISODE = Pattern.compile("S\\d+E\\d+");
+        static final Pattern EPISODE1 = Pattern.compile("全\\d+集");
+
+        private Patterns() {
+        }
+    }
+
 
     private final AListService aListService;
     private final SiteService siteService;
@@ -103,7 +113,8 @@ public class IndexService {
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
     private final Environment environment;
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ExecutorService executor;
+    private final OutboundRateLimiter rateLimiter;
 
     public IndexService(AListService aListService,
                         SiteService siteService,
@@ -117,7 +128,9 @@ public class IndexService {
                         MetaRepository metaRepository,
                         RestTemplateBuilder builder,
                         ObjectMapper objectMapper,
-                        Environment environment) {
+                        Environment environment,
+                        UpstreamExecutor upstreamExecutor,
+                        OutboundRateLimiter rateLimiter) {
         this.aListService = aListService;
         this.siteService = siteService;
         this.taskService = taskService;
@@ -131,10 +144,12 @@ public class IndexService {
         this.restTemplate = builder
                 .defaultHeader(HttpHeaders.ACCEPT, Constants.ACCEPT)
                 .defaultHeader(HttpHeaders.USER_AGENT, Constants.USER_AGENT1)
+                .additionalInterceptors(rateLimiter)
                 .build();
         this.objectMapper = objectMapper;
+        this.rateLimiter = rateLimiter;
         this.environment = environment;
-        updateIndexFile();
+        this.executor = upstreamExecutor.lane("index", 1, 100);
     }
 
     @PostConstruct
@@ -454,7 +469,7 @@ public class IndexService {
         Task task = taskService.addIndexTask(site, indexRequest.getIndexName());
 
         executor.submit(() -> {
-            try {
+            try (var ignored = OutboundRateLimiter.background()) {
                 index(indexRequest, site, task);
             } catch (Exception e) {
                 log.warn("index failed", e);
@@ -479,20 +494,20 @@ public class IndexService {
         List<String> reset = paths.stream().filter(e -> e.startsWith(">")).map(e -> e.substring(1)).toList();
         paths.removeIf(e -> excludes.contains("-" + e));
         paths.removeIf(e -> reset.contains(">" + e));
-        if (indexRequest.isIncremental()) {
-            removeLines(file, paths, reset);
-        }
 
+        // 增量模式先流式复制旧索引中未被替换的行到临时文件，再追加新结果，完成后原子替换
+        File output = indexRequest.isIncremental() ? new File(dir, indexRequest.getIndexName() + ".txt.tmp") : file;
         String summary;
-        try (FileWriter writer = new FileWriter(file, indexRequest.isIncremental());
+        try (FileWriter writer = new FileWriter(output);
              FileWriter writer2 = new FileWriter(info)) {
+            List<String> excluded = indexRequest.isIncremental() ? copyLines(file, writer, paths, reset) : List.of();
             Instant time = Instant.now();
             taskService.startTask(task.getId());
             String detail = getTaskDetails(paths) + "\n\n索引文件:\n" + file.getAbsolutePath();
             taskService.updateTaskData(task.getId(), detail);
             IndexContext context = new IndexContext(indexRequest, site, writer, task.getId());
             context.getExcludes().addAll(excludes);
-            context.getExcludes().addAll(loadExcluded(file));
+            context.getExcludes().addAll(excluded);
             int total = 0;
             for (String path : indexRequest.getPaths()) {
                 if (isCancelled(context)) {
@@ -518,6 +533,14 @@ public class IndexService {
             writer2.write(time.toString());
             log.info("index stats: {}", context.stats);
             summary = context.stats.toString();
+        } catch (IOException | RuntimeException e) {
+            if (output != file) {
+                Files.deleteIfExists(output.toPath());
+            }
+            throw e;
+        }
+        if (output != file) {
+            Files.move(output.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         }
 
         if (indexRequest.isCompress()) {
@@ -593,39 +616,42 @@ public class IndexService {
         return task.getStatus() == TaskStatus.COMPLETED && task.getResult() == TaskResult.CANCELLED;
     }
 
-    private void removeLines(File file, List<String> prefix, List<String> reset) {
+    /**
+     * 逐行复制旧索引文件，跳过需要重新索引的路径，返回保留下来的排除规则
+     */
+    private List<String> copyLines(File file, Writer writer, List<String> prefix, List<String> reset) throws IOException {
+        List<String> excluded = new ArrayList<>();
         if (!file.exists()) {
-            return;
+            return excluded;
         }
 
         prefix.addAll(reset);
-        try {
-            List<String> lines = Files.readAllLines(file.toPath())
-                    .stream()
-                    .filter(path -> prefix.stream().noneMatch(path::startsWith))
-                    .toList();
-
-            try (FileWriter writer = new FileWriter(file)) {
-                IOUtils.writeLines(lines, null, writer);
+        int removed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (prefix.stream().anyMatch(line::startsWith)) {
+                    removed++;
+                    continue;
+                }
+                if (line.startsWith("-")) {
+                    excluded.add("^" + line.substring(1) + "$");
+                }
+                writer.write(line);
+                writer.write("\n");
             }
-        } catch (Exception e) {
-            log.warn("", e);
         }
-    }
-
-    private List<String> loadExcluded(File file) throws IOException {
-        return Files.readAllLines(file.toPath())
-                .stream()
-                .filter(path -> path.startsWith("-"))
-                .map(path -> "^" + path.substring(1) + "$")
-                .toList();
+        log.debug("remove {} lines from {}", removed, file);
+        return excluded;
     }
 
     private void zipFile(File file, File info, File output) throws IOException {
-        try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(output.toPath()))) {
+        File temp = new File(output.getParentFile(), output.getName() + ".tmp");
+        try (ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(temp.toPath())))) {
             addZipEntry(zipOut, file);
             addZipEntry(zipOut, info);
         }
+        Files.move(temp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     private void addZipEntry(ZipOutputStream zipOut, File file) throws IOException {
@@ -740,11 +766,7 @@ public class IndexService {
                                 continue;
                             }
 
-//                            if (context.getIndexRequest().getSleep() > 0) {
-//                                log.debug("sleep {}", context.getIndexRequest().getSleep());
-//                                Thread.sleep(context.getIndexRequest().getSleep());
-//                            }
-                            Thread.sleep(1000);
+                            rateLimiter.acquire("index");
 
                             if (isCancelled(context)) {
                                 break;
@@ -808,7 +830,7 @@ public class IndexService {
         }
 
         double threshold = files.size() * 0.9;
-        long count = files.stream().filter(e -> EPISODE.matcher(e).find()).count();
+        long count = files.stream().filter(e -> Patterns.EPISODE.matcher(e).find()).count();
         if (count >= threshold) {
             return true;
         }
@@ -933,10 +955,10 @@ public class IndexService {
     }
 
     private boolean isMovie(String path) {
-        if (SEASON1.matcher(path).find()
-                || SEASON2.matcher(path).find()
-                || SEASON4.matcher(path).find()
-                || EPISODE1.matcher(path).find()
+        if (Patterns.SEASON1.matcher(path).find()
+                || Patterns.SEASON2.matcher(path).find()
+                || Patterns.SEASON4.matcher(path).find()
+                || Patterns.EPISODE1.matcher(path).find()
         ) {
             return false;
         }
@@ -949,11 +971,11 @@ public class IndexService {
     }
 
     private static boolean isSeason(String name) {
-        return SEASON1.matcher(name).matches()
-                || SEASON2.matcher(name).matches()
-                || SEASON3.matcher(name).matches()
-                || SEASON4.matcher(name).matches()
-                || EPISODE1.matcher(name).find()
+        return Patterns.SEASON1.matcher(name).matches()
+                || Patterns.SEASON2.matcher(name).matches()
+                || Patterns.SEASON3.matcher(name).matches()
+                || Patterns.SEASON4.matcher(name).matches()
+                || Patterns.EPISODE1.matcher(name).find()
                 ;
     }
 
@@ -1057,23 +1079,4 @@ public class IndexService {
             return url;
         }
     }
-
-    @PreDestroy
-    public void cleanup() {
-        log.info("Shutting down IndexService executor");
-        executor.shutdown();
-        try {
-            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
-                log.warn("Executor did not terminate in time, forcing shutdown");
-                executor.shutdownNow();
-                if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
-                    log.error("Executor did not terminate after forced shutdown");
-                }
-            }
-        } catch (InterruptedException e) {
-            log.warn("Interrupted while waiting for executor to terminate", e);
-            executor.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
-    }
 }
@@ -0,0 +1,70 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.tvbox.MovieList;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 首页推荐和刮削分类列表缓存
+ * Meta写入时由 {@link cn.har01d.alist_tvbox.entity.MetaListener} 失效，批量SQL更新和租户变更由调用方失效。
+ * 相同请求并发时只查询一次数据库，其余请求等待结果。
+ */
+@Slf4j
+@Component
+public class MetaListCache {
+    private final Cache<String, MovieList> cache = Caffeine.newBuilder()
+            .maximumSize(500)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+    private final Map<String, CompletableFuture<MovieList>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    public MovieList get(String key, Supplier<MovieList> loader) {
+        // 版本号使失效前开始的查询不会把旧结果放回缓存
+        key = version.get() + "|" + key;
+        MovieList result = cache.getIfPresent(key);
+        if (result != null) {
+            return result;
+        }
+
+        CompletableFuture<MovieList> future = new CompletableFuture<>();
+        CompletableFuture<MovieList> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException ex) {
+                    throw ex;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            result = loader.get();
+            cache.put(key, result);
+            future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    public void invalidate() {
+        version.incrementAndGet();
+        cache.invalidateAll();
+    }
+}
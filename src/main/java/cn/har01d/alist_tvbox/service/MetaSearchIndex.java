@@ -0,0 +1,254 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.entity.Meta;
+import cn.har01d.alist_tvbox.entity.MetaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Meta路径和名称的内存二元组(bigram)倒排索引
+ * 搜索时先通过索引求出候选ID，再按ID、关键词和过滤条件分页查询数据库，替代全表扫描的 LIKE '%kw%'。
+ * JPA写入通过 {@link cn.har01d.alist_tvbox.entity.MetaListener} 增量维护，SQL批量导入后按记录数变化自动重建。
+ */
+@Slf4j
+@Component
+public class MetaSearchIndex {
+    private static final int MAX_CANDIDATES = 5000;
+    private static final int MAX_PENDING = 10000;
+    private static final long CHECK_INTERVAL_MS = 60_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MetaRepository metaRepository;
+    private final Map<Integer, String> pending = new ConcurrentHashMap<>();
+    private final AtomicLong delta = new AtomicLong();
+    private final AtomicBoolean building = new AtomicBoolean();
+    private volatile Snapshot snapshot;
+    private volatile long lastCheck;
+
+    private record Snapshot(Map<Integer, int[]> postings, long count) {
+    }
+
+    public MetaSearchIndex(JdbcTemplate jdbcTemplate, MetaRepository metaRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.metaRepository = metaRepository;
+    }
+
+    /**
+     * 搜索路径或名称包含关键词的Meta，按时间倒序分页。
+     * 候选ID、关键词校验、过滤条件、排序和分页合成一条查询，只取当前页。
+     *
+     * @param filter 评分、年份等附加条件，可以为空
+     * @return 索引未就绪、关键词过短或候选过多时返回null，调用方应回退到数据库查询
+     */
+    public List<Meta> search(String keyword, Specification<Meta> filter, int page, int size) {
+        Set<Integer> ids = candidates(keyword);
+        if (ids == null) {
+            return null;
+        }
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // 二元组只能缩小范围，仍需按关键词校验路径或名称
+        Specification<Meta> idIn = (root, query, cb) -> root.get("id").in(ids);
+        Specification<Meta> spec = idIn.and(TvBoxService.keywordFilter(keyword));
+        if (filter != null) {
+            spec = spec.and(filter);
+        }
+        return metaRepository.findAll(spec, PageRequest.of(Math.max(0, page - 1), size, Sort.Direction.DESC, "time", "id")).getContent();
+    }
+
+    /**
+     * 路径和名称拼成一个文本建立索引
+     */
+    private static String text(String path, String name) {
+        if (name == null || name.isEmpty()) {
+            return path;
+        }
+        return path == null ? name : path + "\n" + name;
+    }
+
+    Set<Integer> candidates(String keyword) {
+        if (keyword == null || keyword.length() < 2) {
+            return null;
+        }
+
+        Snapshot current = snapshot;
+        checkStale(current);
+        if (current == null) {
+            return null;
+        }
+
+        int[] grams = grams(keyword);
+        int[][] lists = new int[grams.length][];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = current.postings.get(grams[i]);
+            if (lists[i] == null) {
+                lists[i] = new int[0];
+            }
+        }
+        Arrays.sort(lists, Comparator.comparingInt(a -> a.length));
+
+        Set<Integer> result = new LinkedHashSet<>();
+        outer:
+        for (int id : lists[0]) {
+            for (int i = 1; i < lists.length; i++) {
+                if (Arrays.binarySearch(lists[i], id) < 0) {
+                    continue outer;
+                }
+            }
+            result.add(id);
+            if (result.size() > MAX_CANDIDATES) {
+                log.debug("too many candidates for {}", keyword);
+                return null;
+            }
+        }
+
+        pending.forEach((id, text) -> {
+            if (text.contains(keyword)) {
+                result.add(id);
+            }
+        });
+        return result;
+    }
+
+    public void add(Integer id, String path, String name) {
+        String text = text(path, name);
+        if (id == null || text == null || snapshot == null) {
+            return;
+        }
+        pending.put(id, text);
+        if (pending.size() > MAX_PENDING) {
+            rebuild();
+        }
+    }
+
+    public void onCreated(Integer id, String path, String name) {
+        delta.incrementAndGet();
+        add(id, path, name);
+    }
+
+    public void onRemoved(Integer id) {
+        delta.decrementAndGet();
+    }
+
+    /**
+     * 绕过JPA的批量修改(如导入SQL)后调用，下次搜索前后台重建索引。
+     */
+    public void invalidate() {
+        if (snapshot != null) {
+            rebuild();
+        }
+    }
+
+    private void checkStale(Snapshot current) {
+        long now = System.currentTimeMillis();
+        if (current != null && now - lastCheck < CHECK_INTERVAL_MS) {
+            return;
+        }
+        lastCheck = now;
+        if (current == null) {
+            rebuild();
+            return;
+        }
+
+        try {
+            Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM meta", Long.class);
+            if (count != null && count != current.count + delta.get()) {
+                log.info("meta count changed: {} -> {}, rebuild search index", current.count + delta.get(), count);
+                rebuild();
+            }
+        } catch (Exception e) {
+            log.warn("check meta count failed", e);
+        }
+    }
+
+    private void rebuild() {
+        if (!building.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("meta-index").start(() -> {
+            try {
+                build();
+            } catch (Exception e) {
+                log.warn("build meta search index failed", e);
+            } finally {
+                building.set(false);
+            }
+        });
+    }
+
+    private void build() {
+        long start = System.currentTimeMillis();
+        Map<Integer, String> before = new HashMap<>(pending);
+        Map<Integer, IntList> map = new HashMap<>();
+        long[] count = new long[1];
+        long deltaBefore = delta.get();
+        jdbcTemplate.query("SELECT id, path, name FROM meta ORDER BY id", rs -> {
+            int id = rs.getInt(1);
+            String text = text(rs.getString(2), rs.getString(3));
+            count[0]++;
+            if (text == null) {
+                return;
+            }
+            for (int gram : grams(text)) {
+                map.computeIfAbsent(gram, k -> new IntList()).add(id);
+            }
+        });
+
+        Map<Integer, int[]> postings = new HashMap<>(map.size() * 4 / 3 + 1);
+        map.forEach((gram, list) -> postings.put(gram, list.toArray()));
+        snapshot = new Snapshot(postings, count[0]);
+        delta.addAndGet(-deltaBefore);
+        before.forEach(pending::remove);
+        log.info("build meta search index: {} rows {} grams in {} ms", count[0], postings.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 去重后的二元组，每个gram由相邻两个字符拼成一个int
+     */
+    static int[] grams(String text) {
+        if (text.length() < 2) {
+            return new int[0];
+        }
+        int[] grams = new int[text.length() - 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = (text.charAt(i) << 16) | text.charAt(i + 1);
+        }
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
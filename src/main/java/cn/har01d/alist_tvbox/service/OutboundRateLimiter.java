@@ -0,0 +1,247 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.config.AppProperties;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Interceptor;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 出站请求令牌桶限速器
+ * 按主机名(或自定义键)限制请求速率，未配置的主机不限速。
+ * 同一个桶内交互请求优先，后台任务只在没有交互请求等待时才取令牌。
+ * 配置格式: 主机=每秒请求数[:突发数]，多个用逗号分隔，如 movie.douban.com=0.5:2,api.bilibili.com=5
+ */
+@Slf4j
+@Component
+public class OutboundRateLimiter implements ClientHttpRequestInterceptor {
+    public static final String DEFAULT_LIMITS = "movie.douban.com=0.5:2,m.douban.com=0.5:3,tmdb=0.5:1,tmdb-api=40:40,api.bilibili.com=5:10,t.me=5:10,index=1:1,validate=10:1";
+    private static final long INTERACTIVE_MAX_WAIT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long MAX_SLEEP_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final ThreadLocal<Boolean> BACKGROUND = ThreadLocal.withInitial(() -> false);
+
+    private final AppProperties appProperties;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private volatile String config;
+    private volatile Map<String, Limit> limits = Map.of();
+
+    public record Limit(double permitsPerSecond, int burst) {
+    }
+
+    public OutboundRateLimiter(AppProperties appProperties) {
+        this.appProperties = appProperties;
+    }
+
+    /**
+     * 把当前线程标记为后台任务，用 try-with-resources 包裹批量任务
+     */
+    public static Scope background() {
+        boolean previous = BACKGROUND.get();
+        BACKGROUND.set(true);
+        return () -> BACKGROUND.set(previous);
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * 获取一个令牌，未配置限速的键直接返回。
+     * 交互请求最多等待5秒，超时后透支令牌继续请求，避免前台界面卡住。
+     */
+    public void acquire(String key) throws InterruptedException {
+        Bucket bucket = getBucket(key);
+        if (bucket == null) {
+            return;
+        }
+
+        boolean background = BACKGROUND.get();
+        long deadline = System.nanoTime() + INTERACTIVE_MAX_WAIT_NANOS;
+        if (!background) {
+            bucket.enterInteractive();
+        }
+        try {
+            while (true) {
+                long wait = bucket.tryAcquire(background, !background && System.nanoTime() >= deadline);
+                if (wait <= 0) {
+                    return;
+                }
+                long sleep = Math.min(wait, MAX_SLEEP_NANOS);
+                bucket.waited(sleep);
+                TimeUnit.NANOSECONDS.sleep(sleep);
+            }
+        } finally {
+            if (!background) {
+                bucket.exitInteractive();
+            }
+        }
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        acquireInterruptibly(request.getURI().getHost());
+        return execution.execute(request, body);
+    }
+
+    /**
+     * OkHttp 客户端使用的拦截器
+     */
+    public Interceptor okHttpInterceptor() {
+        return chain -> {
+            acquireInterruptibly(chain.request().url().host());
+            return chain.proceed(chain.request());
+        };
+    }
+
+    private void acquireInterruptibly(String key) throws InterruptedIOException {
+        try {
+            acquire(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("rate limit wait interrupted: " + key);
+        }
+    }
+
+    /**
+     * 各限速桶的状态，供健康检查接口展示
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (var entry : buckets.entrySet()) {
+            list.add(entry.getValue().getStats(entry.getKey()));
+        }
+        list.sort((a, b) -> ((String) a.get("name")).compareTo((String) b.get("name")));
+        return list;
+    }
+
+    private Bucket getBucket(String key) {
+        if (key == null) {
+            return null;
+        }
+        Map<String, Limit> current = getLimits();
+        Limit limit = current.get(key);
+        if (limit == null) {
+            return null;
+        }
+        Bucket bucket = buckets.get(key);
+        if (bucket == null || !bucket.limit.equals(limit)) {
+            bucket = buckets.compute(key, (k, old) -> old != null && old.limit.equals(limit) ? old : new Bucket(limit));
+        }
+        return bucket;
+    }
+
+    private Map<String, Limit> getLimits() {
+        String value = appProperties.getOutboundRateLimits();
+        if (!StringUtils.equals(value, config)) {
+            Map<String, Limit> map = new HashMap<>(parse(DEFAULT_LIMITS));
+            map.putAll(parse(value));
+            map.values().removeIf(limit -> limit.permitsPerSecond() <= 0);
+            limits = map;
+            config = value;
+            buckets.keySet().retainAll(map.keySet());
+            log.info("outbound rate limits: {}", map);
+        }
+        return limits;
+    }
+
+    /**
+     * 解析限速配置，速率为0表示不限速
+     */
+    static Map<String, Limit> parse(String value) {
+        Map<String, Limit> map = new HashMap<>();
+        if (StringUtils.isBlank(value)) {
+            return map;
+        }
+        for (String item : value.split("[,\\s]+")) {
+            String[] parts = item.split("=");
+            if (parts.length != 2 || StringUtils.isBlank(parts[0])) {
+                continue;
+            }
+            try {
+                String[] numbers = parts[1].split(":");
+                double rate = Double.parseDouble(numbers[0].trim());
+                int burst = numbers.length > 1 ? Integer.parseInt(numbers[1].trim()) : (int) Math.ceil(rate);
+                map.put(parts[0].trim(), new Limit(rate, Math.max(1, burst)));
+            } catch (NumberFormatException e) {
+                log.warn("invalid rate limit: {}", item);
+            }
+        }
+        return map;
+    }
+
+    private static final class Bucket {
+        private final Limit limit;
+        private final double nanosPerPermit;
+        private double tokens;
+        private long last;
+        private int interactiveWaiting;
+        private long acquired;
+        private long waitedNanos;
+
+        Bucket(Limit limit) {
+            this.limit = limit;
+            this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / limit.permitsPerSecond();
+            this.tokens = limit.burst();
+            this.last = System.nanoTime();
+        }
+
+        synchronized void enterInteractive() {
+            interactiveWaiting++;
+        }
+
+        synchronized void exitInteractive() {
+            interactiveWaiting--;
+        }
+
+        synchronized void waited(long nanos) {
+            waitedNanos += nanos;
+        }
+
+        /**
+         * @return 0表示已取得令牌，否则为建议等待的纳秒数
+         */
+        synchronized long tryAcquire(boolean background, boolean force) {
+            long now = System.nanoTime();
+            tokens = Math.min(limit.burst(), tokens + (now - last) / nanosPerPermit);
+            last = now;
+
+            if (force || (tokens >= 1 && !(background && interactiveWaiting > 0))) {
+                tokens -= 1;
+                acquired++;
+                return 0;
+            }
+            if (tokens >= 1) {
+                // 有交互请求在等待，后台任务让出令牌
+                return TimeUnit.MILLISECONDS.toNanos(50);
+            }
+            return Math.max(1, (long) ((1 - tokens) * nanosPerPermit));
+        }
+
+        synchronized Map<String, Object> getStats(String name) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("name", name);
+            map.put("permitsPerSecond", limit.permitsPerSecond());
+            map.put("burst", limit.burst());
+            map.put("tokens", Math.round(tokens * 100) / 100.0);
+            map.put("interactiveWaiting", interactiveWaiting);
+            map.put("acquired", acquired);
+            map.put("waitedMs", TimeUnit.NANOSECONDS.toMillis(waitedNanos));
+            return map;
+        }
+    }
+}
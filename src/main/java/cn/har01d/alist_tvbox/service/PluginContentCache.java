@@ -0,0 +1,101 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.util.Utils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 插件和过滤器脚本内容缓存
+ * 缓存编码后的正文、强ETag和预压缩的gzip版本，实体变更时由
+ * {@link cn.har01d.alist_tvbox.entity.PluginContentListener} 失效。
+ */
+@Slf4j
+@Component
+public class PluginContentCache {
+    private static final int MIN_COMPRESS_SIZE = 1024;
+
+    private final Cache<String, Entry> cache = Caffeine.newBuilder()
+            .maximumWeight(64L * 1024 * 1024)
+            .weigher((String key, Entry entry) -> entry.body.length + (entry.gzip == null ? 0 : entry.gzip.length))
+            .expireAfterAccess(Duration.ofHours(6))
+            .build();
+
+    public record Entry(String etag, byte[] body, byte[] gzip) {
+        /**
+         * 按请求头返回304、gzip或原始内容
+         */
+        public ResponseEntity<byte[]> toResponse(String ifNoneMatch, String acceptEncoding, MediaType contentType) {
+            if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(CacheControl.noCache())
+                        .build();
+            }
+
+            var builder = ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .contentType(contentType);
+            if (gzip != null && StringUtils.containsIgnoreCase(acceptEncoding, "gzip")) {
+                return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzip);
+            }
+            return builder.body(body);
+        }
+    }
+
+    public static String pluginKey(Integer id) {
+        return "plugin:" + id;
+    }
+
+    public static String filterKey(Integer id) {
+        return "filter:" + id;
+    }
+
+    public Entry get(String key, Supplier<String> loader) {
+        return cache.get(key, k -> create(loader.get()));
+    }
+
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    static Entry create(String content) {
+        byte[] body = content.getBytes(StandardCharsets.UTF_8);
+        String etag = "\"" + Utils.md5(content) + "\"";
+        byte[] gzip = null;
+        if (body.length >= MIN_COMPRESS_SIZE) {
+            gzip = gzip(body);
+            if (gzip.length >= body.length) {
+                gzip = null;
+            }
+        }
+        return new Entry(etag, body, gzip);
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
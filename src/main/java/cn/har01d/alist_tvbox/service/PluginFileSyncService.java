@@ -4,8 +4,6 @@ import cn.har01d.alist_tvbox.entity.Plugin;
 import cn.har01d.alist_tvbox.entity.PluginRepository;
 import cn.har01d.alist_tvbox.util.Utils;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -96,13 +94,4 @@ public class PluginFileSyncService {
             log.warn("failed to delete stale plugin {}: {}", plugin.getUrl(), e.getMessage());
         }
     }
-
-    @EventListener(ApplicationReadyEvent.class)
-    public void onApplicationReady() {
-        try {
-            reconcile();
-        } catch (Exception e) {
-            log.warn("startup plugin file reconcile failed", e);
-        }
-    }
 }
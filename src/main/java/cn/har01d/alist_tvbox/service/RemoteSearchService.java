@@ -89,6 +89,7 @@ public class RemoteSearchService {
     private final TvBoxService tvBoxService;
     private final OfflineDownloadService offlineDownloadService;
     private final SubscriptionSourceService subscriptionSourceService;
+    private final CircuitBreaker circuitBreaker;
     private List<String> panSouDefaultChannels;
     private List<String> panSouBuiltinChannels;
     private String panSouToken;
@@ -107,7 +108,8 @@ public class RemoteSearchService {
                                ShareService shareService,
                                TvBoxService tvBoxService,
                                OfflineDownloadService offlineDownloadService,
-                               SubscriptionSourceService subscriptionSourceService) {
+                               SubscriptionSourceService subscriptionSourceService,
+                               CircuitBreaker circuitBreaker) {
         this.appProperties = appProperties;
         this.restTemplate = restTemplateBuilder.build();
         this.objectMapper = objectMapper;
@@ -116,6 +118,7 @@ public class RemoteSearchService {
         this.tvBoxService = tvBoxService;
         this.offlineDownloadService = offlineDownloadService;
         this.subscriptionSourceService = subscriptionSourceService;
+        this.circuitBreaker = circuitBreaker;
     }
 
     @PostConstruct
@@ -536,6 +539,10 @@ public class RemoteSearchService {
     }
 
     private String searchPanSou(String url, SearchRequest request) {
+        return circuitBreaker.call("pansou", () -> doSearchPanSou(url, request));
+    }
+
+    private String doSearchPanSou(String url, SearchRequest request) {
         if (!shouldUsePanSouAuth()) {
             return restTemplate.postForObject(url, request, String.class);
         }
@@ -156,6 +156,11 @@ public class SettingService {
         } else {
             appProperties.setTgTimeout(Integer.parseInt(value));
         }
+        value = settingRepository.findById("tg_enough_results").map(Setting::getValue).orElse("");
+        if (StringUtils.isNotBlank(value)) {
+            appProperties.setTgEnoughResults(Integer.parseInt(value));
+        }
+        appProperties.setOutboundRateLimits(settingRepository.findById("outbound_rate_limits").map(Setting::getValue).orElse(""));
         value = settingRepository.findById("search_excluded_paths").map(Setting::getValue).orElse("");
         String old = "/电视剧/韩国,/电视剧/英国,/电视剧/港台,/电视剧/泰剧,/电视剧/欧美,/电视剧/日本,/电视剧/新加坡,/电视剧/中国/七米蓝";
         if (StringUtils.isBlank(value) || value.equals(old)) {
@@ -472,6 +477,12 @@ public class SettingService {
         if ("tg_timeout".equals(setting.getName())) {
             appProperties.setTgTimeout(Integer.parseInt(setting.getValue()));
         }
+        if ("tg_enough_results".equals(setting.getName())) {
+            appProperties.setTgEnoughResults(Integer.parseInt(setting.getValue()));
+        }
+        if ("outbound_rate_limits".equals(setting.getName())) {
+            appProperties.setOutboundRateLimits(setting.getValue());
+        }
         if ("tg_search".equals(setting.getName())) {
             if (setting.getValue().endsWith("/")) {
                 setting.setValue(setting.getValue().substring(0, setting.getValue().length() - 1));
@@ -21,8 +21,6 @@ import cn.har01d.alist_tvbox.entity.Site;
 import cn.har01d.alist_tvbox.entity.SiteRepository;
 import cn.har01d.alist_tvbox.exception.BadRequestException;
 import cn.har01d.alist_tvbox.model.FsResponse;
-import cn.har01d.alist_tvbox.model.LoginRequest;
-import cn.har01d.alist_tvbox.model.LoginResponse;
 import cn.har01d.alist_tvbox.model.Response;
 import cn.har01d.alist_tvbox.storage.AList;
 import cn.har01d.alist_tvbox.storage.Alias;
@@ -48,11 +46,9 @@ import cn.har01d.alist_tvbox.util.Utils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -61,10 +57,7 @@ import org.springframework.core.env.Environment;
 import org.springframework.core.env.Profiles;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -78,11 +71,11 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
-import java.time.LocalDateTime;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -93,7 +86,6 @@ import java.util.stream.Collectors;
 
 import static cn.har01d.alist_tvbox.util.Constants.ALIST_LOGIN;
 import static cn.har01d.alist_tvbox.util.Constants.ALI_SECRET;
-import static cn.har01d.alist_tvbox.util.Constants.ATV_PASSWORD;
 import static cn.har01d.alist_tvbox.util.Constants.BILIBILI_COOKIE;
 import static cn.har01d.alist_tvbox.util.Constants.OPEN_TOKEN_URL;
 
@@ -120,9 +112,12 @@ public class ShareService {
     private final RestTemplate restTemplate;
     private final Environment environment;
 
+    private static final int IMPORT_BATCH_SIZE = 100;
+
     private final int offset = 99900;
     private final AtomicInteger shareId = new AtomicInteger(20000);
     private final ObjectMapper objectMapper;
+    private final MetaListCache metaListCache;
 
     public ShareService(AppProperties appProperties,
                         ShareRepository shareRepository,
@@ -141,7 +136,8 @@ public class ShareService {
                         OfflineDownloadService offlineDownloadService,
                         RestTemplateBuilder builder,
                         Environment environment,
-                        ObjectMapper objectMapper) {
+                        ObjectMapper objectMapper,
+                        MetaListCache metaListCache) {
         this.appProperties = appProperties;
         this.shareRepository = shareRepository;
         this.metaRepository = metaRepository;
@@ -159,10 +155,13 @@ public class ShareService {
         this.offlineDownloadService = offlineDownloadService;
         this.environment = environment;
         this.objectMapper = objectMapper;
+        this.metaListCache = metaListCache;
         this.restTemplate = builder.rootUri("http://localhost:" + aListLocalService.getInternalPort()).build();
     }
 
-    @PostConstruct
+    /**
+     * 加载分享、站点和配置文件后启动AList，由 {@link StartupService} 在账号预热之后执行
+     */
     public void setup() {
         migrateId();
         updateAListDriverType();
@@ -242,7 +241,6 @@ public class ShareService {
     @Scheduled(cron = "0 30 * * * *")
     public void cleanShares() {
         cleanTempShares(true);
-        cleanInvalidShares();
     }
 
     public int getNextId() {
@@ -278,22 +276,6 @@ public class ShareService {
         }
     }
 
-    public void cleanInvalidShares() {
-        if (appProperties.isCleanInvalidShares()) {
-            cleanStorages();
-        }
-    }
-
-    @Scheduled(cron = "0 0 * * * *")
-    public void validateShares() {
-        if (appProperties.isCleanInvalidShares()) {
-            int hour = LocalDateTime.now().getHour();
-            if (hour % appProperties.getValidateSharesInterval() == 0) {
-                validateStorages();
-            }
-        }
-    }
-
     public void loadAListAlias() {
         List<AListAlias> list = aliasRepository.findAll();
         if (list.isEmpty()) {
@@ -342,10 +324,7 @@ public class ShareService {
 
     public void reloadIndex115() {
         aListLocalService.validateAListStatus();
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, accountService.login());
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(null, headers);
-        ResponseEntity<Response> response = restTemplate.exchange("/api/admin/index115/reload", HttpMethod.POST, entity, Response.class);
+        ResponseEntity<Response> response = accountService.exchangeAdmin(restTemplate, "/api/admin/index115/reload", HttpMethod.POST, null, Response.class, accountService.login());
         log.info("reload index115 response: {}", response.getBody());
     }
 
@@ -450,71 +429,69 @@ public class ShareService {
         return list;
     }
 
+    /**
+     * 批量导入分享
+     * 先解析全部行并按挂载路径去重，一次查询过滤已存在的路径，再分批写入分享和AList存储。
+     * 每行的解析和校验错误单独记录日志，不影响其它行。
+     */
     public int importShares(SharesDto dto) {
-        int count = 0;
         Integer defaultType = DriveId.toTypeOrNull(dto.getType());
         if (defaultType == null) {
             defaultType = 0;
         }
         log.info("import share list");
-        for (String line : dto.getContent().split("\n")) {
-            String[] parts = line.trim().split("\\s+");
-            log.debug("import {} {}", parts.length, line);
-            if (parts.length > 1) {
-                try {
-                    Share share = new Share();
-                    share.setId(shareId.get());
-                    share.setType(defaultType);
-                    share.setPath(parts[0]);
-                    String[] id = parts[1].split(":", 2);
-                    if (!parts[1].contains("http") && id.length > 1) {
-                        Integer parsedType = DriveId.toTypeOrNull(id[0]);
-                        if (parsedType != null) {
-                            share.setType(parsedType);
-                            share.setShareId(id[1]);
-                        } else {
-                            log.warn("Unknown drive type '{}' in line: {}", id[0], line);
-                            continue;
-                        }
-                    } else {
-                        share.setShareId(parts[1]);
-                    }
+        Map<String, Share> parsed = new LinkedHashMap<>();
+        Map<String, Integer> lineNumbers = new HashMap<>();
+        String[] lines = dto.getContent().split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            try {
+                Share share = parseImportLine(lines[i], defaultType);
+                if (share == null) {
+                    continue;
+                }
+                if (parsed.putIfAbsent(share.getPath(), share) != null) {
+                    log.debug("duplicate share path at line {}: {}", i + 1, share.getPath());
+                } else {
+                    lineNumbers.put(share.getPath(), i + 1);
+                }
+            } catch (Exception e) {
+                log.warn("import share failed at line {}: {} {}", i + 1, lines[i].trim(), e.getMessage());
+            }
+        }
 
-                    // Special handling for STRM type (11:STRM)
-                    if (share.getType() == 11 && "STRM".equals(share.getShareId())) {
-                        // For STRM, parts[2] is the Base64 encoded cookie JSON
-                        if (parts.length > 2) {
-                            try {
-                                byte[] decodedBytes = java.util.Base64.getDecoder().decode(parts[2]);
-                                share.setCookie(new String(decodedBytes, java.nio.charset.StandardCharsets.UTF_8));
-                            } catch (Exception e) {
-                                log.warn("Failed to decode STRM cookie: {}", e.getMessage());
-                            }
-                        }
-                        // STRM uses empty shareId
-                        share.setShareId("");
-                    } else {
-                        // Standard format for other types
-                        if (parts.length > 2) {
-                            share.setFolderId(parts[2]);
-                        }
-                        if (parts.length > 3) {
-                            share.setPassword(parts[3]);
-                        }
-                    }
-                    share.setPath(getMountPath(share));
-                    if (shareRepository.existsByPath(share.getPath())) {
-                        continue;
-                    }
-                    create(share);
-                    count++;
+        List<String> paths = new ArrayList<>(parsed.keySet());
+        for (int i = 0; i < paths.size(); i += IMPORT_BATCH_SIZE) {
+            shareRepository.findPathsByPathIn(paths.subList(i, Math.min(i + IMPORT_BATCH_SIZE, paths.size()))).forEach(parsed::remove);
+        }
+        if (parsed.isEmpty()) {
+            log.info("loaded 0 shares");
+            return 0;
+        }
 
-                    // Sleep after each import if delay is specified
-                    if (dto.getDelay() > 0) {
-                        Thread.sleep(dto.getDelay());
-                    }
-                } catch (Exception e) {
-                    log.warn("import share failed", e);
+        aListLocalService.validateAListStatus();
+        String token = accountService.login();
+        boolean docker = environment.acceptsProfiles(Profiles.of("docker"));
+        int nextId = docker ? aListLocalService.getNextStorageId() : 0;
+        List<Share> shares = new ArrayList<>(parsed.values());
+        int count = 0;
+        for (int i = 0; i < shares.size(); i += IMPORT_BATCH_SIZE) {
+            List<Share> batch = shares.subList(i, Math.min(i + IMPORT_BATCH_SIZE, shares.size()));
+            for (Share share : batch) {
+                share.setId(docker ? nextId++ : shareId.getAndIncrement());
+            }
+            try {
+                count += importShareBatch(batch, token, lines, lineNumbers);
+            } catch (Exception e) {
+                log.warn("import shares {}-{} failed", i + 1, i + batch.size(), e);
+            }
+
+            // 批次之间按设置的间隔暂停，减轻AList的压力
+            if (dto.getDelay() > 0 && i + IMPORT_BATCH_SIZE < shares.size()) {
+                try {
+                    Thread.sleep(dto.getDelay());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
                 }
             }
         }
@@ -523,6 +500,128 @@ public class ShareService {
         return count;
     }
 
+    private Share parseImportLine(String line, int defaultType) {
+        String[] parts = line.trim().split("\\s+");
+        log.debug("import {} {}", parts.length, line);
+        if (parts.length < 2) {
+            return null;
+        }
+
+        Share share = new Share();
+        share.setType(defaultType);
+        share.setPath(parts[0]);
+        String[] id = parts[1].split(":", 2);
+        if (!parts[1].contains("http") && id.length > 1) {
+            Integer parsedType = DriveId.toTypeOrNull(id[0]);
+            if (parsedType == null) {
+                throw new BadRequestException("未知的网盘类型: " + id[0]);
+            }
+            share.setType(parsedType);
+            share.setShareId(id[1]);
+        } else {
+            share.setShareId(parts[1]);
+        }
+
+        // Special handling for STRM type (11:STRM)
+        if (share.getType() == 11 && "STRM".equals(share.getShareId())) {
+            // For STRM, parts[2] is the Base64 encoded cookie JSON
+            if (parts.length > 2) {
+                try {
+                    byte[] decodedBytes = java.util.Base64.getDecoder().decode(parts[2]);
+                    share.setCookie(new String(decodedBytes, java.nio.charset.StandardCharsets.UTF_8));
+                } catch (Exception e) {
+                    log.warn("Failed to decode STRM cookie: {}", e.getMessage());
+                }
+            }
+            // STRM uses empty shareId
+            share.setShareId("");
+        } else {
+            // Standard format for other types
+            if (parts.length > 2) {
+                share.setFolderId(parts[2]);
+            }
+            if (parts.length > 3) {
+                share.setPassword(parts[3]);
+            }
+        }
+
+        share.setPath(getMountPath(share));
+        prepare(share);
+        share.setPath(getMountPath(share));
+        return share;
+    }
+
+    /**
+     * 一批分享的存储和记录各写入一次，再用同一个令牌逐个启用存储
+     * 批量写入失败时退回逐个写入，出错的分享按导入行号记录日志并跳过
+     */
+    private int importShareBatch(List<Share> batch, String token, String[] lines, Map<String, Integer> lineNumbers) {
+        List<Share> saved = batch;
+        try {
+            List<Storage> storages = new ArrayList<>();
+            for (Share share : batch) {
+                Storage storage = buildStorage(share, true);
+                if (storage != null) {
+                    storages.add(storage);
+                }
+            }
+            aListLocalService.saveStorages(storages);
+            shareRepository.saveAll(batch);
+        } catch (Exception e) {
+            log.warn("save {} shares in batch failed, fall back to one by one: {}", batch.size(), e.getMessage());
+            saved = saveSharesOneByOne(batch, lines, lineNumbers);
+        }
+
+        List<Share> invalid = new ArrayList<>();
+        for (Share share : saved) {
+            try {
+                String error = enableStorage(share.getId(), token);
+                share.setError(error);
+                if (appProperties.isCleanInvalidShares() && invalid(error)) {
+                    invalid.add(share);
+                }
+            } catch (Exception e) {
+                log.warn("enable storage {} failed: {}", share.getPath(), e.getMessage());
+            }
+        }
+
+        if (!invalid.isEmpty()) {
+            shareRepository.deleteAll(invalid);
+            for (Share share : invalid) {
+                deleteStorage(share.getId(), token);
+            }
+        }
+        return saved.size() - invalid.size();
+    }
+
+    private List<Share> saveSharesOneByOne(List<Share> batch, String[] lines, Map<String, Integer> lineNumbers) {
+        List<Share> saved = new ArrayList<>();
+        for (Share share : batch) {
+            boolean created = false;
+            try {
+                Storage storage = buildStorage(share, true);
+                shareRepository.save(share);
+                created = true;
+                if (storage != null) {
+                    aListLocalService.saveStorage(storage);
+                }
+                saved.add(share);
+            } catch (Exception e) {
+                int line = lineNumbers.getOrDefault(share.getPath(), 0);
+                String text = line > 0 ? lines[line - 1].trim() : share.getPath();
+                log.warn("import share failed at line {}: {} {}", line, text, e.getMessage());
+                if (created) {
+                    try {
+                        shareRepository.delete(share);
+                    } catch (Exception ex) {
+                        log.warn("delete share {} failed: {}", share.getPath(), ex.getMessage());
+                    }
+                }
+            }
+        }
+        return saved;
+    }
+
     public String exportShare(HttpServletResponse response, String drive) {
         int type = DriveId.toType(drive);
         List<Share> list = type < 0 ? shareRepository.findAll() : shareRepository.findByType(type);
@@ -594,6 +693,14 @@ public class ShareService {
     }
 
     private Storage saveStorage(Share share, boolean disabled) {
+        Storage storage = buildStorage(share, disabled);
+        if (storage != null) {
+            aListLocalService.saveStorage(storage);
+        }
+        return storage;
+    }
+
+    private Storage buildStorage(Share share, boolean disabled) {
         Storage storage = switch (share.getType() == null ? "ali" : DriveId.toDrive(share.getType())) {
             case "ali" -> new AliyunShare(share);
             case "pikpak" -> new PikPakShare(share);
@@ -613,7 +720,6 @@ public class ShareService {
 
         if (storage != null) {
             storage.setDisabled(disabled);
-            aListLocalService.saveStorage(storage);
         }
 
         return storage;
@@ -635,30 +741,16 @@ public class ShareService {
             throw new BadRequestException("AList服务启动中");
         }
 
-        String token = status >= 2 ? login() : "";
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, token);
+        String token = status >= 2 ? accountService.login() : "";
         Map<String, Object> body = new HashMap<>();
         body.put("key", key);
         body.put("type", "text");
         body.put("flag", 1);
         body.put("value", cookie);
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-        ResponseEntity<String> response = restTemplate.exchange("/api/admin/setting/update", HttpMethod.POST, entity, String.class);
+        ResponseEntity<String> response = accountService.exchangeAdmin(restTemplate, "/api/admin/setting/update", HttpMethod.POST, body, String.class, token);
         log.info("updateCookieByApi {} response: {}", response.getBody());
     }
 
-    public String login() {
-        String username = "atv";
-        String password = settingRepository.findById(ATV_PASSWORD).map(Setting::getValue).orElseThrow(BadRequestException::new);
-        LoginRequest request = new LoginRequest();
-        request.setUsername(username);
-        request.setPassword(password);
-        LoginResponse response = restTemplate.postForObject("/api/auth/login", request, LoginResponse.class);
-        log.debug("AList login response: {}", response);
-        return response.getData().getToken();
-    }
-
     private String getMountPath(Share share) {
         return Storage.getMountPath(share);
     }
@@ -1375,10 +1467,7 @@ public class ShareService {
 
     public Share create(Share share) {
         aListLocalService.validateAListStatus();
-        fixStrmConfig(share);
-        validate(share);
-        parseShare(share);
-        fixFolderId(share);
+        prepare(share);
 
         try {
             String token = accountService.login();
@@ -1410,10 +1499,7 @@ public class ShareService {
 
     public Share update(Integer id, Share share) {
         aListLocalService.validateAListStatus();
-        fixStrmConfig(share);
-        validate(share);
-        parseShare(share);
-        fixFolderId(share);
+        prepare(share);
 
         share.setPath(Storage.getMountPath(share));
 
@@ -1432,6 +1518,13 @@ public class ShareService {
         return share;
     }
 
+    private void prepare(Share share) {
+        fixStrmConfig(share);
+        validate(share);
+        parseShare(share);
+        fixFolderId(share);
+    }
+
     private void validate(Share share) {
         if (StringUtils.isBlank(share.getPath())) {
             throw new BadRequestException("挂载路径不能为空");
@@ -1527,10 +1620,7 @@ public class ShareService {
     }
 
     public String enableStorage(Integer id, String token) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, token);
-        HttpEntity<String> entity = new HttpEntity<>(null, headers);
-        ResponseEntity<Map> response = restTemplate.exchange("/api/admin/storage/enable?id=" + id, HttpMethod.POST, entity, Map.class);
+        ResponseEntity<Map> response = accountService.exchangeAdmin(restTemplate, "/api/admin/storage/enable?id=" + id, HttpMethod.POST, null, Map.class, token);
         log.info("enable storage response: {}", response.getBody());
         int code = (int) response.getBody().get("code");
         if (code >= 400) {
@@ -1542,13 +1632,19 @@ public class ShareService {
 
     public void deleteShares(List<Integer> ids) {
         aListLocalService.validateAListStatus();
+        deleteShares(ids, accountService.login());
+    }
+
+    /**
+     * 一次删除分享记录，再用同一个令牌逐个删除AList存储
+     */
+    public void deleteShares(List<Integer> ids, String token) {
+        shareRepository.deleteAllByIdInBatch(ids);
         for (Integer id : ids) {
             try {
-                shareRepository.deleteById(id);
-                String token = accountService.login();
                 deleteStorage(id, token);
             } catch (Exception e) {
-                log.warn("{}", e.getMessage());
+                log.warn("delete storage {} failed: {}", id, e.getMessage());
             }
         }
     }
@@ -1575,59 +1671,18 @@ public class ShareService {
     }
 
     public void deleteStorage(Integer id, String token) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, token);
-        HttpEntity<String> entity = new HttpEntity<>(null, headers);
-        ResponseEntity<String> response = restTemplate.exchange("/api/admin/storage/delete?id=" + id, HttpMethod.POST, entity, String.class);
+        ResponseEntity<String> response = accountService.exchangeAdmin(restTemplate, "/api/admin/storage/delete?id=" + id, HttpMethod.POST, null, String.class, token);
         log.info("delete storage response: {}", response.getBody());
     }
 
     public JsonNode listStorages(Pageable pageable) {
         aListLocalService.validateAListStatus();
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, accountService.login());
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(null, headers);
-        ResponseEntity<JsonNode> response = restTemplate.exchange("/api/admin/storage/failed?page=" + pageable.getPageNumber() + "&per_page=" + pageable.getPageSize(), HttpMethod.GET, entity, JsonNode.class);
+        String url = "/api/admin/storage/failed?page=" + pageable.getPageNumber() + "&per_page=" + pageable.getPageSize();
+        ResponseEntity<JsonNode> response = accountService.exchangeAdmin(restTemplate, url, HttpMethod.GET, null, JsonNode.class, accountService.login());
         return response.getBody();
     }
 
-    public void validateStorages() {
-        aListLocalService.validateAListStatus();
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, accountService.login());
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(null, headers);
-        ResponseEntity<JsonNode> response = restTemplate.exchange("/api/admin/storage/failed", HttpMethod.POST, entity, JsonNode.class);
-    }
-
-    public int cleanStorages() {
-        int count = 0;
-        int size = 500;
-        int retry = 1;
-        while (retry++ < 10) {
-            Pageable pageable = PageRequest.of(1, size);
-            JsonNode result = listStorages(pageable);
-            JsonNode content = result.get("data").get("content");
-            if (content instanceof ArrayNode) {
-                for (int i = 0; i < content.size(); i++) {
-                    JsonNode item = content.get(i);
-                    String status = item.get("status").asText();
-                    if (invalid(status)) {
-                        int id = item.get("id").asInt();
-                        String path = item.get("mount_path").asText();
-                        log.warn("delete invalid share: {} {} reason: {}", id, path, status);
-                        deleteShare(id);
-                        count++;
-                    }
-                }
-                if (content.size() < size) {
-                    break;
-                }
-            }
-        }
-        return count;
-    }
-
-    private static boolean invalid(String status) {
+    static boolean invalid(String status) {
         if (status == null) {
             return false;
         }
@@ -1653,10 +1708,7 @@ public class ShareService {
 
     public Response reloadStorage(Integer id) {
         aListLocalService.validateAListStatus();
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.AUTHORIZATION, accountService.login());
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(null, headers);
-        ResponseEntity<Response> response = restTemplate.exchange("/api/admin/storage/reload?id=" + id, HttpMethod.POST, entity, Response.class);
+        ResponseEntity<Response> response = accountService.exchangeAdmin(restTemplate, "/api/admin/storage/reload?id=" + id, HttpMethod.POST, null, Response.class, accountService.login());
         log.debug("reload storage {}: {}", id, response.getBody());
         return response.getBody();
     }
@@ -1700,6 +1752,8 @@ public class ShareService {
             log.info("disable 115 shares data");
             metaRepository.disableByTid(8);
         }
+        // 批量更新不经过实体监听
+        metaListCache.invalidate();
 
         log.info("load {} shares", shares.size());
         return shares;
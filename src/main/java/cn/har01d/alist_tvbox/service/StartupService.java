@@ -0,0 +1,126 @@
+package cn.har01d.alist_tvbox.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 启动预热
+ * 数据库、认证和TvBox接口在上下文启动时就绪，账号登录、分享加载、插件收敛、索引下载和豆瓣数据升级
+ * 在应用就绪后并发执行，避免容器重启后盒子长时间连接失败。各阶段状态通过 /api/health/ready 查看。
+ */
+@Slf4j
+@Component
+public class StartupService {
+    public enum Status {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    private static final class Phase {
+        private final String name;
+        private final Runnable task;
+        private volatile Status status = Status.PENDING;
+        private volatile Instant startTime;
+        private volatile Instant endTime;
+        private volatile String error;
+
+        Phase(String name, Runnable task) {
+            this.name = name;
+            this.task = task;
+        }
+
+        void run() {
+            startTime = Instant.now();
+            status = Status.RUNNING;
+            log.info("startup phase {} started", name);
+            try {
+                task.run();
+                status = Status.DONE;
+            } catch (Exception e) {
+                log.warn("startup phase {} failed", name, e);
+                error = e.getMessage();
+                status = Status.FAILED;
+            } finally {
+                endTime = Instant.now();
+                log.info("startup phase {} {} in {} ms", name, status, endTime.toEpochMilli() - startTime.toEpochMilli());
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("name", name);
+            map.put("status", status);
+            if (startTime != null) {
+                map.put("startTime", startTime.toString());
+                Instant end = endTime == null ? Instant.now() : endTime;
+                map.put("durationMs", end.toEpochMilli() - startTime.toEpochMilli());
+            }
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+    }
+
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("startup-", 0).factory());
+
+    public StartupService(AccountService accountService,
+                          ShareService shareService,
+                          PluginFileSyncService pluginFileSyncService,
+                          IndexService indexService,
+                          DoubanService doubanService) {
+        phases.put("accounts", new Phase("accounts", accountService::warmup));
+        phases.put("shares", new Phase("shares", shareService::setup));
+        phases.put("plugins", new Phase("plugins", pluginFileSyncService::reconcile));
+        phases.put("index", new Phase("index", indexService::updateIndexFile));
+        phases.put("douban", new Phase("douban", doubanService::setup));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmup() {
+        // 分享加载完成后才启动AList，必须在账号写入AList配置之后
+        run("accounts").thenRunAsync(phases.get("shares")::run, executor);
+        run("plugins");
+        run("index");
+        run("douban");
+    }
+
+    private CompletableFuture<Void> run(String name) {
+        return CompletableFuture.runAsync(phases.get(name)::run, executor);
+    }
+
+    public boolean isReady() {
+        return phases.values().stream().allMatch(phase -> phase.status == Status.DONE || phase.status == Status.FAILED);
+    }
+
+    /**
+     * 预热状态，供就绪检查接口展示
+     */
+    public Map<String, Object> getStatus() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Phase phase : phases.values()) {
+            list.add(phase.toMap());
+        }
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("ready", isReady());
+        map.put("phases", list);
+        return map;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,151 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.config.AppProperties;
+import cn.har01d.alist_tvbox.exception.BadRequestException;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.restclient.RestTemplateBuilder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AList存储健康检查
+ * 每次检查按页读取一遍失败的存储，统一判断状态后批量删除失效分享，结果缓存供管理界面查看。
+ * 同一时间只运行一次检查，并发的调用等待当前检查结束后直接返回其结果。
+ */
+@Slf4j
+@Service
+public class StorageHealthService {
+    private static final int PAGE_SIZE = 500;
+    private static final int MAX_PAGES = 100;
+
+    public record StorageStatus(int id, String path, String driver, String status, boolean invalid) {
+    }
+
+    /**
+     * @param failed  失败的存储数量
+     * @param deleted 本次删除的失效分享数量
+     */
+    public record Report(Instant time, int failed, int deleted, List<StorageStatus> storages) {
+    }
+
+    private final AppProperties appProperties;
+    private final ShareService shareService;
+    private final AccountService accountService;
+    private final AListLocalService aListLocalService;
+    private final RestTemplate restTemplate;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Report report;
+
+    public StorageHealthService(AppProperties appProperties,
+                                ShareService shareService,
+                                AccountService accountService,
+                                AListLocalService aListLocalService,
+                                RestTemplateBuilder builder) {
+        this.appProperties = appProperties;
+        this.shareService = shareService;
+        this.accountService = accountService;
+        this.aListLocalService = aListLocalService;
+        this.restTemplate = builder.rootUri("http://localhost:" + aListLocalService.getInternalPort()).build();
+    }
+
+    @Scheduled(cron = "0 30 * * * *")
+    public void cleanInvalidShares() {
+        if (appProperties.isCleanInvalidShares()) {
+            try {
+                sweep();
+            } catch (Exception e) {
+                log.warn("storage health sweep failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(cron = "0 0 * * * *")
+    public void validateShares() {
+        if (appProperties.isCleanInvalidShares()) {
+            int hour = LocalDateTime.now().getHour();
+            if (hour % appProperties.getValidateSharesInterval() == 0) {
+                validate();
+            }
+        }
+    }
+
+    /**
+     * 通知AList重新检查全部存储，结果在下次检查时读取
+     */
+    public void validate() {
+        aListLocalService.validateAListStatus();
+        accountService.exchangeAdmin(restTemplate, "/api/admin/storage/failed", HttpMethod.POST, null, JsonNode.class, accountService.login());
+    }
+
+    /**
+     * 读取全部失败的存储并删除失效的分享
+     *
+     * @return 本次检查结果
+     */
+    public Report sweep() {
+        Instant start = Instant.now();
+        lock.lock();
+        try {
+            Report last = report;
+            if (last != null && !last.time().isBefore(start)) {
+                return last;
+            }
+
+            aListLocalService.validateAListStatus();
+            String token = accountService.login();
+            List<StorageStatus> storages = fetchFailedStorages(token);
+            List<Integer> ids = new ArrayList<>();
+            for (StorageStatus storage : storages) {
+                if (storage.invalid()) {
+                    log.warn("delete invalid share: {} {} reason: {}", storage.id(), storage.path(), storage.status());
+                    ids.add(storage.id());
+                }
+            }
+            if (!ids.isEmpty()) {
+                shareService.deleteShares(ids, token);
+            }
+
+            report = new Report(Instant.now(), storages.size(), ids.size(), storages);
+            log.info("storage health sweep: {} failed, {} deleted", storages.size(), ids.size());
+            return report;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Report getReport() {
+        return report;
+    }
+
+    private List<StorageStatus> fetchFailedStorages(String token) {
+        List<StorageStatus> list = new ArrayList<>();
+        for (int page = 1; page <= MAX_PAGES; page++) {
+            String url = "/api/admin/storage/failed?page=" + page + "&per_page=" + PAGE_SIZE;
+            ResponseEntity<JsonNode> response = accountService.exchangeAdmin(restTemplate, url, HttpMethod.GET, null, JsonNode.class, token);
+            JsonNode body = response.getBody();
+            if (body == null || body.path("code").asInt(200) >= 400) {
+                throw new BadRequestException("获取失败的存储出错: " + (body == null ? "" : body.path("message").asText()));
+            }
+            JsonNode content = body.path("data").path("content");
+            for (JsonNode item : content) {
+                String status = item.path("status").asText();
+                list.add(new StorageStatus(item.path("id").asInt(), item.path("mount_path").asText(),
+                        item.path("driver").asText(), status, ShareService.invalid(status)));
+            }
+            if (content.size() < PAGE_SIZE) {
+                break;
+            }
+        }
+        return list;
+    }
+}
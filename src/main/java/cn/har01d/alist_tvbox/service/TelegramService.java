@@ -27,9 +27,7 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.Call;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -50,6 +48,7 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
@@ -68,16 +67,18 @@ import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -95,13 +96,15 @@ public class TelegramService {
     private final RemoteSearchService remoteSearchService;
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
-    private final ExecutorService executorService = Executors.newFixedThreadPool(Math.min(10, Runtime.getRuntime().availableProcessors() * 2));
-    private final OkHttpClient httpClient = new OkHttpClient();
+    private final ExecutorService executorService;
+    private final CircuitBreaker circuitBreaker;
+    private final OkHttpClient httpClient;
     private final LoadingCache<String, List<Message>> searchCache = Caffeine.newBuilder().expireAfterWrite(Duration.ofMinutes(15)).build(this::getFromChannel);
     private final Cache<String, MovieList> douban = Caffeine.newBuilder().expireAfterWrite(Duration.ofHours(1)).build();
     private final Cache<String, String> lastId = Caffeine.newBuilder().expireAfterWrite(Duration.ofHours(1)).build();
     private final Cache<String, MovieDetail> movies = Caffeine.newBuilder().maximumSize(200).expireAfterWrite(Duration.ofHours(2)).build();
     private final Cache<String, String> videoName = Caffeine.newBuilder().maximumSize(200).expireAfterWrite(Duration.ofHours(2)).build();
+    private static final Pattern EXCLUDED_CONTENT = Pattern.compile("pdf|epub|azw3|mobi|ppt|软件|图书|电子书|分享文件：", Pattern.CASE_INSENSITIVE);
     private final List<String> fields = new ArrayList<>(List.of("id", "name", "genre", "description", "language", "country", "directors", "editors", "actors", "cover", "dbScore", "year"));
     private final List<FilterValue> filters = Arrays.asList(
             new FilterValue("原始顺序", ""),
@@ -182,7 +185,10 @@ public class TelegramService {
                            TvBoxService tvBoxService,
                            RemoteSearchService remoteSearchService,
                            RestTemplateBuilder restTemplateBuilder,
-                           ObjectMapper objectMapper) {
+                           ObjectMapper objectMapper,
+                           UpstreamExecutor upstreamExecutor,
+                           CircuitBreaker circuitBreaker,
+                           OutboundRateLimiter rateLimiter) {
         this.appProperties = appProperties;
         this.telegramChannelRepository = telegramChannelRepository;
         this.settingRepository = settingRepository;
@@ -192,6 +198,9 @@ public class TelegramService {
         this.remoteSearchService = remoteSearchService;
         this.restTemplate = restTemplateBuilder.build();
         this.objectMapper = objectMapper;
+        this.executorService = upstreamExecutor.lane("telegram", 32, 512);
+        this.circuitBreaker = circuitBreaker;
+        this.httpClient = new OkHttpClient.Builder().addInterceptor(rateLimiter.okHttpInterceptor()).build();
     }
 
     @PostConstruct
@@ -333,14 +342,15 @@ public class TelegramService {
 
         if (results.isEmpty()) {
             String[] channels = username.split(",");
+            CompletionService<List<Message>> completionService = new ExecutorCompletionService<>(executorService);
             List<Future<List<Message>>> futures = new ArrayList<>();
             for (String channel : channels) {
                 String name = channel.split("\\|")[0];
-                Future<List<Message>> future = executorService.submit(() -> searchFromChannel(name, keyword, false, 100));
+                Future<List<Message>> future = completionService.submit(() -> searchFromChannel(name, keyword, false, 100));
                 futures.add(future);
             }
 
-            results = getResult(futures);
+            results = getResult(completionService, futures, e -> true, 0);
         }
 
         log.info("Search TG pg get {} results.", results.size());
@@ -791,7 +801,7 @@ public class TelegramService {
         String url = "https://m.douban.com/rexxar/api/v2/subject_collection/" + type + "/items?os=linux&for_mobile=1&callback=&start=" + start + "&count=" + size + "&loc_id=108288&_=0";
         HttpEntity<Void> httpEntity = buildHttpEntity();
 
-        var response = restTemplate.exchange(url, HttpMethod.GET, httpEntity, JsonNode.class);
+        var response = getDoubanJson(url, httpEntity);
         int total = response.getBody().get("total").asInt();
         ArrayNode items = (ArrayNode) response.getBody().get("subject_collection_items");
         for (JsonNode item : items) {
@@ -951,7 +961,7 @@ public class TelegramService {
 
         HttpEntity<Void> httpEntity = buildHttpEntity();
 
-        var response = restTemplate.exchange(url, HttpMethod.GET, httpEntity, JsonNode.class);
+        var response = getDoubanJson(url, httpEntity);
         int total = response.getBody().get("total").asInt();
         ArrayNode items = (ArrayNode) response.getBody().get("items");
         for (JsonNode item : items) {
@@ -1128,6 +1138,7 @@ public class TelegramService {
     }
 
     public List<Message> search(String keyword, int size, boolean web, boolean cached) {
+        Predicate<Message> filter = messageFilter();
         List<Message> results = List.of();
         List<TelegramChannel> channels = list().stream().filter(TelegramChannel::isValid).filter(TelegramChannel::isEnabled).toList();
         int searchedChannelCount = channels.size();
@@ -1151,28 +1162,20 @@ public class TelegramService {
             channels = channels.stream().filter(TelegramChannel::isWebAccess).toList();
             searchedChannelCount = channels.size();
 
+            CompletionService<List<Message>> completionService = new ExecutorCompletionService<>(executorService);
             List<Future<List<Message>>> futures = new ArrayList<>();
             for (var channel : channels) {
                 String name = channel.getUsername();
-                Future<List<Message>> future = executorService.submit(() -> cached ? searchCache.get(name + "-" + web) : searchFromChannel(name, keyword, web, size));
+                Future<List<Message>> future = completionService.submit(() -> cached ? searchCache.get(name + "-" + web) : searchFromChannel(name, keyword, web, size));
                 futures.add(future);
             }
 
-            results = getResult(futures);
+            results = getResult(completionService, futures, filter, appProperties.getTgEnoughResults());
+        } else {
+            results = results.stream().filter(filter).toList();
         }
 
-        List<String> tgDrivers = appProperties.getTgDrivers();
         List<Message> list = results.stream()
-                .filter(e -> tgDrivers.isEmpty() || tgDrivers.contains(e.getType()))
-                .filter(e -> !e.getContent().toLowerCase().contains("pdf"))
-                .filter(e -> !e.getContent().toLowerCase().contains("epub"))
-                .filter(e -> !e.getContent().toLowerCase().contains("azw3"))
-                .filter(e -> !e.getContent().toLowerCase().contains("mobi"))
-                .filter(e -> !e.getContent().toLowerCase().contains("ppt"))
-                .filter(e -> !e.getContent().contains("软件"))
-                .filter(e -> !e.getContent().contains("图书"))
-                .filter(e -> !e.getContent().contains("电子书"))
-                .filter(e -> !e.getContent().contains("分享文件："))
                 .sorted(comparator())
                 .distinct()
                 .toList();
@@ -1180,6 +1183,15 @@ public class TelegramService {
         return list;
     }
 
+    /**
+     * 合并网盘类型和关键词排除规则，每条消息的内容只扫描一遍。
+     */
+    private Predicate<Message> messageFilter() {
+        List<String> tgDrivers = appProperties.getTgDrivers();
+        return e -> (tgDrivers.isEmpty() || tgDrivers.contains(e.getType()))
+                && !EXCLUDED_CONTENT.matcher(e.getContent()).find();
+    }
+
     private Comparator<Message> comparator() {
         Comparator<Message> type = Comparator.comparing(a -> appProperties.getTgDriverOrder().indexOf(a.getType()));
         return switch (appProperties.getTgSortField()) {
@@ -1198,7 +1210,7 @@ public class TelegramService {
         }
         String url = api + "?channels=" + channels + "&query=" + keyword + "&size=" + size + "&timeout=" + appProperties.getTgTimeout();
         try {
-            var response = restTemplate.getForObject(url, SearchResponse.class);
+            var response = circuitBreaker.call("tg-search", () -> restTemplate.getForObject(url, SearchResponse.class));
             return response.getMessages().stream().flatMap(this::parseMessage).toList();
         } catch (Exception e) {
             log.warn("", e);
@@ -1232,7 +1244,7 @@ public class TelegramService {
             HttpHeaders headers = buildTgSearchHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             HttpEntity<ObjectNode> entity = new HttpEntity<>(body, headers);
-            var response = restTemplate.exchange(url, HttpMethod.POST, entity, ObjectNode.class).getBody();
+            var response = circuitBreaker.call("tg-search", () -> restTemplate.exchange(url, HttpMethod.POST, entity, ObjectNode.class)).getBody();
             return parseTgSearchResponse(response);
         } catch (Exception e) {
             log.warn("", e);
@@ -1388,46 +1400,45 @@ public class TelegramService {
     private record TgSearchResult(List<Message> messages, int total) {
     }
 
-    private List<Message> getResult(List<Future<List<Message>>> futures) {
-        long startTime = System.currentTimeMillis();
+    /**
+     * 按完成顺序收集各频道的结果，超时或已收集到足够结果后立即返回，并取消未完成的请求。
+     *
+     * @param enough 满足过滤条件的结果达到该数量即提前返回，0表示等待全部频道或超时
+     */
+    private List<Message> getResult(CompletionService<List<Message>> completionService, List<Future<List<Message>>> futures, Predicate<Message> filter, int enough) {
+        long deadline = System.currentTimeMillis() + appProperties.getTgTimeout();
         List<Message> results = new ArrayList<>();
-        List<Future<List<Message>>> incompleteFutures = new ArrayList<>();
-
-        for (Future<List<Message>> future : futures) {
-            long remaining = Math.max(1, appProperties.getTgTimeout() - (System.currentTimeMillis() - startTime));
-
-            try {
-                List<Message> result = future.get(remaining, TimeUnit.MILLISECONDS);
-                results.addAll(result);
-            } catch (TimeoutException e) {
-                incompleteFutures.add(future);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.warn("Interrupted while waiting for search results", e);
-                incompleteFutures.add(future);
-            } catch (ExecutionException e) {
-                log.warn("", e);
-            }
-        }
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                long remaining = deadline - System.currentTimeMillis();
+                Future<List<Message>> future = completionService.poll(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    log.debug("{} channels timeout", futures.size() - i);
+                    break;
+                }
 
-        Iterator<Future<List<Message>>> iterator = incompleteFutures.iterator();
-        while (iterator.hasNext()) {
-            Future<List<Message>> future = iterator.next();
-            if (future.isDone()) {
                 try {
-                    results.addAll(future.get());
-                    iterator.remove();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.warn("Interrupted while retrieving completed future", e);
+                    for (Message message : future.get()) {
+                        if (filter.test(message)) {
+                            results.add(message);
+                        }
+                    }
                 } catch (ExecutionException e) {
                     log.warn("", e);
                 }
+
+                if (enough > 0 && results.size() >= enough) {
+                    log.debug("get {} results from {}/{} channels", results.size(), i + 1, futures.size());
+                    break;
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for search results", e);
+        } finally {
+            futures.forEach(f -> f.cancel(true));
         }
 
-        incompleteFutures.forEach(f -> f.cancel(true));
-
         return results;
     }
 
@@ -1565,6 +1576,10 @@ public class TelegramService {
         return list;
     }
 
+    private ResponseEntity<JsonNode> getDoubanJson(String url, HttpEntity<Void> httpEntity) {
+        return circuitBreaker.call("douban", () -> restTemplate.exchange(url, HttpMethod.GET, httpEntity, JsonNode.class));
+    }
+
     private String getHtml(String url) throws IOException {
         Request request = new Request.Builder()
                 .url(url)
@@ -1575,13 +1590,14 @@ public class TelegramService {
                 .build();
 
         // Use try-with-resources to ensure response is always closed
-        Call call = httpClient.newCall(request);
-        try (Response response = call.execute()) {
-            if (response.body() == null) {
-                throw new IOException("Response body is null for URL: " + url);
+        return circuitBreaker.call("telegram", () -> {
+            try (Response response = httpClient.newCall(request).execute()) {
+                if (response.body() == null) {
+                    throw new IOException("Response body is null for URL: " + url);
+                }
+                return response.body().string();
             }
-            return response.body().string();
-        }
+        });
     }
 
     public List<TelegramChannel> updateAll(List<TelegramChannel> channels) {
@@ -1591,23 +1607,4 @@ public class TelegramService {
         }
         return telegramChannelRepository.saveAll(channels);
     }
-
-    @PreDestroy
-    public void cleanup() {
-        log.info("Shutting down TelegramService executor service");
-        executorService.shutdown();
-        try {
-            if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
-                log.warn("Executor service did not terminate in time, forcing shutdown");
-                executorService.shutdownNow();
-                if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
-                    log.error("Executor service did not terminate after forced shutdown");
-                }
-            }
-        } catch (InterruptedException e) {
-            log.warn("Interrupted while waiting for executor service to terminate", e);
-            executorService.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
-    }
 }
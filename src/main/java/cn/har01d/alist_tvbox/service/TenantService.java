@@ -18,10 +18,12 @@ import java.util.stream.Collectors;
 public class TenantService {
     private final ThreadLocal<String> threadLocal = new ThreadLocal<>();
     private final TenantRepository tenantRepository;
+    private final MetaListCache metaListCache;
     private List<Tenant> tenants;
 
-    public TenantService(TenantRepository tenantRepository) {
+    public TenantService(TenantRepository tenantRepository, MetaListCache metaListCache) {
         this.tenantRepository = tenantRepository;
+        this.metaListCache = metaListCache;
     }
 
     public List<Tenant> list() {
@@ -36,6 +38,7 @@ public class TenantService {
         }
         fixRules(tenant);
         tenants = null;
+        metaListCache.invalidate();
         return tenantRepository.save(tenant);
     }
 
@@ -47,12 +50,14 @@ public class TenantService {
         tenant.setId(id);
         fixRules(tenant);
         tenants = null;
+        metaListCache.invalidate();
         return tenantRepository.save(tenant);
     }
 
     public void delete(Integer id) {
         tenantRepository.deleteById(id);
         tenants = null;
+        metaListCache.invalidate();
     }
 
     private void fixRules(Tenant tenant) {
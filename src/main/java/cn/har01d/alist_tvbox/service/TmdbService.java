@@ -18,6 +18,7 @@ import cn.har01d.alist_tvbox.entity.TmdbMetaRepository;
 import cn.har01d.alist_tvbox.entity.TmdbRepository;
 import cn.har01d.alist_tvbox.exception.BadRequestException;
 import cn.har01d.alist_tvbox.tvbox.MovieDetail;
+import cn.har01d.alist_tvbox.util.ProgressFile;
 import cn.har01d.alist_tvbox.util.TextUtils;
 import cn.har01d.alist_tvbox.util.Utils;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -41,10 +42,19 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -55,6 +65,8 @@ import static cn.har01d.alist_tvbox.util.Constants.TMDB_API_KEY;
 @Service
 public class TmdbService {
     private static final Pattern YEAR2_PATTERN = Pattern.compile("(\\d{4})");
+    private static final int SCRAPE_WORKERS = 4;
+    private static final int SCRAPE_CHUNK_SIZE = 100;
     private final TmdbRepository tmdbRepository;
     private final TmdbMetaRepository tmdbMetaRepository;
     private final MetaRepository metaRepository;
@@ -63,8 +75,11 @@ public class TmdbService {
     private final TaskService taskService;
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final CircuitBreaker circuitBreaker;
+    private final OutboundRateLimiter rateLimiter;
+    private final ExecutorService scrapeExecutor;
+    private final Map<String, CompletableFuture<Tmdb>> detailsInFlight = new ConcurrentHashMap<>();
 
-    private final int rateLimit = 2000;
     private static final Set<String> SPECIAL_FOLDERS = Set.of(
             "SDR", "国语", "国语版", "粤语", "粤语版", "番外彩蛋", "彩蛋",
             "付费花絮合集", "大结局点映礼", "心动记录+彩蛋"
@@ -72,7 +87,6 @@ public class TmdbService {
     private Map<String, String> countryNames = new HashMap<>();
 
     private String apiKey;
-    private long lastRequestTime;
     private final ThreadLocal<Integer> siteId = ThreadLocal.withInitial(() -> 1);
 
     public TmdbService(TmdbRepository tmdbRepository,
@@ -82,7 +96,10 @@ public class TmdbService {
                        SiteService siteService,
                        TaskService taskService,
                        RestTemplateBuilder builder,
-                       ObjectMapper objectMapper) {
+                       ObjectMapper objectMapper,
+                       CircuitBreaker circuitBreaker,
+                       OutboundRateLimiter rateLimiter,
+                       UpstreamExecutor upstreamExecutor) {
         this.tmdbRepository = tmdbRepository;
         this.tmdbMetaRepository = tmdbMetaRepository;
         this.metaRepository = metaRepository;
@@ -91,6 +108,9 @@ public class TmdbService {
         this.taskService = taskService;
         this.restTemplate = builder.build();
         this.objectMapper = objectMapper;
+        this.circuitBreaker = circuitBreaker;
+        this.rateLimiter = rateLimiter;
+        this.scrapeExecutor = upstreamExecutor.lane("tmdb-scrape", SCRAPE_WORKERS, SCRAPE_CHUNK_SIZE * 2);
     }
 
     public void setApiKey(String apiKey) {
@@ -315,65 +335,111 @@ public class TmdbService {
         Site site = siteService.getById(siteId);
         Task task = taskService.addScrapeTask(site);
         this.siteId.set(siteId);
-        try {
+        try (var ignored = OutboundRateLimiter.background()) {
             scrapeIndexFile(task, lines, force);
         } finally {
             this.siteId.remove();
         }
     }
 
+    /**
+     * 按块处理索引行：每块批量查询已刮削的路径，再交给有限的工作线程并发刮削，
+     * 所有线程共享 TMDB 的请求限速。取消检查、任务进度和进度文件都按块更新。
+     */
     public void scrapeIndexFile(Task task, List<String> lines, boolean force) {
-        int count = 0;
-        Set<String> failed = loadFailed();
-        List<String> paths = new ArrayList<>();
-        log.debug("load {} failed names", failed.size());
+        int site = siteId.get();
+        AtomicInteger count = new AtomicInteger();
         taskService.startTask(task.getId());
 
-        for (int i = 0; i < lines.size(); i++) {
-            if (isCancelled(task.getId())) {
-                break;
-            }
-            String line = lines.get(i).trim();
-            if (line.isEmpty() || line.startsWith("-") || line.startsWith("+")) {
-                log.debug("ignore line {}", line);
-                continue;
-            }
+        try (ProgressFile pathsFile = ProgressFile.open(Utils.getDataPath("atv", "tmdb_paths.txt"), true);
+             ProgressFile failedFile = ProgressFile.open(Utils.getDataPath("atv", "tmdb_failed.txt"), false)) {
+            Set<String> failed = failedFile.track(loadFailed());
+            log.debug("load {} failed names", failed.size());
 
-            String path = line.split("#")[0];
-            if (metaRepository.existsByPath(path)) {
-                log.debug("ignore path {}", path);
-                continue;
-            }
+            for (int start = 0; start < lines.size(); start += SCRAPE_CHUNK_SIZE) {
+                if (isCancelled(task.getId())) {
+                    break;
+                }
 
-            try {
-                log.debug("handle {} {}", i, line);
-                taskService.updateTaskSummary(task.getId(), (i + 1) + ":" + line);
-                String type = guessType(line);
-                Tmdb movie = handleIndexLine(i, line, type == null ? "tv" : type, force, failed);
-                if (movie == null && type == null) {
-                    handleIndexLine(i, line, "movie", force, failed);
+                Map<Integer, String> chunk = new LinkedHashMap<>();
+                for (int i = start; i < Math.min(start + SCRAPE_CHUNK_SIZE, lines.size()); i++) {
+                    String line = lines.get(i).trim();
+                    if (line.isEmpty() || line.startsWith("-") || line.startsWith("+")) {
+                        log.debug("ignore line {}", line);
+                        continue;
+                    }
+                    chunk.put(i, line);
                 }
-                if (movie != null) {
-                    count++;
-                    taskService.updateTaskData(task.getId(), "成功刮削数量：" + count);
-                } else {
-                    log.warn("刮削失败：{}", line.split("#")[0]);
-                    paths.add(line.split("#")[0]);
+                if (chunk.isEmpty()) {
+                    continue;
                 }
 
-                if (i > 0 && i % 10 == 0) {
-                    writeText("tmdb_paths.txt", String.join("\n", paths));
-                    writeText("tmdb_failed.txt", String.join("\n", failed));
+                Set<String> paths = chunk.values().stream().map(e -> e.split("#")[0]).collect(Collectors.toSet());
+                Set<String> existing = new HashSet<>(metaRepository.findPathsByPathIn(paths));
+                taskService.updateTaskSummary(task.getId(), (start + 1) + ":" + chunk.values().iterator().next());
+
+                List<Future<?>> futures = new ArrayList<>();
+                for (var entry : chunk.entrySet()) {
+                    int i = entry.getKey();
+                    String line = entry.getValue();
+                    String path = line.split("#")[0];
+                    if (existing.contains(path)) {
+                        log.debug("ignore path {}", path);
+                        continue;
+                    }
+                    Runnable job = () -> {
+                        try (var ignored = OutboundRateLimiter.background()) {
+                            if (scrapeIndexLine(site, i, line, force, failed)) {
+                                count.incrementAndGet();
+                            } else {
+                                log.warn("刮削失败：{}", path);
+                                pathsFile.append(path);
+                            }
+                        } catch (Exception e) {
+                            log.warn("{}: {}", i, line, e);
+                        }
+                    };
+                    try {
+                        futures.add(scrapeExecutor.submit(job));
+                    } catch (RejectedExecutionException e) {
+                        // 多个刮削任务同时运行时队列可能已满，直接在当前线程处理，保证任务能正常结束
+                        log.debug("scrape lane is full, run inline: {}", i);
+                        job.run();
+                    }
                 }
-            } catch (Exception e) {
-                log.warn("{}: {}", i, line, e);
+                try {
+                    for (Future<?> future : futures) {
+                        try {
+                            future.get();
+                        } catch (ExecutionException e) {
+                            log.warn("", e.getCause());
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    futures.forEach(future -> future.cancel(true));
+                    throw e;
+                }
+
+                taskService.updateTaskData(task.getId(), "成功刮削数量：" + count.get());
+                pathsFile.flush();
+                failedFile.flush();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("scrape index file interrupted");
         }
 
         taskService.completeTask(task.getId());
+    }
 
-        writeText("tmdb_paths.txt", String.join("\n", paths));
-        writeText("tmdb_failed.txt", String.join("\n", failed));
+    private boolean scrapeIndexLine(int site, int i, String line, boolean force, Set<String> failed) {
+        log.debug("handle {} {}", i, line);
+        String type = guessType(line);
+        Tmdb movie = handleIndexLine(site, i, line, type == null ? "tv" : type, force, failed);
+        if (movie == null && type == null) {
+            handleIndexLine(site, i, line, "movie", force, failed);
+        }
+        return movie != null;
     }
 
     private String guessType(String path) {
@@ -389,18 +455,6 @@ public class TmdbService {
         return null;
     }
 
-    private static void writeText(String name, String content) {
-        try {
-            Path path = Utils.getDataPath("atv", name);
-            if (path.getParent() != null) {
-                Files.createDirectories(path.getParent());
-            }
-            Files.writeString(path, content);
-        } catch (Exception e) {
-            log.warn("", e);
-        }
-    }
-
     private Set<String> loadFailed() {
         Path path = Utils.getDataPath("atv", "tmdb_failed.txt");
         try {
@@ -416,7 +470,7 @@ public class TmdbService {
 
     private static final Pattern TMDBID = Pattern.compile("\\{tmdbid-(\\d+)}");
 
-    private Tmdb handleIndexLine(int id, String line, String type, boolean force, Set<String> failed) {
+    private Tmdb handleIndexLine(int siteId, int id, String line, String type, boolean force, Set<String> failed) {
         String[] parts = line.split("#");
         String path = parts[0];
 
@@ -424,7 +478,7 @@ public class TmdbService {
         if (meta == null) {
             meta = new TmdbMeta();
             meta.setPath(path);
-            meta.setSiteId(siteId.get());
+            meta.setSiteId(siteId);
         } else if (meta.getTmdb() != null && !force) {
             return meta.getTmdb();
         }
@@ -706,9 +760,16 @@ public class TmdbService {
         return search(type, name, Objects.toString(year, ""), match);
     }
 
-    private void sleep(long time) {
+    /**
+     * 内置API Key由所有用户共享，请求需要严格限速；自定义API Key按 TMDB 的上限限速。
+     * 并发刮削的工作线程共用同一个令牌桶
+     */
+    private void acquire() {
+        if (log.isDebugEnabled()) {
+            return;
+        }
         try {
-            Thread.sleep(time);
+            rateLimiter.acquire(TMDB_API_KEY.equals(apiKey) ? "tmdb" : "tmdb-api");
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
@@ -723,13 +784,9 @@ public class TmdbService {
                 .build()
                 .encode()
                 .toUriString();
-        long now = System.currentTimeMillis();
-        if (!log.isDebugEnabled() && TMDB_API_KEY.equals(apiKey) && now - lastRequestTime < rateLimit) {
-            sleep(lastRequestTime + rateLimit - now);
-        }
+        acquire();
         log.debug("search: {}", url);
-        TmdbList list = restTemplate.getForObject(url, TmdbList.class);
-        lastRequestTime = now;
+        TmdbList list = circuitBreaker.call("tmdb", () -> restTemplate.getForObject(url, TmdbList.class));
         if (list != null && list.getResults() != null) {
             log.debug("get {} reasults", list.getResults().size());
             for (TmdbDto dto : list.getResults()) {
@@ -748,8 +805,41 @@ public class TmdbService {
         return null;
     }
 
+    /**
+     * 同一 (type, id) 的详情请求合并为一次：并发刮削的多个目录指向同一部影片时，
+     * 只有一个线程请求 TMDB 并保存，避免生成重复的 Tmdb 记录。
+     */
     public Tmdb getById(String type, Integer id) {
-        return tmdbRepository.findByTypeAndTmdbId(type, id).orElseGet(() -> getDetails(type, id));
+        Tmdb tmdb = tmdbRepository.findByTypeAndTmdbId(type, id).orElse(null);
+        if (tmdb != null) {
+            return tmdb;
+        }
+
+        String key = type + ":" + id;
+        CompletableFuture<Tmdb> future = new CompletableFuture<>();
+        CompletableFuture<Tmdb> existing = detailsInFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException ex) {
+                    throw ex;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            // 上一个请求可能刚保存完并退出，再查一次
+            tmdb = tmdbRepository.findByTypeAndTmdbId(type, id).orElseGet(() -> getDetails(type, id));
+            future.complete(tmdb);
+            return tmdb;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            detailsInFlight.remove(key, future);
+        }
     }
 
     public Tmdb getDetails(String type, Integer id) {
@@ -760,13 +850,9 @@ public class TmdbService {
                 .build()
                 .encode()
                 .toUriString();
-        long now = System.currentTimeMillis();
-        if (!log.isDebugEnabled() && TMDB_API_KEY.equals(apiKey) && now - lastRequestTime < rateLimit) {
-            sleep(lastRequestTime + rateLimit - now);
-        }
+        acquire();
         log.debug("getDetails: {}", url);
-        TmdbDto dto = restTemplate.getForObject(url, TmdbDto.class);
-        lastRequestTime = now;
+        TmdbDto dto = circuitBreaker.call("tmdb", () -> restTemplate.getForObject(url, TmdbDto.class));
         log.debug("getDetails: {} {} {}", type, id, dto);
         Tmdb tmdb = new Tmdb();
         tmdb.setType(type);
@@ -56,10 +56,13 @@ import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.springframework.boot.restclient.RestTemplateBuilder;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.EscapeCharacter;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
@@ -76,8 +79,11 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -88,8 +94,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -111,6 +117,8 @@ public class TvBoxService {
     private final AListAliasRepository aliasRepository;
     private final ShareRepository shareRepository;
     private final MetaRepository metaRepository;
+    private final MetaSearchIndex metaSearchIndex;
+    private final MetaListCache metaListCache;
     private final DriverAccountRepository driverAccountRepository;
     private final DeviceRepository deviceRepository;
 
@@ -131,10 +139,23 @@ public class TvBoxService {
     private final ObjectMapper objectMapper;
     private final RestTemplate restTemplate;
 
-    private final ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private final ExecutorService executorService;
     private final Cache<Integer, List<String>> cache = Caffeine.newBuilder()
             .maximumSize(10)
             .build();
+    private final Cache<String, CategoryList> categoryCache = Caffeine.newBuilder()
+            .maximumSize(10)
+            .expireAfterWrite(Duration.ofMinutes(30))
+            .build();
+    private final AtomicLong categoryGeneration = new AtomicLong();
+    private final Cache<String, ScrollPosition> metaCursors = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+    private final Cache<String, M3u8> m3u8Cache = Caffeine.newBuilder()
+            .maximumSize(100)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
     private final Set<String> excludeNames = Set.of("国产剧", "欧美剧", "电视剧", "美剧", "短剧", "动漫", "国漫", "纪录片", "综艺", "电子书", "有声书", "有声小说", "电影", "电影合集", "动画电影", "欧美电影", "演唱会", "日韩剧", "每日更新", "temp", "合集1", "合集2", "合集3");
 
     private final List<FilterValue> filters = Arrays.asList(
@@ -192,7 +213,10 @@ public class TvBoxService {
                         ProxyService proxyService,
                         Index115TvBoxAdapter index115Adapter,
                         RestTemplateBuilder builder,
-                        PikPakAccountRepository pikPakAccountRepository) {
+                        PikPakAccountRepository pikPakAccountRepository,
+                        UpstreamExecutor upstreamExecutor,
+                        MetaSearchIndex metaSearchIndex,
+                        MetaListCache metaListCache) {
         this.accountRepository = accountRepository;
         this.aliasRepository = aliasRepository;
         this.shareRepository = shareRepository;
@@ -216,6 +240,9 @@ public class TvBoxService {
         this.index115Adapter = index115Adapter;
         this.restTemplate = builder.build();
         this.pikPakAccountRepository = pikPakAccountRepository;
+        this.executorService = upstreamExecutor.lane("tvbox-search", 32, 256);
+        this.metaSearchIndex = metaSearchIndex;
+        this.metaListCache = metaListCache;
     }
 
     private Site getXiaoyaSite() {
@@ -243,13 +270,57 @@ public class TvBoxService {
         return result;
     }
 
+    /**
+     * 分类缓存的版本号，由站点、合并/混合设置、category.txt的修改时间和失效次数组成。
+     */
+    private String getCategoryKey(Site site) {
+        long modified = 0;
+        long size = 0;
+        try {
+            Path file = Utils.getDataPath("category.txt");
+            if (Files.exists(file)) {
+                modified = Files.getLastModifiedTime(file).toMillis();
+                size = Files.size(file);
+            }
+        } catch (IOException e) {
+            log.debug("", e);
+        }
+        return site.getId() + "-" + site.getName() + "-" + site.getUrl() + "-" + appProperties.isMix() + "-" + appProperties.isMerge()
+                + "-" + LocalDate.now().getYear() + "-" + modified + "-" + size + "-" + categoryGeneration.get();
+    }
+
+    public String getCategoryETag(Integer type) {
+        if (type != 0) {
+            return null;
+        }
+        Site site = getXiaoyaOrFirstSite();
+        if (site == null) {
+            return null;
+        }
+        // 弱ETag，Tomcat不压缩带强ETag的响应
+        return "W/\"" + Utils.md5(getCategoryKey(site)) + "\"";
+    }
+
+    public void invalidateCategoryCache() {
+        categoryGeneration.incrementAndGet();
+        categoryCache.invalidateAll();
+        // 别名内容决定分类列表查询的路径
+        metaListCache.invalidate();
+    }
+
     public CategoryList getCategoryList(Integer type) {
         CategoryList result = new CategoryList();
 
         if (type == 0) {
             Site site = getXiaoyaOrFirstSite();
             if (site != null) {
-                setTypes(result, site);
+                result = categoryCache.get(getCategoryKey(site), key -> {
+                    CategoryList list = new CategoryList();
+                    setTypes(list, site);
+                    list.setTotal(list.getCategories().size());
+                    list.setLimit(list.getCategories().size());
+                    return list;
+                });
             }
         } else {
             int id = 1;
@@ -584,6 +655,11 @@ public class TvBoxService {
     }
 
     public MovieList recommend(String ac, int pg) {
+        String key = "recommend|" + tenantService.getCurrent() + "|" + "videolist".equals(ac) + "|" + pg;
+        return metaListCache.get(key, () -> loadRecommend(ac, pg));
+    }
+
+    private MovieList loadRecommend(String ac, int pg) {
         List<MovieDetail> list = new ArrayList<>();
         Pageable pageable = PageRequest.of(pg - 1, 60, Sort.Direction.DESC, "time", "id");
         Page<Meta> page = metaRepository.findAll(pageable);
@@ -722,7 +798,36 @@ public class TvBoxService {
         return null;
     }
 
+    private List<Meta> searchMeta(String keyword, String filter, int page) {
+        String score = "";
+        String year = "";
+        if (StringUtils.isNotBlank(filter)) {
+            try {
+                Map<String, String> map = objectMapper.readValue(filter, Map.class);
+                score = map.getOrDefault("score", "");
+                year = map.getOrDefault("year", "");
+            } catch (Exception e) {
+                log.warn("", e);
+            }
+        }
+
+        int size = appProperties.getMaxSearchResult();
+        Specification<Meta> spec = scoreYearFilter(score, year);
+        List<Meta> list = metaSearchIndex.search(keyword, spec, page, size);
+        if (list != null) {
+            return list;
+        }
+        return metaRepository.findAll(keywordFilter(keyword).and(spec), PageRequest.of(page - 1, size, Sort.Direction.DESC, "time", "id")).getContent();
+    }
+
     public MovieList search(Integer type, String ac, String keyword, int page) {
+        return search(type, ac, keyword, null, page);
+    }
+
+    /**
+     * @param filter 刮削数据搜索的评分和年份条件，格式同分类列表的筛选
+     */
+    public MovieList search(Integer type, String ac, String keyword, String filter, int page) {
         MovieList result = new MovieList();
         List<MovieDetail> list = new ArrayList<>();
         sites = siteService.findAll();
@@ -733,7 +838,7 @@ public class TvBoxService {
         }
 
         if (type != null && type == 0) {
-            for (Meta meta : metaRepository.findByPathContains(keyword, PageRequest.of(page - 1, appProperties.getMaxSearchResult(), Sort.Direction.DESC, "time", "id"))) {
+            for (Meta meta : searchMeta(keyword, filter, page)) {
                 if (appProperties.getExcludedPaths().stream().anyMatch(meta.getPath()::startsWith)) {
                     log.debug("exclude: {}", meta.getPath());
                     continue;
@@ -1173,6 +1278,11 @@ public class TvBoxService {
     }
 
     public MovieList getMetaList(String ac, String tid, String filter, String sort, int page) {
+        String key = "meta|" + tenantService.getCurrent() + "|" + "videolist".equals(ac) + "|" + tid + "|" + filter + "|" + sort + "|" + page;
+        return metaListCache.get(key, () -> loadMetaList(ac, tid, filter, sort, page));
+    }
+
+    private MovieList loadMetaList(String ac, String tid, String filter, String sort, int page) {
         String[] parts = tid.split("\\$");
         String path = parts[1];
         List<MovieDetail> files = new ArrayList<>();
@@ -1228,60 +1338,49 @@ public class TvBoxService {
         }
         log.debug("paths: {}", paths);
 
-        int pages = 0;
-        Page<Meta> list = new PageImpl<>(List.of());
-        for (String line : paths) {
-            path = line;
-            if (!tenantService.valid(path)) {
-                continue;
-            }
-            log.debug("get movies from {} {}", path, pages);
-            pageable = PageRequest.of(page - pages - 1, size, pageable.getSort());
-            if (year.isEmpty()) {
-                if ("normal".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreGreaterThanEqual(path, 60, pageable);
-                } else if ("high".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreGreaterThanEqual(path, 80, pageable);
-                } else if ("low".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreLessThan(path, 60, pageable);
-                } else if ("no".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreIsNull(path, pageable);
-                } else {
-                    list = metaRepository.findByPathStartsWith(path, pageable);
-                }
-            } else if ("others".equals(year)) {
-                int y = LocalDate.now().getYear() - 20;
-                if ("normal".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreGreaterThanEqualAndYearLessThan(path, 60, y, pageable);
-                } else if ("high".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreGreaterThanEqualAndYearLessThan(path, 80, y, pageable);
-                } else if ("low".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreLessThanAndYearLessThan(path, 60, y, pageable);
-                } else if ("no".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreIsNullAndYearLessThan(path, y, pageable);
-                } else {
-                    list = metaRepository.findByPathStartsWithAndYearLessThan(path, y, pageable);
-                }
+        // 别名的多个路径合并为一次查询，按时间排序时用游标翻页，不再查询总数
+        paths = paths.stream().filter(tenantService::valid).toList();
+        List<Meta> list = List.of();
+        long total = 0;
+        int pageCount = 1;
+        if (!paths.isEmpty()) {
+            Specification<Meta> spec = metaFilter(paths, score, year);
+            Sort.Order order = getKeysetOrder(pageable.getSort());
+            if (order != null && metaRepository.existsByTimeIsNull()) {
+                // 存在没有时间的数据时游标会漏掉这些数据，改用偏移量翻页
+                log.debug("meta time is null, use offset paging");
+                order = null;
+            }
+            String cursorKey = tenantService.getCurrent() + "|" + paths + "|" + score + "|" + year + "|" + sort;
+            ScrollPosition position = null;
+            if (order != null) {
+                // 时间相同时按ID排序，保证游标唯一
+                pageable = PageRequest.of(page - 1, size, Sort.by(order, new Sort.Order(order.getDirection(), "id")));
+                position = getMetaCursor(cursorKey, page);
+            }
+            if (position != null) {
+                Sort keysetSort = pageable.getSort();
+                ScrollPosition start = position;
+                Window<Meta> window = metaRepository.findBy(spec, q -> q.sortBy(keysetSort).limit(size).scroll(start));
+                list = window.getContent();
+                total = (long) (page - 1) * size + list.size();
+                pageCount = window.hasNext() ? page + 1 : page;
             } else {
-                if ("normal".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreGreaterThanEqualAndYear(path, 60, Integer.parseInt(year), pageable);
-                } else if ("high".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreGreaterThanEqualAndYear(path, 80, Integer.parseInt(year), pageable);
-                } else if ("low".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreLessThanAndYear(path, 60, Integer.parseInt(year), pageable);
-                } else if ("no".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreIsNullAndYear(path, Integer.parseInt(year), pageable);
-                } else {
-                    list = metaRepository.findByPathStartsWithAndYear(path, Integer.parseInt(year), pageable);
+                // 没有上一页的游标时按偏移量查询，并记录本页游标供后续翻页
+                Page<Meta> offsetPage = metaRepository.findAll(spec, pageable);
+                list = offsetPage.getContent();
+                total = offsetPage.getTotalElements();
+                pageCount = offsetPage.getTotalPages() + 1;
+            }
+            if (order != null && !list.isEmpty()) {
+                Meta last = list.get(list.size() - 1);
+                if (last.getTime() != null) {
+                    metaCursors.put(cursorKey + "|" + page, ScrollPosition.forward(Map.of("time", last.getTime(), "id", last.getId())));
                 }
             }
-            pages += list.getTotalPages();
-            if (list.getNumberOfElements() > 0) {
-                break;
-            }
         }
 
-        log.debug("{} {} {}", pageable, list, list.getContent().size());
+        log.debug("{} {} {}", pageable, paths, list.size());
         Map<String, List<Meta>> map = new HashMap<>();
         Set<String> added = new HashSet<>();
         for (Meta meta : list) {
@@ -1305,7 +1404,7 @@ public class TvBoxService {
                 added.add(name);
             } else {
                 movieDetail.setVod_id(String.valueOf(meta.getId()));
-                if (path.equals("/")) {
+                if (paths.size() == 1 && paths.get(0).equals("/")) {
                     movieDetail.setVod_remarks(getLabel(meta.getPath()));
                 }
             }
@@ -1319,13 +1418,72 @@ public class TvBoxService {
         result.getList().addAll(files);
 
         result.setPage(page);
-        result.setTotal((int) list.getTotalElements());
+        result.setTotal((int) total);
         result.setLimit(files.size());
-        result.setPagecount(pages + 1);
+        result.setPagecount(pageCount);
         log.debug("list: {}", result);
         return result;
     }
 
+    static Specification<Meta> metaFilter(List<String> paths, String score, String year) {
+        Specification<Meta> prefix = (root, query, cb) -> {
+            char escape = EscapeCharacter.DEFAULT.getEscapeCharacter();
+            return cb.or(paths.stream()
+                    .map(path -> cb.like(root.<String>get("path"), EscapeCharacter.DEFAULT.escape(path) + "%", escape))
+                    .toArray(jakarta.persistence.criteria.Predicate[]::new));
+        };
+        return prefix.and(scoreYearFilter(score, year));
+    }
+
+    /**
+     * 路径或名称包含关键词
+     */
+    static Specification<Meta> keywordFilter(String keyword) {
+        return (root, query, cb) -> {
+            char escape = EscapeCharacter.DEFAULT.getEscapeCharacter();
+            String pattern = "%" + EscapeCharacter.DEFAULT.escape(keyword) + "%";
+            return cb.or(cb.like(root.<String>get("path"), pattern, escape), cb.like(root.<String>get("name"), pattern, escape));
+        };
+    }
+
+    static Specification<Meta> scoreYearFilter(String score, String year) {
+        return (root, query, cb) -> {
+            List<jakarta.persistence.criteria.Predicate> predicates = new ArrayList<>();
+            switch (score) {
+                case "normal" -> predicates.add(cb.ge(root.<Integer>get("score"), 60));
+                case "high" -> predicates.add(cb.ge(root.<Integer>get("score"), 80));
+                case "low" -> predicates.add(cb.lt(root.<Integer>get("score"), 60));
+                case "no" -> predicates.add(cb.isNull(root.get("score")));
+                default -> {
+                }
+            }
+            if ("others".equals(year)) {
+                predicates.add(cb.lt(root.<Integer>get("year"), LocalDate.now().getYear() - 20));
+            } else if (!year.isEmpty()) {
+                predicates.add(cb.equal(root.get("year"), Integer.parseInt(year)));
+            }
+            return cb.and(predicates.toArray(jakarta.persistence.criteria.Predicate[]::new));
+        };
+    }
+
+    /**
+     * 只有按时间排序时用游标翻页，评分、年份和名字可能为空，按游标比较会漏掉数据
+     */
+    private static Sort.Order getKeysetOrder(Sort sort) {
+        List<Sort.Order> orders = sort.toList();
+        if (orders.size() == 1 && "time".equals(orders.get(0).getProperty())) {
+            return orders.get(0);
+        }
+        return null;
+    }
+
+    private ScrollPosition getMetaCursor(String key, int page) {
+        if (page == 1) {
+            return ScrollPosition.keyset();
+        }
+        return metaCursors.getIfPresent(key + "|" + (page - 1));
+    }
+
     private static String getName(Meta meta) {
         String name;
         if (meta.getTmdb() != null) {
@@ -1987,14 +2145,74 @@ public class TvBoxService {
         return files;
     }
 
-    public String m3u8(String tid) {
+    /**
+     * 生成的播放列表
+     *
+     * @param etag         为空表示没有缓存，不支持条件请求
+     * @param lastModified 目录的修改时间，未知时为-1
+     */
+    public record M3u8(String content, String etag, long lastModified) {
+    }
+
+    /**
+     * 按tid和目录在AList中的修改时间缓存播放列表，播放器切换剧集时重复拉取不再重新遍历目录
+     * 播放地址包含请求的地址和订阅令牌，缓存按客户端地址和令牌区分
+     */
+    public M3u8 m3u8(String tid) {
         String[] parts = tid.split("\\$");
         String path = proxyService.getPath(Integer.parseInt(parts[1]));
+        Site site = siteService.getById(Integer.parseInt(parts[0]));
+        String modified = getFolderModified(site, path);
+        if (modified == null) {
+            return new M3u8(buildM3u8(site, path, parts), null, -1);
+        }
+
+        String key = tid + "#" + modified + "#" + getClientKey();
+        M3u8 m3u8 = m3u8Cache.getIfPresent(key);
+        if (m3u8 == null) {
+            m3u8 = new M3u8(buildM3u8(site, path, parts), "W/\"" + Utils.md5(key) + "\"", parseTime(modified));
+            m3u8Cache.put(key, m3u8);
+        }
+        return m3u8;
+    }
+
+    private String getClientKey() {
+        String base = ServletUriComponentsBuilder.fromCurrentRequest()
+                .scheme(appProperties.isEnableHttps() && !Utils.isLocalAddress() ? "https" : "http") // nginx https
+                .replacePath(null)
+                .replaceQuery(null)
+                .build()
+                .toUriString();
+        return base + "#" + subscriptionService.getCurrentToken();
+    }
+
+    private String getFolderModified(Site site, String path) {
+        String parent = getParent(path);
+        if (!tenantService.valid(parent)) {
+            return null;
+        }
+        try {
+            FsDetail fsDetail = aListService.getFile(site, parent);
+            return fsDetail == null ? null : StringUtils.trimToNull(fsDetail.getModified());
+        } catch (Exception e) {
+            log.debug("get folder modified time failed: {}", parent, e);
+            return null;
+        }
+    }
+
+    private static long parseTime(String time) {
+        try {
+            return OffsetDateTime.parse(time).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private String buildM3u8(Site site, String path, String[] parts) {
         int start = 0;
         if (parts.length > 3) {
             start = Integer.parseInt(parts[3]);
         }
-        Site site = siteService.getById(Integer.parseInt(parts[0]));
         List<String> list = new ArrayList<>();
         list.add("#EXTM3U");
         MovieList movieList = getPlaylist("detail", site, path);
@@ -0,0 +1,197 @@
+package cn.har01d.alist_tvbox.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 上游阻塞 I/O 共享执行器
+ * 每个任务运行在独立的虚拟线程上，按子系统划分通道，各自限制并发数和排队深度，
+ * 避免 I/O 密集的并发请求被 CPU 核数限制，同时防止单个子系统压垮上游。
+ * 排队的任务保存在先进先出队列中，有空闲并发名额时才按提交顺序创建线程启动。
+ */
+@Slf4j
+@Component
+public class UpstreamExecutor {
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * 获取子系统通道，同名通道只创建一次
+     *
+     * @param name        子系统名称
+     * @param concurrency 最大并发数，1表示按提交顺序串行执行
+     * @param queueSize   最大排队任务数，超过后拒绝提交
+     */
+    public Lane lane(String name, int concurrency, int queueSize) {
+        return lanes.computeIfAbsent(name, k -> new Lane(k, concurrency, queueSize));
+    }
+
+    /**
+     * 各通道运行状态，供健康检查接口展示
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Lane lane : lanes.values()) {
+            list.add(lane.getStats());
+        }
+        list.sort((a, b) -> ((String) a.get("name")).compareTo((String) b.get("name")));
+        return list;
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        for (Lane lane : lanes.values()) {
+            lane.shutdown();
+        }
+        for (Lane lane : lanes.values()) {
+            try {
+                if (!lane.awaitTermination(30, TimeUnit.SECONDS)) {
+                    log.warn("Executor {} did not terminate in time, forcing shutdown", lane.name);
+                    lane.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                lane.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static class Lane extends AbstractExecutorService {
+        private final String name;
+        private final int concurrency;
+        private final int queueSize;
+        private final Semaphore permits;
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final ThreadFactory threadFactory;
+        private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger peak = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private volatile boolean shutdown;
+
+        Lane(String name, int concurrency, int queueSize) {
+            this.name = name;
+            this.concurrency = concurrency;
+            this.queueSize = queueSize;
+            this.permits = new Semaphore(concurrency);
+            this.threadFactory = Thread.ofVirtual().name(name + "-", 0).factory();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) {
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException(name + " is shutdown");
+            }
+            if (queued.incrementAndGet() > queueSize) {
+                queued.decrementAndGet();
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException(name + " queue is full");
+            }
+
+            queue.add(command);
+            dispatch();
+        }
+
+        /**
+         * 按队列顺序启动任务，直到没有空闲名额或队列为空
+         * 任务结束时先归还名额再调用，和提交时的调用交错也不会漏掉排队的任务
+         */
+        private void dispatch() {
+            while (!queue.isEmpty() && permits.tryAcquire()) {
+                Runnable command = queue.poll();
+                if (command == null) {
+                    permits.release();
+                    continue;
+                }
+                queued.decrementAndGet();
+                Thread thread = threadFactory.newThread(() -> run(command));
+                threads.add(thread);
+                thread.start();
+            }
+        }
+
+        private void run(Runnable command) {
+            peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                command.run();
+            } finally {
+                active.decrementAndGet();
+                completed.incrementAndGet();
+                permits.release();
+                dispatch();
+                threads.remove(Thread.currentThread());
+            }
+        }
+
+        public Map<String, Object> getStats() {
+            return Map.of(
+                    "name", name,
+                    "concurrency", concurrency,
+                    "queueSize", queueSize,
+                    "active", active.get(),
+                    "queued", queued.get(),
+                    "peak", peak.get(),
+                    "completed", completed.get(),
+                    "rejected", rejected.get()
+            );
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> pending = new ArrayList<>();
+            Runnable command;
+            while ((command = queue.poll()) != null) {
+                queued.decrementAndGet();
+                pending.add(command);
+            }
+            threads.forEach(Thread::interrupt);
+            return pending;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && threads.isEmpty() && queue.isEmpty();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!isTerminated()) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                Thread.sleep(50);
+            }
+            return true;
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package cn.har01d.alist_tvbox.service.sync;
 
 import cn.har01d.alist_tvbox.dto.sync.SyncData;
+import cn.har01d.alist_tvbox.dto.sync.SyncManifest;
 import cn.har01d.alist_tvbox.dto.sync.SyncRequest;
 import cn.har01d.alist_tvbox.dto.sync.SyncResult;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import okio.BufferedSink;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -113,14 +116,63 @@ public class RemoteClient {
                 throw new IOException("获取远端数据失败：HTTP " + response.code());
             }
 
-            String body = response.body().string();
-            return objectMapper.readValue(body, SyncData.class);
+            return objectMapper.readValue(response.body().byteStream(), SyncData.class);
         } catch (IOException e) {
             log.error("从远端获取数据失败: {}", normalizedUrl, e);
             throw new IOException("远端服务器不支持同步功能或版本不兼容");
         }
     }
 
+    /**
+     * 获取远端增量同步清单
+     *
+     * @return 远端版本不支持增量同步时返回 null
+     */
+    public SyncManifest fetchManifest(String remoteUrl, String token, List<String> modules) throws IOException {
+        String normalizedUrl = normalizeUrl(remoteUrl);
+        Request request = new Request.Builder()
+                .url(normalizedUrl + "/api/sync/manifest?modules=" + String.join(",", modules))
+                .header("Authorization", token)
+                .get()
+                .build();
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (response.code() == 404) {
+                log.info("远端不支持增量同步，使用全量同步: {}", normalizedUrl);
+                return null;
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("获取远端同步清单失败：HTTP " + response.code());
+            }
+            return objectMapper.readValue(response.body().byteStream(), SyncManifest.class);
+        }
+    }
+
+    /**
+     * 发送本地清单，获取远端相对本地的增量数据
+     *
+     * @return 远端版本不支持增量同步时返回 null
+     */
+    public SyncData fetchRemoteDelta(String remoteUrl, String token, SyncManifest manifest) throws IOException {
+        String normalizedUrl = normalizeUrl(remoteUrl);
+        Request request = new Request.Builder()
+                .url(normalizedUrl + "/api/sync/export/delta")
+                .header("Authorization", token)
+                .post(jsonBody(manifest))
+                .build();
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (response.code() == 404) {
+                log.info("远端不支持增量同步，使用全量同步: {}", normalizedUrl);
+                return null;
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("获取远端增量数据失败：HTTP " + response.code());
+            }
+            return objectMapper.readValue(response.body().byteStream(), SyncData.class);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public Map<String, SyncResult> pushToRemote(String remoteUrl, String token, SyncData data,
                                                  String strategy, boolean force) throws IOException {
@@ -132,13 +184,10 @@ public class RemoteClient {
             cn.har01d.alist_tvbox.dto.sync.MergeStrategy.valueOf(strategy.toUpperCase()) : null);
         request.setForce(force);
 
-        String json = objectMapper.writeValueAsString(request);
-        RequestBody body = RequestBody.create(json, MediaType.get("application/json"));
-
         Request httpRequest = new Request.Builder()
                 .url(normalizedUrl + "/api/sync/import")
                 .header("Authorization", token)
-                .post(body)
+                .post(jsonBody(request))
                 .build();
 
         try (Response response = httpClient.newCall(httpRequest).execute()) {
@@ -146,8 +195,7 @@ public class RemoteClient {
                 throw new IOException("推送数据到远端失败：HTTP " + response.code());
             }
 
-            String responseBody = response.body().string();
-            Map<String, Object> result = objectMapper.readValue(responseBody, Map.class);
+            Map<String, Object> result = objectMapper.readValue(response.body().byteStream(), Map.class);
 
             // 检查远端返回的 success 字段
             Boolean success = (Boolean) result.get("success");
@@ -163,6 +211,25 @@ public class RemoteClient {
         }
     }
 
+    /**
+     * 边序列化边写入请求体，不在内存中拼出完整的 JSON 字符串
+     */
+    private RequestBody jsonBody(Object value) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return MediaType.get("application/json");
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                objectMapper.writer()
+                        .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                        .writeValue(sink.outputStream(), value);
+            }
+        };
+    }
+
     /**
      * 登出远端会话
      * 清理临时创建的 token，避免会话数量累积
@@ -3,14 +3,20 @@ package cn.har01d.alist_tvbox.service.sync;
 import cn.har01d.alist_tvbox.dto.sync.*;
 import cn.har01d.alist_tvbox.entity.*;
 import cn.har01d.alist_tvbox.exception.VersionMismatchException;
+import cn.har01d.alist_tvbox.util.Utils;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 
 @Slf4j
 @Service
@@ -37,7 +43,7 @@ public class SyncService {
     // Setting 白名单
     private static final Set<String> SETTING_WHITELIST = Set.of(
         "bilibili_cookie", "bilibili_qn", "bilibili_dash", "bilibili_heartbeat", "bilibili_searchable",
-        "tg_search", "tg_search_api_key", "tg_drivers", "tgDriverOrder", "tg_timeout", "tg_sort_field",
+        "tg_search", "tg_search_api_key", "tg_drivers", "tgDriverOrder", "tg_timeout", "tg_enough_results", "outbound_rate_limits", "tg_sort_field",
         "pan_sou_url", "pan_sou_source", "pan_sou_channels", "pan_sou_username", "pan_sou_password",
         "pan_sou_link_check_enabled", "pan_sou_link_check_max_count", "pan_sou_link_check_types", "panSouPlugins",
         "search_excluded_paths", "search_index_source",
@@ -150,6 +156,107 @@ public class SyncService {
         return settings;
     }
 
+    /**
+     * 导出增量同步清单，记录每条数据的业务主键和内容指纹
+     */
+    public SyncManifest exportManifest(List<String> modules) {
+        SyncManifest manifest = new SyncManifest();
+        manifest.setAppVersion(getLocalVersion());
+        SyncData data = exportData(modules);
+        for (Map.Entry<String, Object> entry : data.getModules().entrySet()) {
+            Map<String, String> fingerprints = new HashMap<>();
+            forEachRow(entry.getValue(), (key, row) -> fingerprints.put(key, fingerprint(row)));
+            manifest.getModules().put(entry.getKey(), fingerprints);
+        }
+        return manifest;
+    }
+
+    /**
+     * 按对方清单导出增量数据
+     */
+    public SyncData exportDelta(SyncManifest remote) {
+        Set<String> modules = new LinkedHashSet<>();
+        for (String module : remote.getModules().keySet()) {
+            // 插件和过滤器随订阅模块一起导出
+            modules.add("plugins".equals(module) || "pluginFilters".equals(module) ? "subscriptions" : module);
+        }
+        return diff(exportData(new ArrayList<>(modules)), remote.getModules());
+    }
+
+    /**
+     * 对比全量数据和对方清单：只保留对方没有或指纹不同的记录，
+     * 对方有而本地没有的主键作为删除标记。发送方的数据总是优先，结果与同步顺序无关。
+     */
+    SyncData diff(SyncData full, Map<String, Map<String, String>> remote) {
+        SyncData delta = new SyncData();
+        delta.setAppVersion(full.getAppVersion());
+        delta.setDeleted(new HashMap<>());
+        for (Map.Entry<String, Object> entry : full.getModules().entrySet()) {
+            String module = entry.getKey();
+            Map<String, String> theirs = remote.getOrDefault(module, Map.of());
+            Set<String> keys = new HashSet<>();
+            List<Object> rows = new ArrayList<>();
+            Map<String, String> settings = new HashMap<>();
+            forEachRow(entry.getValue(), (key, row) -> {
+                keys.add(key);
+                if (!fingerprint(row).equals(theirs.get(key))) {
+                    if (entry.getValue() instanceof Map) {
+                        settings.put(key, (String) row);
+                    } else {
+                        rows.add(row);
+                    }
+                }
+            });
+            delta.getModules().put(module, entry.getValue() instanceof Map ? settings : rows);
+            delta.getDeleted().put(module, theirs.keySet().stream().filter(key -> !keys.contains(key)).sorted().toList());
+        }
+        return delta;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void forEachRow(Object value, BiConsumer<String, Object> consumer) {
+        if (value instanceof Map<?, ?> map) {
+            ((Map<String, String>) map).forEach(consumer);
+        } else if (value instanceof List<?> list) {
+            for (Object row : list) {
+                consumer.accept(rowKey(row), row);
+            }
+        }
+    }
+
+    /**
+     * 记录的业务主键，和导入时查找本地记录的字段一致
+     */
+    static String rowKey(Object row) {
+        String key = switch (row) {
+            case Site site -> site.getUrl();
+            case Share share -> share.getType() + ":" + share.getShareId();
+            case Account account -> account.getNickname();
+            case DriverAccount account -> account.getType() + ":" +
+                    (StringUtils.isNotBlank(account.getUsername()) ? account.getUsername() : "#" + account.getName());
+            case PikPakAccount account -> account.getUsername();
+            case Subscription subscription -> subscription.getUrl();
+            case Plugin plugin -> StringUtils.isNotBlank(plugin.getExternalId()) ? "#" + plugin.getExternalId() : plugin.getUrl();
+            case PluginFilter filter -> filter.getUrl();
+            case Jellyfin jellyfin -> jellyfin.getUrl();
+            case Emby emby -> emby.getUrl();
+            case Feiniu feiniu -> feiniu.getUrl();
+            default -> String.valueOf(row);
+        };
+        return key == null ? "" : key;
+    }
+
+    /**
+     * 内容指纹，不包含两端不一致的自增 ID
+     */
+    private String fingerprint(Object row) {
+        JsonNode node = objectMapper.valueToTree(row);
+        if (node instanceof ObjectNode object) {
+            object.remove("id");
+        }
+        return Utils.md5(node.toString()).substring(0, 16);
+    }
+
     public RemoteClient getRemoteClient() {
         return remoteClient;
     }
@@ -193,47 +300,109 @@ public class SyncService {
 
         Map<String, SyncResult> results = new HashMap<>();
 
+        // 增量数据：覆盖模式按删除标记删除记录，其余记录逐条合并，不再整表删除重建
+        boolean delta = data.getDeleted() != null;
+        if (delta && strategy == MergeStrategy.OVERWRITE) {
+            data.getDeleted().forEach((module, keys) -> {
+                if (!keys.isEmpty()) {
+                    results.computeIfAbsent(module, k -> new SyncResult()).setDeleted(deleteRows(module, new HashSet<>(keys)));
+                }
+            });
+        }
+        MergeStrategy rowStrategy = delta ? MergeStrategy.MERGE : strategy;
+
         // 使用类型化的 getter 方法，避免 unsafe cast
         if (data.getSettings() != null) {
-            results.put("settings", importSettings(data.getSettings(), strategy));
+            putResult(results, "settings", importSettings(data.getSettings(), rowStrategy));
         }
         if (data.getSites() != null) {
-            results.put("sites", importSites(data.getSites(), strategy));
+            putResult(results, "sites", importSites(data.getSites(), rowStrategy));
         }
         if (data.getAccounts() != null) {
-            results.put("accounts", importAccounts(data.getAccounts(), strategy));
+            putResult(results, "accounts", importAccounts(data.getAccounts(), rowStrategy));
         }
         if (data.getDriverAccounts() != null) {
-            results.put("driverAccounts", importDriverAccounts(data.getDriverAccounts(), strategy));
+            putResult(results, "driverAccounts", importDriverAccounts(data.getDriverAccounts(), rowStrategy));
         }
         if (data.getPikpakAccounts() != null) {
-            results.put("pikpakAccounts", importPikPakAccounts(data.getPikpakAccounts(), strategy));
+            putResult(results, "pikpakAccounts", importPikPakAccounts(data.getPikpakAccounts(), rowStrategy));
         }
         if (data.getShares() != null) {
-            results.put("shares", importShares(data.getShares(), strategy));
+            putResult(results, "shares", importShares(data.getShares(), rowStrategy));
         }
         if (data.getPlugins() != null) {
-            results.put("plugins", importPlugins(data.getPlugins(), strategy));
+            putResult(results, "plugins", importPlugins(data.getPlugins(), rowStrategy));
         }
         if (data.getPluginFilters() != null) {
-            results.put("pluginFilters", importPluginFilters(data.getPluginFilters(), strategy));
+            putResult(results, "pluginFilters", importPluginFilters(data.getPluginFilters(), rowStrategy));
         }
         if (data.getSubscriptions() != null) {
-            results.put("subscriptions", importSubscriptions(data.getSubscriptions(), strategy));
+            putResult(results, "subscriptions", importSubscriptions(data.getSubscriptions(), rowStrategy));
         }
         if (data.getJellyfins() != null) {
-            results.put("jellyfins", importJellyfins(data.getJellyfins(), strategy));
+            putResult(results, "jellyfins", importJellyfins(data.getJellyfins(), rowStrategy));
         }
         if (data.getEmbys() != null) {
-            results.put("embys", importEmbys(data.getEmbys(), strategy));
+            putResult(results, "embys", importEmbys(data.getEmbys(), rowStrategy));
         }
         if (data.getFenius() != null) {
-            results.put("fenius", importFenius(data.getFenius(), strategy));
+            putResult(results, "fenius", importFenius(data.getFenius(), rowStrategy));
         }
 
         return results;
     }
 
+    private void putResult(Map<String, SyncResult> results, String module, SyncResult result) {
+        SyncResult existing = results.get(module);
+        if (existing != null) {
+            result.setDeleted(existing.getDeleted());
+        }
+        results.put(module, result);
+    }
+
+    /**
+     * 按业务主键删除本地记录
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int deleteRows(String module, Set<String> keys) {
+        return switch (module) {
+            case "settings" -> {
+                int count = 0;
+                for (String key : keys) {
+                    if (SETTING_WHITELIST.contains(key)) {
+                        settingRepository.deleteById(key);
+                        count++;
+                    }
+                }
+                yield count;
+            }
+            case "sites" -> deleteRows(siteRepository, keys, site -> !isBuiltInAListSite(site));
+            case "shares" -> deleteRows(shareRepository, keys, share -> true);
+            case "accounts" -> deleteRows(accountRepository, keys, account -> true);
+            case "driverAccounts" -> deleteRows(driverAccountRepository, keys, account -> true);
+            case "pikpakAccounts" -> deleteRows(pikPakAccountRepository, keys, account -> true);
+            case "subscriptions" -> deleteRows(subscriptionRepository, keys, subscription -> true);
+            case "plugins" -> deleteRows(pluginRepository, keys, plugin -> true);
+            case "pluginFilters" -> deleteRows(pluginFilterRepository, keys, filter -> true);
+            case "jellyfins" -> deleteRows(jellyfinRepository, keys, jellyfin -> true);
+            case "embys" -> deleteRows(embyRepository, keys, emby -> true);
+            case "fenius" -> deleteRows(feiniuRepository, keys, feiniu -> true);
+            default -> {
+                log.warn("未知模块: {}", module);
+                yield 0;
+            }
+        };
+    }
+
+    private <T> int deleteRows(JpaRepository<T, Integer> repository, Set<String> keys, Predicate<T> filter) {
+        List<T> rows = repository.findAll().stream()
+                .filter(filter)
+                .filter(row -> keys.contains(rowKey(row)))
+                .toList();
+        repository.deleteAll(rows);
+        return rows.size();
+    }
+
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public SyncResult importSettings(Map<String, String> settings, MergeStrategy strategy) {
         SyncResult result = new SyncResult();
@@ -867,16 +1036,26 @@ public class SyncService {
             // 登录远端（创建临时会话）
             token = remoteClient.login(remoteUrl, username, password);
 
-            // 获取远端版本进行校验
-            SyncData remoteVersionData = remoteClient.fetchRemoteData(remoteUrl, token, List.of());
+            // 获取远端清单，旧版本远端不支持时回退到全量推送
+            SyncManifest remoteManifest = remoteClient.fetchManifest(remoteUrl, token, modules);
+            String remoteVersion;
+            if (remoteManifest != null) {
+                remoteVersion = remoteManifest.getAppVersion();
+            } else {
+                remoteVersion = remoteClient.fetchRemoteData(remoteUrl, token, List.of()).getAppVersion();
+            }
             String localVersion = getLocalVersion();
 
-            if (!force && !localVersion.equals(remoteVersionData.getAppVersion())) {
-                throw new VersionMismatchException(localVersion, remoteVersionData.getAppVersion());
+            if (!force && !localVersion.equals(remoteVersion)) {
+                throw new VersionMismatchException(localVersion, remoteVersion);
             }
 
-            // 导出本地数据
+            // 导出本地数据，只推送远端缺少或有变化的记录
             SyncData data = exportData(modules);
+            if (remoteManifest != null) {
+                data = diff(data, remoteManifest.getModules());
+                log.info("增量推送: {}", summary(data));
+            }
 
             // 推送到远端（远端使用覆盖模式）
             Map<String, SyncResult> results = remoteClient.pushToRemote(
@@ -915,8 +1094,13 @@ public class SyncService {
             // 登录远端（创建临时会话）
             token = remoteClient.login(remoteUrl, username, password);
 
-            // 从远端获取数据
-            SyncData data = remoteClient.fetchRemoteData(remoteUrl, token, modules);
+            // 发送本地清单，只拉取变化的记录，旧版本远端不支持时回退到全量拉取
+            SyncData data = remoteClient.fetchRemoteDelta(remoteUrl, token, exportManifest(modules));
+            if (data != null) {
+                log.info("增量拉取: {}", summary(data));
+            } else {
+                data = remoteClient.fetchRemoteData(remoteUrl, token, modules);
+            }
 
             // 导入到本地
             Map<String, SyncResult> results = importData(data, strategy, force);
@@ -945,6 +1129,16 @@ public class SyncService {
         return response;
     }
 
+    private Map<String, String> summary(SyncData data) {
+        Map<String, String> map = new TreeMap<>();
+        for (Map.Entry<String, Object> entry : data.getModules().entrySet()) {
+            int changed = entry.getValue() instanceof Map<?, ?> m ? m.size() : ((List<?>) entry.getValue()).size();
+            int deleted = data.getDeleted() == null ? 0 : data.getDeleted().getOrDefault(entry.getKey(), List.of()).size();
+            map.put(entry.getKey(), changed + "/" + deleted);
+        }
+        return map;
+    }
+
     /**
      * 清理远端的临时会话 token
      * 同步操作完成后主动登出，限制会话数量
@@ -14,14 +14,16 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Slf4j
 public final class DashUtils {
     private static final Map<String, Integer> audioIds = new HashMap<>();
     private static final Set<String> clients = new HashSet<>();
+    private static final Pattern DEADLINE = Pattern.compile("[?&]deadline=(\\d+)");
 
     static {
         clients.add("open");
@@ -69,7 +71,6 @@ public final class DashUtils {
         List<String> urls = new ArrayList<>();
         List<CatAudio> audios = new ArrayList<>();
         boolean hasAny = false;
-        StringBuilder videoList = new StringBuilder();
         for (Media video : dash.getVideo()) {
             if (qns.contains(video.getId())) {
                 hasAny = true;
@@ -82,17 +83,19 @@ public final class DashUtils {
             quality.put(String.valueOf(data.getAcceptQuality().get(i)), data.getAcceptDescription().get(i));
         }
 
+        StringBuilder mpd = new StringBuilder(4096);
+        appendMpdStart(mpd, dash);
         for (Media video : dash.getVideo()) {
             if (!hasAny || qns.contains(video.getId())) {
-                videoList.append(getMedia(video));
+                appendMedia(mpd, video);
                 urls.add(quality.get(video.getId()) + " " + getCodec(video.getCodecid()));
                 urls.add(video.getBaseUrl());
             }
         }
 
-        StringBuilder audioList = new StringBuilder();
+        mpd.append('\n');
         for (Media audio : dash.getAudio()) {
-            audioList.append(getMedia(audio));
+            appendMedia(mpd, audio);
             if (audioIds.containsKey(audio.getId())) {
                 CatAudio catAudio = new CatAudio();
                 catAudio.setBit(audioIds.get(audio.getId()));
@@ -101,11 +104,11 @@ public final class DashUtils {
                 audios.add(catAudio);
             }
         }
+        mpd.append("\n</Period>\n</MPD>");
 
-        String mpd = getMpd(dash, videoList.toString(), audioList.toString());
         Map<String, Object> map = new HashMap<>();
         if ("open".equals(client)) {
-            map.put("mpd", mpd);
+            map.put("mpd", mpd.toString());
             map.put("format", "application/dash+xml");
         } else if ("node".equals(client)) {
             audios.sort(Comparator.comparingInt(CatAudio::getBit).reversed());
@@ -113,7 +116,7 @@ public final class DashUtils {
             map.put("url", urls);
         } else {
             log.debug("{}", mpd);
-            String encoded = Base64.getMimeEncoder().encodeToString(mpd.getBytes());
+            String encoded = Base64.getMimeEncoder().encodeToString(mpd.toString().getBytes());
             String url = "data:application/dash+xml;base64," + encoded.replaceAll("\\r\\n", "\n") + "\n";
             map.put("url", url);
             map.put("format", "application/dash+xml");
@@ -143,48 +146,51 @@ public final class DashUtils {
         return (audioIds.get(id) / 1024) + "Kbps";
     }
 
-    private static String getMedia(Media media) {
-        if (media.getMimeType().startsWith("video")) {
-            return getAdaptationSet(media, String.format(Locale.getDefault(), "height='%s' width='%s' frameRate='%s' sar='%s'", media.getHeight(), media.getWidth(), media.getFrameRate(), media.getSar()));
-        } else if (media.getMimeType().startsWith("audio")) {
-            return getAdaptationSet(media, String.format("numChannels='2' sampleRate='%s'", audioIds.get(media.getId())));
-        } else {
-            return "";
+    /**
+     * 播放地址中的过期时间戳(秒)，没有时返回0
+     */
+    public static long getDeadline(Resp resp) {
+        Data data = resp.getData() == null ? resp.getResult() : resp.getData();
+        if (data == null) {
+            return 0;
+        }
+        Dash dash = data.getDash() == null ? (data.getVideoInfo() != null ? data.getVideoInfo().getDash() : null) : data.getDash();
+        if (dash == null || dash.getVideo() == null || dash.getVideo().isEmpty()) {
+            return 0;
         }
+        Matcher m = DEADLINE.matcher(dash.getVideo().get(0).getBaseUrl());
+        return m.find() ? Long.parseLong(m.group(1)) : 0;
     }
 
-    private static String getAdaptationSet(Media media, String params) {
-        String id = media.getId() + "_" + media.getCodecid();
+    private static void appendMedia(StringBuilder sb, Media media) {
         String type = media.getMimeType().split("/")[0];
-        String baseUrl = media.getBaseUrl().replace("&", "&amp;");
-        return String.format(Locale.getDefault(),
-                "<AdaptationSet>\n" +
-                        "<ContentComponent contentType=\"%s\"/>\n" +
-                        "<Representation id=\"%s\" bandwidth=\"%s\" codecs=\"%s\" mimeType=\"%s\" %s startWithSAP=\"%s\">\n" +
-                        "<BaseURL>%s</BaseURL>\n" +
-                        "<SegmentBase indexRange=\"%s\">\n" +
-                        "<Initialization range=\"%s\"/>\n" +
-                        "</SegmentBase>\n" +
-                        "</Representation>\n" +
-                        "</AdaptationSet>\n",
-                type,
-                id, media.getBandwidth(), media.getCodecs(), media.getMimeType(), params, media.getStartWithSap(),
-                baseUrl,
-                media.getSegmentBase().getIndexRange(),
-                media.getSegmentBase().getInitialization());
+        if (!"video".equals(type) && !"audio".equals(type)) {
+            return;
+        }
+        sb.append("<AdaptationSet>\n<ContentComponent contentType=\"").append(type).append("\"/>\n")
+                .append("<Representation id=\"").append(media.getId()).append('_').append(media.getCodecid())
+                .append("\" bandwidth=\"").append(media.getBandwidth())
+                .append("\" codecs=\"").append(media.getCodecs())
+                .append("\" mimeType=\"").append(media.getMimeType()).append("\" ");
+        if ("video".equals(type)) {
+            sb.append("height='").append(media.getHeight())
+                    .append("' width='").append(media.getWidth())
+                    .append("' frameRate='").append(media.getFrameRate())
+                    .append("' sar='").append(media.getSar()).append('\'');
+        } else {
+            sb.append("numChannels='2' sampleRate='").append(audioIds.get(media.getId())).append('\'');
+        }
+        sb.append(" startWithSAP=\"").append(media.getStartWithSap()).append("\">\n")
+                .append("<BaseURL>").append(media.getBaseUrl().replace("&", "&amp;")).append("</BaseURL>\n")
+                .append("<SegmentBase indexRange=\"").append(media.getSegmentBase().getIndexRange()).append("\">\n")
+                .append("<Initialization range=\"").append(media.getSegmentBase().getInitialization()).append("\"/>\n")
+                .append("</SegmentBase>\n</Representation>\n</AdaptationSet>\n");
     }
 
-    private static String getMpd(Dash dash, String videoList, String audioList) {
-        return String.format(Locale.getDefault(),
-                "<MPD xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xmlns=\"urn:mpeg:dash:schema:mpd:2011\" xsi:schemaLocation=\"urn:mpeg:dash:schema:mpd:2011 DASH-MPD.xsd\" type=\"static\" mediaPresentationDuration=\"PT%sS\" minBufferTime=\"PT%sS\" profiles=\"urn:mpeg:dash:profile:isoff-on-demand:2011\">\n" +
-                        "<Period duration=\"PT%sS\" start=\"PT0S\">\n" +
-                        "%s\n" +
-                        "%s\n" +
-                        "</Period>\n" +
-                        "</MPD>",
-                dash.getDuration(), dash.getMinBufferTime(),
-                dash.getDuration(),
-                videoList,
-                audioList);
+    private static void appendMpdStart(StringBuilder sb, Dash dash) {
+        sb.append("<MPD xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xmlns=\"urn:mpeg:dash:schema:mpd:2011\" xsi:schemaLocation=\"urn:mpeg:dash:schema:mpd:2011 DASH-MPD.xsd\" type=\"static\" mediaPresentationDuration=\"PT")
+                .append(dash.getDuration()).append("S\" minBufferTime=\"PT").append(dash.getMinBufferTime())
+                .append("S\" profiles=\"urn:mpeg:dash:profile:isoff-on-demand:2011\">\n")
+                .append("<Period duration=\"PT").append(dash.getDuration()).append("S\" start=\"PT0S\">\n");
     }
 }
@@ -21,7 +21,8 @@ import java.util.regex.Pattern;
  *       exist via Flyway, so DDL lines are skipped entirely).</li>
  * </ul>
  *
- * <p>Only {@code INSERT} and {@code DELETE} lines are converted; everything else
+ * <p>Only {@code INSERT}, {@code DELETE} and {@code UPDATE} lines are converted; H2-only
+ * {@code MERGE} lines are rejected so an upgrade never silently drops them; everything else
  * (DDL, comments, blank lines, bare {@code ;}) yields {@code null} so callers can
  * skip it. {@link Dialect#H2} is a pass-through to avoid regressing the working
  * H2/xiaoya path.
@@ -45,9 +46,15 @@ public final class H2SqlConverter {
     private static final String[] ALIAS_COLS = {"name", "alias", "movie_id"};
 
     private static final Pattern INSERT_TABLE =
-            Pattern.compile("^INSERT\\s+INTO\\s+\"PUBLIC\"\\.\"(MOVIE|META|ALIAS)\"\\s+VALUES");
+            Pattern.compile("^INSERT\\s+INTO\\s+\"PUBLIC\"\\.\"(MOVIE|META|ALIAS)(_SHADOW)?\"\\s+VALUES");
     private static final Pattern PUBLIC_TABLE =
-            Pattern.compile("\"PUBLIC\"\\.\"(MOVIE|META|ALIAS)\"");
+            Pattern.compile("\"PUBLIC\"\\.\"(MOVIE|META|ALIAS)(_SHADOW)?\"");
+    private static final Pattern SHADOWED_TABLE =
+            Pattern.compile("^(INSERT\\s+INTO|DELETE\\s+FROM|UPDATE|MERGE\\s+INTO)\\s+\"PUBLIC\"\\.\"(MOVIE|ALIAS)\"");
+    // any other DML spelling that targets the live MOVIE / ALIAS tables
+    private static final Pattern LIVE_TABLE_DML =
+            Pattern.compile("^(INSERT\\s+INTO|DELETE\\s+FROM|UPDATE|MERGE\\s+INTO|REPLACE\\s+INTO|TRUNCATE\\s+TABLE)\\s+"
+                    + "(\"?PUBLIC\"?\\.)?\"?(MOVIE|ALIAS)\"?(\\s|\\(|;|$)", Pattern.CASE_INSENSITIVE);
     private static final Pattern TRAILING_TZ = Pattern.compile("\\+\\d\\d'$");
 
     private H2SqlConverter() {
@@ -91,7 +98,7 @@ public final class H2SqlConverter {
 
     /**
      * Convert a single H2-dialect line into a target-dialect statement, or {@code null}
-     * if the line is not an INSERT/DELETE (DDL / comment / blank).
+     * if the line is not an INSERT/DELETE/UPDATE (DDL / comment / blank).
      */
     public static String convert(String line, Dialect dialect) {
         if (dialect == Dialect.H2 || line == null) {
@@ -104,8 +111,10 @@ public final class H2SqlConverter {
         String sql;
         if (trimmed.startsWith("INSERT INTO \"PUBLIC\".")) {
             sql = convertInsert(trimmed, dialect);
-        } else if (trimmed.startsWith("DELETE FROM \"PUBLIC\".")) {
+        } else if (trimmed.startsWith("DELETE FROM \"PUBLIC\".") || trimmed.startsWith("UPDATE \"PUBLIC\".")) {
             sql = convertDelete(trimmed, dialect);
+        } else if (trimmed.startsWith("MERGE INTO \"PUBLIC\".")) {
+            throw new IllegalArgumentException("MERGE is not supported on " + dialect + ": " + trimmed);
         } else {
             return null;
         }
@@ -121,6 +130,28 @@ public final class H2SqlConverter {
         return sql;
     }
 
+    /**
+     * Redirect a MOVIE / ALIAS INSERT, DELETE, UPDATE or MERGE line to its {@code _SHADOW}
+     * copy so a diff file can be applied off the live tables. META and every non-DML
+     * line are returned unchanged. Works on the raw H2 line, before {@link #convert}.
+     *
+     * @throws IllegalArgumentException for any other DML on MOVIE / ALIAS, which would
+     *                                  otherwise hit the live table and be lost at the swap
+     */
+    public static String toShadow(String line) {
+        if (line == null) {
+            return null;
+        }
+        Matcher m = SHADOWED_TABLE.matcher(line.trim());
+        if (!m.find()) {
+            if (LIVE_TABLE_DML.matcher(line.trim()).find()) {
+                throw new IllegalArgumentException("unsupported statement on shadowed table: " + line);
+            }
+            return line;
+        }
+        return m.replaceFirst(Matcher.quoteReplacement(m.group(1) + " \"PUBLIC\".\"" + m.group(2) + "_SHADOW\""));
+    }
+
     private static String convertInsert(String line, Dialect dialect) {
         String transformed = transformLiterals(line, dialect);
         Matcher m = INSERT_TABLE.matcher(transformed);
@@ -129,7 +160,8 @@ public final class H2SqlConverter {
         }
         String table = m.group(1).toLowerCase();
         String columns = columnList(table, dialect);
-        return m.replaceFirst(Matcher.quoteReplacement("INSERT INTO " + table + " " + columns + " VALUES"));
+        String target = m.group(2) == null ? table : table + m.group(2).toLowerCase();
+        return m.replaceFirst(Matcher.quoteReplacement("INSERT INTO " + target + " " + columns + " VALUES"));
     }
 
     private static String convertDelete(String line, Dialect dialect) {
@@ -138,7 +170,8 @@ public final class H2SqlConverter {
         if (!m.find()) {
             return null;
         }
-        return m.replaceFirst(Matcher.quoteReplacement(m.group(1).toLowerCase()));
+        String target = m.group(2) == null ? m.group(1) : m.group(1) + m.group(2);
+        return m.replaceFirst(Matcher.quoteReplacement(target.toLowerCase()));
     }
 
     private static String columnList(String table, Dialect dialect) {
@@ -0,0 +1,122 @@
+package cn.har01d.alist_tvbox.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 追加写入的进度文件
+ * 批量刮削逐行记录结果，不再周期性地整体重写文件。写入失败只记录日志，不影响任务。
+ */
+@Slf4j
+public class ProgressFile implements Closeable {
+    private final Path path;
+    private BufferedWriter writer;
+
+    private ProgressFile(Path path, boolean truncate) {
+        this.path = path;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    truncate ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            log.warn("open progress file {} failed", path, e);
+        }
+    }
+
+    /**
+     * @param truncate 是否清空已有内容，否则追加到文件末尾
+     */
+    public static ProgressFile open(Path path, boolean truncate) {
+        return new ProgressFile(path, truncate);
+    }
+
+    public synchronized void append(String line) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(line);
+            writer.newLine();
+        } catch (IOException e) {
+            log.warn("write progress file {} failed", path, e);
+        }
+    }
+
+    public synchronized void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("flush progress file {} failed", path, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("close progress file {} failed", path, e);
+        }
+        writer = null;
+    }
+
+    /**
+     * 线程安全的集合，新增的元素同时追加到文件
+     */
+    public Set<String> track(Collection<String> initial) {
+        return new TrackedSet(initial);
+    }
+
+    private final class TrackedSet extends AbstractSet<String> {
+        private final Set<String> values = ConcurrentHashMap.newKeySet();
+
+        TrackedSet(Collection<String> initial) {
+            values.addAll(initial);
+        }
+
+        @Override
+        public boolean add(String value) {
+            if (values.add(value)) {
+                append(value);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return values.contains(o);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return values.iterator();
+        }
+
+        @Override
+        public int size() {
+            return values.size();
+        }
+    }
+}
@@ -1,13 +1,13 @@
 package cn.har01d.alist_tvbox.util;
 
-import lombok.extern.slf4j.Slf4j;
-
 import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-@Slf4j
+/**
+ * 静态字段只有正则和常量表，native 镜像构建期初始化，不能引入日志等运行时状态
+ */
 public class TextUtils {
 
     private static final List<String> NUMBERS = Arrays.asList("零", "一", "二", "三", "四", "五", "六", "七", "八", "九", "十");
@@ -593,9 +593,6 @@ public class TextUtils {
                 .replaceAll("\\s+", " ")
                 .replaceAll("\\.", " ")
                 .trim();
-        if (!name.equals(newName)) {
-            log.debug("name: {} -> {}", name, newName);
-        }
         return newName;
     }
 
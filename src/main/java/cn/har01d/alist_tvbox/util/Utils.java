@@ -16,12 +16,10 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.net.URI;
@@ -316,42 +314,6 @@ public final class Utils {
         return s.substring(0, 2) + "****" + s.substring(len - 2);
     }
 
-    public static int executeUpdate(String sql) {
-        int code = 1;
-        try {
-            ProcessBuilder builder = new ProcessBuilder();
-            builder.inheritIO();
-            builder.command("sqlite3", Utils.getAListPath("data/data.db"), sql);
-            Process process = builder.start();
-            code = process.waitFor();
-        } catch (Exception e) {
-            log.warn("", e);
-        }
-        log.debug("executeUpdate {} result: {}", sql, code);
-        return code;
-    }
-
-    public static String executeQuery(String sql) {
-        log.debug("executeQuery {}", sql);
-        try {
-            ProcessBuilder builder = new ProcessBuilder();
-            builder.command("sqlite3", Utils.getAListPath("data/data.db"), sql);
-            Process process = builder.start();
-            BufferedReader reader =
-                    new BufferedReader(new InputStreamReader(process.getInputStream()));
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
-                sb.append(System.getProperty("line.separator"));
-            }
-            return sb.toString().trim();
-        } catch (Exception e) {
-            log.warn("", e);
-        }
-        return "";
-    }
-
     public static int execute(String command) {
         int code = 1;
         try {
@@ -407,7 +369,12 @@ public final class Utils {
         if (name.startsWith("/")) {
             return name;
         }
-        String base = inDocker ? "/opt/alist/" : "/opt/atv/alist/";
+        String base = System.getProperty("atv.alist.dir");
+        if (StringUtils.isBlank(base)) {
+            base = inDocker ? "/opt/alist/" : "/opt/atv/alist/";
+        } else if (!base.endsWith("/")) {
+            base += "/";
+        }
         return base + name;
     }
 
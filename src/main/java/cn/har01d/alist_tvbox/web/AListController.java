@@ -1,8 +1,8 @@
 package cn.har01d.alist_tvbox.web;
 
 import cn.har01d.alist_tvbox.service.AListLocalService;
-import cn.har01d.alist_tvbox.service.ShareService;
 import cn.har01d.alist_tvbox.service.SiteService;
+import cn.har01d.alist_tvbox.service.StorageHealthService;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -14,16 +14,16 @@ import org.springframework.web.bind.annotation.RestController;
 public class AListController {
     private final AListLocalService service;
     private final SiteService siteService;
-    private final ShareService shareService;
+    private final StorageHealthService storageHealthService;
     private final AListLocalService aListLocalService;
 
     public AListController(AListLocalService service,
                            SiteService siteService,
-                           ShareService shareService,
+                           StorageHealthService storageHealthService,
                            AListLocalService aListLocalService) {
         this.service = service;
         this.siteService = siteService;
-        this.shareService = shareService;
+        this.storageHealthService = storageHealthService;
         this.aListLocalService = aListLocalService;
     }
 
@@ -41,7 +41,7 @@ public class AListController {
     public void updateStatus(int code) {
         service.updateStatus(code);
         if (code == 3) {
-            shareService.cleanInvalidShares();
+            storageHealthService.cleanInvalidShares();
         }
     }
 
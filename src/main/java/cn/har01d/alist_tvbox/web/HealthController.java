@@ -1,6 +1,12 @@
 package cn.har01d.alist_tvbox.web;
 
+import cn.har01d.alist_tvbox.service.CircuitBreaker;
+import cn.har01d.alist_tvbox.service.OutboundRateLimiter;
+import cn.har01d.alist_tvbox.service.StartupService;
+import cn.har01d.alist_tvbox.service.UpstreamExecutor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -24,6 +30,18 @@ public class HealthController {
     private static final AtomicLong requestCounter = new AtomicLong(0);
     private static final Map<String, ApiMetrics> apiMetricsMap = new ConcurrentHashMap<>();
 
+    private final UpstreamExecutor upstreamExecutor;
+    private final CircuitBreaker circuitBreaker;
+    private final OutboundRateLimiter rateLimiter;
+    private final StartupService startupService;
+
+    public HealthController(UpstreamExecutor upstreamExecutor, CircuitBreaker circuitBreaker, OutboundRateLimiter rateLimiter, StartupService startupService) {
+        this.upstreamExecutor = upstreamExecutor;
+        this.circuitBreaker = circuitBreaker;
+        this.rateLimiter = rateLimiter;
+        this.startupService = startupService;
+    }
+
     /**
      * 系统指标
      * 访问: http://localhost:5244/api/health/metrics
@@ -69,6 +87,15 @@ public class HealthController {
         apiStats.sort((a, b) -> Long.compare((Long) b.get("maxDurationMs"), (Long) a.get("maxDurationMs")));
         result.put("apiStats", apiStats);
 
+        // 上游 I/O 执行器
+        result.put("executors", upstreamExecutor.getStats());
+
+        // 上游断路器
+        result.put("circuits", circuitBreaker.getStats());
+
+        // 出站请求限速
+        result.put("rateLimits", rateLimiter.getStats());
+
         // 系统时间
         result.put("currentTimeMillis", System.currentTimeMillis());
         result.put("timestamp", new Date().toString());
@@ -142,6 +169,43 @@ public class HealthController {
         return result;
     }
 
+    /**
+     * 上游 I/O 执行器各子系统的并发上限和排队深度
+     * 访问: http://localhost:5244/api/health/executors
+     */
+    @GetMapping("/executors")
+    public List<Map<String, Object>> executors() {
+        return upstreamExecutor.getStats();
+    }
+
+    /**
+     * 各上游断路器状态和最近窗口内的失败、慢调用次数
+     * 访问: http://localhost:5244/api/health/circuits
+     */
+    @GetMapping("/circuits")
+    public List<Map<String, Object>> circuits() {
+        return circuitBreaker.getStats();
+    }
+
+    /**
+     * 出站请求限速桶的令牌数、排队和累计等待时间
+     * 访问: http://localhost:5244/api/health/rate-limits
+     */
+    @GetMapping("/rate-limits")
+    public List<Map<String, Object>> rateLimits() {
+        return rateLimiter.getStats();
+    }
+
+    /**
+     * 启动预热状态，全部阶段结束前返回 503
+     * 访问: http://localhost:5244/api/health/ready
+     */
+    @GetMapping("/ready")
+    public ResponseEntity<Map<String, Object>> ready() {
+        Map<String, Object> status = startupService.getStatus();
+        return ResponseEntity.status(startupService.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(status);
+    }
+
     /**
      * 记录 API 调用（由拦截器调用）
      */
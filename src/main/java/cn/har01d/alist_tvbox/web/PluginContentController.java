@@ -1,31 +1,48 @@
 package cn.har01d.alist_tvbox.web;
 
+import cn.har01d.alist_tvbox.service.PluginContentCache;
 import cn.har01d.alist_tvbox.service.PluginService;
 import cn.har01d.alist_tvbox.service.SubscriptionService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
 public class PluginContentController {
+    private static final MediaType TEXT_PLAIN = MediaType.parseMediaType("text/plain;charset=UTF-8");
+    private static final MediaType TEXT_PYTHON = MediaType.parseMediaType("text/x-python;charset=UTF-8");
+
     private final SubscriptionService subscriptionService;
     private final PluginService pluginService;
+    private final PluginContentCache contentCache;
 
-    public PluginContentController(SubscriptionService subscriptionService, PluginService pluginService) {
+    public PluginContentController(SubscriptionService subscriptionService, PluginService pluginService, PluginContentCache contentCache) {
         this.subscriptionService = subscriptionService;
         this.pluginService = pluginService;
+        this.contentCache = contentCache;
     }
 
     @GetMapping(value = "/plugins/{token}/{id}.txt", produces = MediaType.TEXT_PLAIN_VALUE)
-    public String content(@PathVariable String token, @PathVariable Integer id) {
+    public ResponseEntity<byte[]> content(@PathVariable String token, @PathVariable Integer id,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         subscriptionService.checkToken(token);
-        return pluginService.readContent(id);
+        return getContent(id).toResponse(ifNoneMatch, acceptEncoding, TEXT_PLAIN);
     }
 
     @GetMapping(value = "/plugins/{token}/{id}.py", produces = "text/x-python;charset=UTF-8")
-    public String pythonContent(@PathVariable String token, @PathVariable Integer id) {
+    public ResponseEntity<byte[]> pythonContent(@PathVariable String token, @PathVariable Integer id,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         subscriptionService.checkToken(token);
-        return pluginService.readContent(id);
+        return getContent(id).toResponse(ifNoneMatch, acceptEncoding, TEXT_PYTHON);
+    }
+
+    private PluginContentCache.Entry getContent(Integer id) {
+        return contentCache.get(PluginContentCache.pluginKey(id), () -> pluginService.readContent(id));
     }
 }
@@ -1,30 +1,36 @@
 package cn.har01d.alist_tvbox.web;
 
+import cn.har01d.alist_tvbox.service.PluginContentCache;
 import cn.har01d.alist_tvbox.service.PluginFilterService;
 import cn.har01d.alist_tvbox.service.SubscriptionService;
-import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
 public class PluginFilterContentController {
+    private static final MediaType TEXT_PLAIN = MediaType.parseMediaType("text/plain;charset=UTF-8");
+
     private final SubscriptionService subscriptionService;
     private final PluginFilterService pluginFilterService;
+    private final PluginContentCache contentCache;
 
-    public PluginFilterContentController(SubscriptionService subscriptionService, PluginFilterService pluginFilterService) {
+    public PluginFilterContentController(SubscriptionService subscriptionService, PluginFilterService pluginFilterService, PluginContentCache contentCache) {
         this.subscriptionService = subscriptionService;
         this.pluginFilterService = pluginFilterService;
+        this.contentCache = contentCache;
     }
 
     @GetMapping(value = "/plugin-filters/{token}/{id}.py", produces = MediaType.TEXT_PLAIN_VALUE)
-    public ResponseEntity<String> content(@PathVariable String token, @PathVariable Integer id) {
+    public ResponseEntity<byte[]> content(@PathVariable String token, @PathVariable Integer id,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         subscriptionService.checkToken(token);
-        return ResponseEntity.ok()
-                .cacheControl(CacheControl.noStore())
-                .contentType(MediaType.TEXT_PLAIN)
-                .body(pluginFilterService.readContent(id));
+        var entry = contentCache.get(PluginContentCache.filterKey(id), () -> pluginFilterService.readContent(id));
+        return entry.toResponse(ifNoneMatch, acceptEncoding, TEXT_PLAIN);
     }
 }
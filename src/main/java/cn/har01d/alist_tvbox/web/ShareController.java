@@ -7,6 +7,7 @@ import cn.har01d.alist_tvbox.entity.Share;
 import cn.har01d.alist_tvbox.exception.BadRequestException;
 import cn.har01d.alist_tvbox.model.Response;
 import cn.har01d.alist_tvbox.service.ShareService;
+import cn.har01d.alist_tvbox.service.StorageHealthService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import jakarta.servlet.http.HttpServletResponse;
@@ -29,8 +30,11 @@ import java.util.List;
 @RestController
 public class ShareController {
     private final ShareService shareService;
-    public ShareController(ShareService shareService) {
+    private final StorageHealthService storageHealthService;
+
+    public ShareController(ShareService shareService, StorageHealthService storageHealthService) {
         this.shareService = shareService;
+        this.storageHealthService = storageHealthService;
     }
 
     @GetMapping("/api/shares")
@@ -105,12 +109,17 @@ public class ShareController {
 
     @PostMapping("/api/storages")
     public void validateStorages() {
-        shareService.validateStorages();
+        storageHealthService.validate();
     }
 
     @DeleteMapping("/api/storages")
     public int cleanStorages() {
-        return shareService.cleanStorages();
+        return storageHealthService.sweep().deleted();
+    }
+
+    @GetMapping("/api/storages/health")
+    public StorageHealthService.Report getStorageHealth() {
+        return storageHealthService.getReport();
     }
 
     @PostMapping("/api/storages/{id}")
@@ -100,6 +100,24 @@ public class SyncController {
         return syncService.exportData(modules);
     }
 
+    /**
+     * 增量同步清单：各模块记录的业务主键和内容指纹
+     */
+    @GetMapping("/manifest")
+    public SyncManifest manifest(@RequestParam("modules") List<String> modules) {
+        log.info("导出同步清单，模块: {}", modules);
+        return syncService.exportManifest(modules);
+    }
+
+    /**
+     * 按对方清单导出增量数据
+     */
+    @PostMapping("/export/delta")
+    public SyncData exportDelta(@RequestBody SyncManifest manifest) {
+        log.info("导出增量数据，模块: {}", manifest.getModules().keySet());
+        return syncService.exportDelta(manifest);
+    }
+
     @PostMapping("/import")
     public SyncResponse importData(@RequestBody SyncRequest request) {
         log.info("导入数据，策略: {}, force: {}", request.getStrategy(), request.isForce());
@@ -22,6 +22,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -57,8 +58,8 @@ public class TvBoxController {
                        @RequestParam(required = false, defaultValue = "1") Integer pg,
                        @RequestParam(required = false, defaultValue = "100") Integer size,
                        @RequestParam(required = false, defaultValue = "0") Integer depth,
-                       HttpServletRequest request) {
-        return api("", t, f, ids, ac, wd, sort, pg, size, 0, depth, request);
+                       HttpServletRequest request, HttpServletResponse response) {
+        return api("", t, f, ids, ac, wd, sort, pg, size, 0, depth, request, response);
     }
 
     @GetMapping("/vod1/{token}")
@@ -66,8 +67,8 @@ public class TvBoxController {
                        @RequestParam(required = false, defaultValue = "1") Integer pg,
                        @RequestParam(required = false, defaultValue = "100") Integer size,
                        @RequestParam(required = false, defaultValue = "0") Integer depth,
-                       HttpServletRequest request) {
-        return api(token, t, f, ids, ac, wd, sort, pg, size, 0, depth, request);
+                       HttpServletRequest request, HttpServletResponse response) {
+        return api(token, t, f, ids, ac, wd, sort, pg, size, 0, depth, request, response);
     }
 
     @GetMapping("/vod")
@@ -75,8 +76,8 @@ public class TvBoxController {
                       @RequestParam(required = false, defaultValue = "1") Integer pg,
                       @RequestParam(required = false, defaultValue = "100") Integer size,
                       @RequestParam(required = false, defaultValue = "0") Integer depth,
-                      HttpServletRequest request) {
-        return api("", t, f, ids, ac, wd, sort, pg, size, 1, depth, request);
+                      HttpServletRequest request, HttpServletResponse response) {
+        return api("", t, f, ids, ac, wd, sort, pg, size, 1, depth, request, response);
     }
 
     @GetMapping("/vod/{token}")
@@ -85,7 +86,7 @@ public class TvBoxController {
                       @RequestParam(required = false, defaultValue = "100") Integer size,
                       @RequestParam(required = false, defaultValue = "1") Integer type,
                       @RequestParam(required = false, defaultValue = "0") Integer depth,
-                      HttpServletRequest request) {
+                      HttpServletRequest request, HttpServletResponse response) {
         subscriptionService.checkToken(token);
 
         String client = request.getHeader("X-CLIENT");
@@ -103,22 +104,30 @@ public class TvBoxController {
             }
             return tvBoxService.getMovieList(client, ac, t, f, sort, pg, size);
         } else if (wd != null && !wd.isEmpty()) {
-            return tvBoxService.search(type, ac, wd, pg);
+            return tvBoxService.search(type, ac, wd, f, pg);
         } else {
+            String etag = tvBoxService.getCategoryETag(type);
+            if (etag != null && new ServletWebRequest(request, response).checkNotModified(etag)) {
+                return null;
+            }
             return tvBoxService.getCategoryList(type);
         }
     }
 
     @GetMapping("/m3u8")
-    public String m3u8(String path, HttpServletResponse response) {
-        return m3u8("", path, response);
+    public String m3u8(String path, HttpServletRequest request, HttpServletResponse response) {
+        return m3u8("", path, request, response);
     }
 
     @GetMapping("/m3u8/{token}")
-    public String m3u8(@PathVariable String token, String id, HttpServletResponse response) {
+    public String m3u8(@PathVariable String token, String id, HttpServletRequest request, HttpServletResponse response) {
         subscriptionService.checkToken(token);
+        TvBoxService.M3u8 m3u8 = tvBoxService.m3u8(id);
+        if (m3u8.etag() != null && new ServletWebRequest(request, response).checkNotModified(m3u8.etag(), m3u8.lastModified())) {
+            return null;
+        }
         response.setContentType("text/plain");
-        return tvBoxService.m3u8(id);
+        return m3u8.content();
     }
 
     @GetMapping("/api/qr-code")
@@ -0,0 +1,7 @@
+-- Composite indexes for browsing scraped metas: the path prefix range with the
+-- score/year filters evaluated inside the index, and (time, id) for keyset paging
+-- in time order. Keyset cursors cannot compare NULL, so backfill missing times with
+-- a fixed old timestamp that keeps legacy rows behind real ones in time DESC lists.
+UPDATE meta SET time = TIMESTAMP '2000-01-01 00:00:00' WHERE time IS NULL;
+CREATE INDEX idx_meta_path_score_year_time ON meta (path(255), score, `year`, time);
+CREATE INDEX idx_meta_time_id ON meta (time, id);
@@ -0,0 +1,119 @@
+package cn.har01d.alist_tvbox;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * native 镜像启动耗时和内存回归检查，由 native profile 在打包后通过 failsafe 执行。
+ * 阈值可用 native.startup.max-ms 和 native.rss.max-mb 覆盖。
+ * 数据目录、AList 配置和 sqlite 数据库都建在临时目录中，不依赖本机安装。
+ */
+@EnabledIfSystemProperty(named = "native.image", matches = ".+")
+class NativeStartupIT {
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void startupTimeAndRss() throws Exception {
+        Path image = Path.of(System.getProperty("native.image"));
+        assertThat(image).as("native image").isExecutable();
+        Path alistDir = prepareAList(dataDir.resolve("alist"));
+
+        long maxStartupMs = Long.getLong("native.startup.max-ms", 3000);
+        long maxRssMb = Long.getLong("native.rss.max-mb", 256);
+        int port = freePort();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(List.of(image.toString(),
+                "-Datv.data.dir=" + dataDir,
+                "-Datv.alist.dir=" + alistDir,
+                "--server.port=" + port,
+                "--logging.file.name=" + dataDir.resolve("log/app.log"),
+                "--spring.datasource.jdbc-url=jdbc:h2:file:" + dataDir.resolve("data")))
+                .redirectErrorStream(true)
+                .redirectOutput(dataDir.resolve("atv.log").toFile())
+                .start();
+        try {
+            long startupMs = waitForHttp(port, start, maxStartupMs * 10);
+            long rssMb = readRssKb(process.pid()) / 1024;
+
+            assertThat(startupMs).as("startup ms").isLessThanOrEqualTo(maxStartupMs);
+            assertThat(rssMb).as("RSS MB").isLessThanOrEqualTo(maxRssMb);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * 生成最小的 AList 配置和 sqlite 数据库，启动时只会访问 x_storages 和 x_setting_items
+     */
+    private static Path prepareAList(Path alistDir) throws Exception {
+        Path data = Files.createDirectories(alistDir.resolve("data"));
+        Path db = data.resolve("data.db");
+        Files.writeString(data.resolve("config.json"), """
+                {"database":{"type":"sqlite3","db_file":"%s"},"log":{"name":"%s"}}
+                """.formatted(db, alistDir.resolve("log/alist.log")));
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + db);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE x_setting_items (`key` text PRIMARY KEY, value text, help text, type text, "
+                    + "options text, `group` integer, flag integer, `index` integer)");
+            statement.executeUpdate("CREATE TABLE x_storages (id integer PRIMARY KEY, mount_path text UNIQUE, `order` integer, "
+                    + "driver text, cache_expiration integer, status text, addition text, remark text, modified datetime, "
+                    + "disabled numeric, order_by text, order_direction text, extract_folder text, web_proxy numeric, "
+                    + "webdav_policy text, down_proxy_url text, enable_sign numeric, disable_index numeric)");
+        }
+        return alistDir;
+    }
+
+    private static long waitForHttp(int port, long start, long timeoutMs) throws InterruptedException {
+        URI uri = URI.create("http://127.0.0.1:" + port + "/api/profiles");
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (System.nanoTime() < deadline) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+                connection.setConnectTimeout(200);
+                connection.setReadTimeout(1000);
+                if (connection.getResponseCode() == 200) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                }
+            } catch (Exception e) {
+                // 尚未监听端口
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("native image not started in " + timeoutMs + " ms");
+    }
+
+    private static long readRssKb(long pid) throws Exception {
+        for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(pid), "status"))) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("\\D+", ""));
+            }
+        }
+        throw new AssertionError("VmRSS not found for pid " + pid);
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
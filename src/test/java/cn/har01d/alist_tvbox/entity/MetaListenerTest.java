@@ -0,0 +1,76 @@
+package cn.har01d.alist_tvbox.entity;
+
+import cn.har01d.alist_tvbox.service.MetaListCache;
+import cn.har01d.alist_tvbox.service.MetaSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class MetaListenerTest {
+    private final MetaSearchIndex searchIndex = mock(MetaSearchIndex.class);
+    private final MetaListCache listCache = mock(MetaListCache.class);
+    private MetaListener listener;
+
+    @BeforeEach
+    void setUp() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Map.of("metaSearchIndex", searchIndex, "metaListCache", listCache));
+        listener = new MetaListener(beanFactory.getBeanProvider(MetaSearchIndex.class), beanFactory.getBeanProvider(MetaListCache.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void updatesImmediatelyWithoutTransaction() {
+        listener.onUpdate(meta());
+
+        verify(searchIndex).add(1, "/电影/流浪地球", "流浪地球");
+        verify(listCache).invalidate();
+    }
+
+    @Test
+    void updatesAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        Meta meta = meta();
+        listener.onPersist(meta);
+        meta.setName("改名");
+
+        verifyNoInteractions(searchIndex, listCache);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(searchIndex).onCreated(1, "/电影/流浪地球", "流浪地球");
+        verify(listCache).invalidate();
+    }
+
+    @Test
+    void ignoresRolledBackWrites() {
+        TransactionSynchronizationManager.initSynchronization();
+        listener.onRemove(meta());
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verifyNoInteractions(searchIndex, listCache);
+    }
+
+    private static Meta meta() {
+        Meta meta = new Meta();
+        meta.setId(1);
+        meta.setPath("/电影/流浪地球");
+        meta.setName("流浪地球");
+        return meta;
+    }
+}
@@ -0,0 +1,107 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.entity.SettingRepository;
+import cn.har01d.alist_tvbox.entity.Site;
+import cn.har01d.alist_tvbox.model.FsInfo;
+import cn.har01d.alist_tvbox.model.FsListResponse;
+import cn.har01d.alist_tvbox.model.FsResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.restclient.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AListServiceTest {
+    private static final String LIST_URL = "http://alist/api/fs/list";
+
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+    private AListService service;
+    private Site site;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplateBuilder builder = mock(RestTemplateBuilder.class, RETURNS_SELF);
+        when(builder.build()).thenReturn(restTemplate);
+        service = new AListService(builder, mock(SettingRepository.class), mock(SiteService.class),
+                mock(AListLocalService.class), new CircuitBreaker(), mock(OutboundRateLimiter.class));
+        site = new Site();
+        site.setId(2);
+        site.setName("test");
+        site.setUrl("http://alist");
+        site.setStorageVersion(3);
+    }
+
+    @Test
+    void cachedListingIsFilteredOnceAndCopiedPerCaller() {
+        when(restTemplate.exchange(eq(LIST_URL), eq(HttpMethod.POST), any(HttpEntity.class), eq(FsListResponse.class)))
+                .thenAnswer(i -> ResponseEntity.ok(response("电影.mkv", "会员福利.txt")));
+
+        FsResponse first = service.listFiles(site, "/movies", 1, 100);
+        first.getFiles().clear();
+        FsResponse second = service.listFiles(site, "/movies", 1, 100);
+
+        assertThat(second.getFiles()).extracting(FsInfo::getName).containsExactly("电影.mkv");
+        assertThat(second.getFiles().get(0).getModified()).isEqualTo("2024-01-02T03:04:05");
+        verify(restTemplate, times(1)).exchange(eq(LIST_URL), eq(HttpMethod.POST), any(HttpEntity.class), eq(FsListResponse.class));
+
+        service.listFiles(site, "/movies", 1, 100, true);
+        verify(restTemplate, times(2)).exchange(eq(LIST_URL), eq(HttpMethod.POST), any(HttpEntity.class), eq(FsListResponse.class));
+    }
+
+    @Test
+    void concurrentListingsShareOneRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(restTemplate.exchange(eq(LIST_URL), eq(HttpMethod.POST), any(HttpEntity.class), eq(FsListResponse.class)))
+                .thenAnswer(i -> {
+                    started.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return ResponseEntity.ok(response("a.mp4"));
+                });
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<FsResponse> first = executor.submit(() -> service.listFiles(site, "/tv", 1, 0));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<FsResponse> second = executor.submit(() -> service.listFiles(site, "/tv", 1, 0));
+            Thread.sleep(100);
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS).getFiles()).extracting(FsInfo::getName).containsExactly("a.mp4");
+            assertThat(second.get(5, TimeUnit.SECONDS).getFiles()).extracting(FsInfo::getName).containsExactly("a.mp4");
+        }
+
+        verify(restTemplate, times(1)).exchange(eq(LIST_URL), eq(HttpMethod.POST), any(HttpEntity.class), eq(FsListResponse.class));
+    }
+
+    private static FsListResponse response(String... names) {
+        FsResponse data = new FsResponse();
+        data.setContent(List.of(names).stream().map(name -> {
+            FsInfo info = new FsInfo();
+            info.setName(name);
+            info.setModified("2024-01-02T03:04:05.678+08:00");
+            return info;
+        }).toList());
+        FsListResponse response = new FsListResponse();
+        response.setCode(200);
+        response.setData(data);
+        return response;
+    }
+}
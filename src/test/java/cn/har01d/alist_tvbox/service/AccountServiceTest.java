@@ -0,0 +1,145 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.config.AppProperties;
+import cn.har01d.alist_tvbox.entity.AccountRepository;
+import cn.har01d.alist_tvbox.entity.Setting;
+import cn.har01d.alist_tvbox.entity.SettingRepository;
+import cn.har01d.alist_tvbox.model.LoginRequest;
+import cn.har01d.alist_tvbox.model.LoginResponse;
+import cn.har01d.alist_tvbox.model.LoginToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.restclient.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+import static cn.har01d.alist_tvbox.util.Constants.ATV_PASSWORD;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AccountServiceTest {
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private SettingRepository settingRepository;
+    @Mock
+    private AListLocalService aListLocalService;
+    @Mock
+    private IndexService indexService;
+    @Mock
+    private TaskScheduler scheduler;
+    @Mock
+    private RestTemplateBuilder builder;
+    @Mock
+    private RestTemplate restTemplate;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private AccountService service;
+
+    @BeforeEach
+    void setUp() {
+        when(builder.rootUri(anyString())).thenReturn(builder);
+        when(builder.build()).thenReturn(restTemplate);
+        service = new AccountService(accountRepository, settingRepository, aListLocalService, indexService,
+                new AppProperties(), scheduler, builder, new ObjectMapper(), jdbcTemplate);
+        when(settingRepository.findById(ATV_PASSWORD)).thenReturn(Optional.of(new Setting(ATV_PASSWORD, "secret")));
+    }
+
+    @Test
+    void loginReusesTokenUntilInvalidated() {
+        String token = jwt(Instant.now().plus(Duration.ofDays(2)));
+        when(restTemplate.postForObject(eq("/api/auth/login"), any(LoginRequest.class), eq(LoginResponse.class)))
+                .thenReturn(response(token));
+
+        assertThat(service.login()).isEqualTo(token);
+        assertThat(service.login()).isEqualTo(token);
+        verify(restTemplate, times(1)).postForObject(eq("/api/auth/login"), any(LoginRequest.class), eq(LoginResponse.class));
+
+        service.invalidateToken();
+        service.login();
+        verify(restTemplate, times(2)).postForObject(eq("/api/auth/login"), any(LoginRequest.class), eq(LoginResponse.class));
+    }
+
+    @Test
+    void loginAgainAfterAListRestart() {
+        when(restTemplate.postForObject(eq("/api/auth/login"), any(LoginRequest.class), eq(LoginResponse.class)))
+                .thenReturn(response(jwt(Instant.now().plus(Duration.ofDays(2)))));
+        when(aListLocalService.getStartCount()).thenReturn(1, 1, 2);
+
+        service.login();
+        service.login();
+        service.login();
+
+        verify(restTemplate, times(2)).postForObject(eq("/api/auth/login"), any(LoginRequest.class), eq(LoginResponse.class));
+    }
+
+    @Test
+    void refreshTokenBeforeExpiry() {
+        String expiring = jwt(Instant.now().plus(Duration.ofMinutes(5)));
+        String fresh = jwt(Instant.now().plus(Duration.ofDays(2)));
+        when(restTemplate.postForObject(eq("/api/auth/login"), any(LoginRequest.class), eq(LoginResponse.class)))
+                .thenReturn(response(expiring), response(fresh));
+
+        assertThat(service.login()).isEqualTo(expiring);
+        assertThat(service.login()).isEqualTo(fresh);
+        assertThat(service.login()).isEqualTo(fresh);
+    }
+
+    @Test
+    void adminRequestLogsInAgainWhenAListRejectsToken() {
+        String stale = jwt(Instant.now().plus(Duration.ofDays(2)));
+        String fresh = jwt(Instant.now().plus(Duration.ofDays(3)));
+        when(restTemplate.postForObject(eq("/api/auth/login"), any(LoginRequest.class), eq(LoginResponse.class)))
+                .thenReturn(response(stale), response(fresh));
+        when(restTemplate.exchange(eq("/api/admin/storage/enable?id=1"), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class)))
+                .thenReturn(ResponseEntity.ok("{\"code\":401,\"message\":\"token is expired\"}"), ResponseEntity.ok("{\"code\":200}"));
+
+        service.enableStorage(1, service.login());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<HttpEntity<?>> captor = ArgumentCaptor.forClass(HttpEntity.class);
+        verify(restTemplate, times(2)).exchange(eq("/api/admin/storage/enable?id=1"), eq(HttpMethod.POST), captor.capture(), eq(String.class));
+        assertThat(captor.getAllValues()).extracting(entity -> entity.getHeaders().getFirst(HttpHeaders.AUTHORIZATION))
+                .containsExactly(stale, fresh);
+        assertThat(service.login()).isEqualTo(fresh);
+    }
+
+    private static LoginResponse response(String token) {
+        LoginToken data = new LoginToken();
+        data.setToken(token);
+        LoginResponse response = new LoginResponse();
+        response.setCode(200);
+        response.setData(data);
+        return response;
+    }
+
+    private static String jwt(Instant exp) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String header = encoder.encodeToString("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+        String payload = encoder.encodeToString(("{\"username\":\"atv\",\"exp\":" + exp.getEpochSecond() + "}").getBytes(StandardCharsets.UTF_8));
+        return header + "." + payload + ".signature";
+    }
+}
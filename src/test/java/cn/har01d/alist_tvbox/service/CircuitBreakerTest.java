@@ -0,0 +1,135 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.exception.BadRequestException;
+import cn.har01d.alist_tvbox.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CircuitBreakerTest {
+    private final CircuitBreaker breaker = new CircuitBreaker();
+
+    @Test
+    void opensWhenFailureRateExceedsThreshold() {
+        breaker.configure("test", new CircuitBreaker.Policy(10, 4, 50, 10_000, 80, 60_000, 600_000, 1));
+        breaker.recordSuccess("test");
+        breaker.recordSuccess("test");
+        breaker.recordFailure("test");
+        assertThat(breaker.getStatus("test")).isEqualTo("CLOSED");
+
+        breaker.recordFailure("test");
+
+        assertThat(breaker.getStatus("test")).isEqualTo("OPEN");
+        assertThrows(ServiceUnavailableException.class, () -> breaker.call("test", () -> "ok"));
+    }
+
+    @Test
+    void businessErrorsDoNotOpenCircuit() {
+        breaker.configure("test", new CircuitBreaker.Policy(10, 2, 50, 10_000, 80, 60_000, 600_000, 1));
+        for (int i = 0; i < 5; i++) {
+            assertThrows(BadRequestException.class, () -> breaker.call("test", () -> {
+                throw new BadRequestException("not found");
+            }));
+        }
+
+        assertThat(breaker.getStatus("test")).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void halfOpenProbeClosesOrReopensWithBackoff() throws Exception {
+        breaker.configure("test", new CircuitBreaker.Policy(2, 1, 50, 10_000, 80, 100, 600_000, 1));
+        breaker.recordFailure("test");
+        Thread.sleep(150);
+
+        assertThat(breaker.getStatus("test")).isEqualTo("HALF_OPEN");
+        assertThrows(IOException.class, () -> breaker.call("test", () -> {
+            throw new IOException("timeout");
+        }));
+        assertThat(breaker.getStatus("test")).isEqualTo("OPEN");
+
+        Thread.sleep(100);
+        assertThat(breaker.getStatus("test")).isEqualTo("OPEN");
+        Thread.sleep(150);
+        assertThat(breaker.call("test", () -> "ok")).isEqualTo("ok");
+        assertThat(breaker.getStatus("test")).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void prefixedNamesSharePolicyButNotState() {
+        breaker.configure("site", new CircuitBreaker.Policy(10, 1, 50, 10_000, 80, 60_000, 600_000, 1));
+        breaker.recordFailure("site:a");
+
+        assertThat(breaker.getStatus("site:a")).isEqualTo("OPEN");
+        assertThat(breaker.getStatus("site:b")).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void cancelledCallsDoNotOpenCircuit() throws Exception {
+        breaker.configure("test", new CircuitBreaker.Policy(10, 1, 50, 10_000, 80, 60_000, 600_000, 1));
+        CountDownLatch started = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> future = executor.submit(() -> breaker.call("test", () -> {
+                started.countDown();
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("interrupted");
+                }
+                return "ok";
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            future.cancel(true);
+        }
+
+        assertThat(breaker.getStatus("test")).isEqualTo("CLOSED");
+        assertThat(breaker.getStats()).singleElement().satisfies(stats -> assertThat(stats).containsEntry("totalCalls", 0L));
+        assertThat(breaker.call("test", () -> "ok")).isEqualTo("ok");
+    }
+
+    @Test
+    void socketTimeoutStillCountsAsFailure() {
+        breaker.configure("test", new CircuitBreaker.Policy(10, 1, 50, 10_000, 80, 60_000, 600_000, 1));
+
+        assertThrows(SocketTimeoutException.class, () -> breaker.call("test", () -> {
+            throw new SocketTimeoutException("read timed out");
+        }));
+
+        assertThat(breaker.getStatus("test")).isEqualTo("OPEN");
+    }
+
+    @Test
+    void isOpenDoesNotConsumeHalfOpenProbe() throws Exception {
+        breaker.configure("test", new CircuitBreaker.Policy(2, 1, 50, 10_000, 80, 100, 600_000, 1));
+        breaker.recordFailure("test");
+        assertThat(breaker.isOpen("test")).isTrue();
+        Thread.sleep(150);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(breaker.isOpen("test")).isFalse();
+        }
+        assertThat(breaker.call("test", () -> "ok")).isEqualTo("ok");
+        assertThat(breaker.getStatus("test")).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void localAListIgnoresSlowCalls() {
+        for (int i = 0; i < 10; i++) {
+            breaker.record("alist-local:本地", 60_000, false);
+            breaker.record("alist:远程", 60_000, false);
+        }
+
+        assertThat(breaker.getStatus("alist-local:本地")).isEqualTo("CLOSED");
+        assertThat(breaker.getStatus("alist:远程")).isEqualTo("OPEN");
+    }
+}
@@ -1,14 +1,19 @@
 package cn.har01d.alist_tvbox.service;
 
 import cn.har01d.alist_tvbox.config.AppProperties;
+import cn.har01d.alist_tvbox.domain.TaskResult;
+import cn.har01d.alist_tvbox.domain.TaskStatus;
 import cn.har01d.alist_tvbox.entity.AliasRepository;
 import cn.har01d.alist_tvbox.entity.MetaRepository;
 import cn.har01d.alist_tvbox.entity.Movie;
 import cn.har01d.alist_tvbox.entity.MovieRepository;
+import cn.har01d.alist_tvbox.entity.Setting;
 import cn.har01d.alist_tvbox.entity.SettingRepository;
+import cn.har01d.alist_tvbox.entity.Task;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.restclient.RestTemplateBuilder;
@@ -16,16 +21,25 @@ import org.springframework.core.env.Environment;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+import static cn.har01d.alist_tvbox.util.Constants.MOVIE_VERSION;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -59,7 +73,8 @@ class DoubanServiceTest {
     void setUp() {
         doubanService = new DoubanService(appProperties, metaRepository, movieRepository, aliasRepository,
                 settingRepository, siteService, taskService, fileDownloader, new RestTemplateBuilder(),
-                jdbcTemplate, environment);
+                jdbcTemplate, environment, mock(MetaSearchIndex.class), mock(MetaListCache.class), new CircuitBreaker(),
+                new OutboundRateLimiter(appProperties), new UpstreamExecutor());
     }
 
     @Test
@@ -174,6 +189,107 @@ class DoubanServiceTest {
         assertThat(result.getName()).isEqualTo("百花杀");
     }
 
+    @Test
+    void applySqlFilesSwapsShadowTables(@TempDir Path dataDir) throws Exception {
+        JdbcTemplate h2 = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:douban-shadow;DB_CLOSE_DELAY=-1", "sa", ""));
+        h2.execute("CREATE TABLE movie (id INTEGER NOT NULL PRIMARY KEY, actors VARCHAR(255), country VARCHAR(255), "
+                + "cover VARCHAR(255), db_score VARCHAR(255), description VARCHAR(255), directors VARCHAR(255), "
+                + "editors VARCHAR(255), genre VARCHAR(255), language VARCHAR(255), name VARCHAR(255), \"YEAR\" INTEGER)");
+        h2.execute("CREATE TABLE alias (name VARCHAR(255) NOT NULL PRIMARY KEY, alias VARCHAR(255), movie_id INTEGER)");
+        h2.update("INSERT INTO movie (id, name) VALUES (1, 'old'), (2, 'keep')");
+        Files.createDirectories(dataDir.resolve("atv/sql"));
+        Files.write(dataDir.resolve("atv/sql/1.1.sql"), List.of(
+                "DELETE FROM \"PUBLIC\".\"MOVIE\" WHERE id = 1;",
+                "INSERT INTO \"PUBLIC\".\"MOVIE\" VALUES(3, '', '', '', '', '', '', '', '', '', 'new', 2024);",
+                "INSERT INTO \"PUBLIC\".\"ALIAS\" VALUES('new', 'new', 3);"));
+        System.setProperty("atv.data.dir", dataDir.toString());
+        try {
+            DoubanService service = new DoubanService(appProperties, metaRepository, movieRepository, aliasRepository,
+                    settingRepository, siteService, taskService, fileDownloader, new RestTemplateBuilder(),
+                    h2, environment, mock(MetaSearchIndex.class), mock(MetaListCache.class), new CircuitBreaker(),
+                    new OutboundRateLimiter(appProperties), new UpstreamExecutor());
+
+            service.applySqlFiles("1.0");
+            // 第二次升级要能再次创建影子表
+            service.applySqlFiles("1.0");
+        } finally {
+            System.clearProperty("atv.data.dir");
+        }
+
+        assertThat(h2.queryForList("SELECT id FROM movie ORDER BY id", Integer.class)).containsExactly(2, 3);
+        assertThat(h2.queryForObject("SELECT movie_id FROM alias WHERE name = 'new'", Integer.class)).isEqualTo(3);
+        assertThat(h2.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME LIKE '%\\_SHADOW' ESCAPE '\\' OR TABLE_NAME LIKE '%\\_OLD' ESCAPE '\\'", Integer.class)).isZero();
+        verify(settingRepository, atLeastOnce()).save(argThat(setting -> MOVIE_VERSION.equals(setting.getName()) && "1.1".equals(setting.getValue())));
+    }
+
+    @Test
+    void applySqlFilesKeepsRowsScrapedDuringUpgrade(@TempDir Path dataDir) throws Exception {
+        JdbcTemplate h2 = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:douban-shadow-merge;DB_CLOSE_DELAY=-1", "sa", ""));
+        h2.execute("CREATE TABLE movie (id INTEGER NOT NULL PRIMARY KEY, actors VARCHAR(255), country VARCHAR(255), "
+                + "cover VARCHAR(255), db_score VARCHAR(255), description VARCHAR(255), directors VARCHAR(255), "
+                + "editors VARCHAR(255), genre VARCHAR(255), language VARCHAR(255), name VARCHAR(255), \"YEAR\" INTEGER)");
+        h2.execute("CREATE TABLE alias (name VARCHAR(255) NOT NULL PRIMARY KEY, alias VARCHAR(255), movie_id INTEGER)");
+        h2.update("INSERT INTO movie (id, name) VALUES (1, 'old'), (2, 'keep')");
+        Files.createDirectories(dataDir.resolve("atv/sql"));
+        Files.write(dataDir.resolve("atv/sql/1.1.sql"), List.of(
+                "DELETE FROM \"PUBLIC\".\"MOVIE\" WHERE id = 1;",
+                "UPDATE \"PUBLIC\".\"MOVIE\" SET name = 'kept' WHERE id = 2;"));
+        // 检查点保存时模拟刮削写入线上表
+        when(settingRepository.save(any(Setting.class))).thenAnswer(invocation -> {
+            Setting setting = invocation.getArgument(0);
+            if ("movie_shadow_version".equals(setting.getName())) {
+                h2.update("INSERT INTO movie (id, name) VALUES (4, 'scraped')");
+                h2.update("INSERT INTO alias (name, alias, movie_id) VALUES ('scraped', 'scraped', 4)");
+            }
+            return setting;
+        });
+        System.setProperty("atv.data.dir", dataDir.toString());
+        try {
+            DoubanService service = new DoubanService(appProperties, metaRepository, movieRepository, aliasRepository,
+                    settingRepository, siteService, taskService, fileDownloader, new RestTemplateBuilder(),
+                    h2, environment, mock(MetaSearchIndex.class), mock(MetaListCache.class), new CircuitBreaker(),
+                    new OutboundRateLimiter(appProperties), new UpstreamExecutor());
+
+            service.applySqlFiles("1.0");
+        } finally {
+            System.clearProperty("atv.data.dir");
+        }
+
+        assertThat(h2.queryForList("SELECT name FROM movie ORDER BY id", String.class)).containsExactly("kept", "scraped");
+        assertThat(h2.queryForObject("SELECT movie_id FROM alias WHERE name = 'scraped'", Integer.class)).isEqualTo(4);
+        assertThat(h2.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME LIKE '%\\_KEYS' ESCAPE '\\'", Integer.class)).isZero();
+    }
+
+    @Test
+    void scrapeIndexFileResolvesDuplicateNamesOnceInBatch(@TempDir Path dataDir) throws Exception {
+        Files.createDirectories(dataDir.resolve("atv"));
+        Files.writeString(dataDir.resolve("atv/failed.txt"), "失败的剧\n");
+        Task task = new Task();
+        task.setId(1);
+        task.setStatus(TaskStatus.RUNNING);
+        task.setResult(TaskResult.OK);
+        Movie movie = movie("某剧", 2020);
+        movie.setId(1234567);
+        when(taskService.getById(1)).thenReturn(task);
+        when(metaRepository.findByPathIn(any())).thenReturn(List.of());
+        when(aliasRepository.findAllById(any())).thenReturn(List.of());
+        when(movieRepository.findByNameIn(any())).thenReturn(List.of(movie));
+
+        System.setProperty("atv.data.dir", dataDir.toString());
+        try {
+            doubanService.scrapeIndexFile(task, List.of("/a/某剧#某剧", "/b/某剧#某剧", "/c/失败#失败的剧"), false);
+        } finally {
+            System.clearProperty("atv.data.dir");
+        }
+
+        verify(aliasRepository).findAllById(Set.of("某剧"));
+        verify(movieRepository).findByNameIn(Set.of("某剧"));
+        verify(movieRepository, never()).getByName(anyString());
+        verify(metaRepository, times(2)).save(any());
+        verify(taskService).updateTaskData(1, "成功刮削数量：2");
+        assertThat(Files.readAllLines(dataDir.resolve("atv/paths.txt"))).containsExactly("/c/失败");
+    }
+
     private Movie movie(String name, Integer year) {
         Movie m = new Movie();
         m.setName(name);
@@ -1,5 +1,6 @@
 package cn.har01d.alist_tvbox.service;
 
+import cn.har01d.alist_tvbox.dto.Index115LinkData;
 import cn.har01d.alist_tvbox.entity.Site;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -8,6 +9,8 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
@@ -54,6 +57,31 @@ class Index115ClientTest {
         assertEquals("http://play/x", client.resolveLink(site, "CK", "sw1", "6666", "f1"));
     }
 
+    @Test
+    void browseIsCached() {
+        server.expect(requestTo("http://p/api/index115/browse?share_code=sw1&receive_code=6666&parent_id=0"))
+                .andRespond(withSuccess("{\"code\":200,\"data\":[{\"FileID\":\"f1\",\"Name\":\"a.mkv\",\"IsDir\":false}]}", MediaType.APPLICATION_JSON));
+        var first = client.browse(site, "sw1", "6666", "0");
+        var second = client.browse(site, "sw1", "6666", "0");
+        server.verify();
+        assertSame(first, second);
+    }
+
+    @Test
+    void linkTtlRespectsExpiry() {
+        Index115LinkData data = new Index115LinkData();
+        data.setUrl("http://play/x");
+        data.setExpiredIn(600);
+        assertEquals(Duration.ofMinutes(9), Index115Client.linkTtl(data, 0));
+
+        data.setExpiredIn(0);
+        data.setUrl("http://cdn.115.com/a.mkv?t=1700000300&u=1");
+        assertEquals(Duration.ofMinutes(4), Index115Client.linkTtl(data, 1700000000000L));
+
+        data.setUrl("http://cdn.115.com/a.mkv?t=1700000030");
+        assertEquals(Duration.ZERO, Index115Client.linkTtl(data, 1700000000000L));
+    }
+
     private Site site() {
         Site s = new Site();
         s.setUrl("http://p");
@@ -0,0 +1,67 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.config.AppProperties;
+import cn.har01d.alist_tvbox.dto.ValidateRequest;
+import cn.har01d.alist_tvbox.dto.ValidateResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IndexFileServiceTest {
+    @Mock AListService aListService;
+    @Mock SettingService settingService;
+    @Mock TaskService taskService;
+
+    private IndexFileService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new IndexFileService(aListService, settingService, taskService, new AppProperties(), new OutboundRateLimiter(new AppProperties()), new UpstreamExecutor());
+    }
+
+    @Test
+    void validateSkipsChildrenOfMissingFolders() throws InterruptedException {
+        ValidateRequest missing = request("/a");
+        missing.getChildren().add(request("/a/1"));
+        ValidateRequest ok = request("/b");
+        ok.getChildren().add(request("/b/1"));
+        ok.getChildren().add(request("/b/2"));
+
+        when(aListService.validate(anyString())).thenReturn(new ValidateResult(true, ""));
+        when(aListService.validate("/a")).thenReturn(new ValidateResult(false, "object not found"));
+        when(aListService.validate("/b/2")).thenReturn(new ValidateResult(false, "failed get storage: object not found"));
+
+        List<String> results = service.validate(1, List.of(missing, ok), 5);
+
+        assertThat(results).containsExactly("/a", "/b/2");
+        verify(aListService, never()).validate("/a/1");
+        verify(aListService).validate("/b/1");
+    }
+
+    @Test
+    void validateIgnoresTransientErrors() throws InterruptedException {
+        ValidateRequest root = request("/a");
+        root.getChildren().add(request("/a/1"));
+        when(aListService.validate("/a")).thenReturn(new ValidateResult(false, "timeout"));
+
+        List<String> results = service.validate(1, List.of(root), 2);
+
+        assertThat(results).isEmpty();
+        verify(aListService, never()).validate("/a/1");
+    }
+
+    private static ValidateRequest request(String path) {
+        return new ValidateRequest(path);
+    }
+}
@@ -0,0 +1,151 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.entity.Meta;
+import cn.har01d.alist_tvbox.entity.MetaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 刮削列表的过滤条件和两种翻页方式在H2上的查询结果
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class MetaBrowseQueryTest {
+    private static final Sort KEYSET_SORT = Sort.by(Sort.Order.desc("time"), Sort.Order.desc("id"));
+
+    @Autowired
+    private MetaRepository metaRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        metaRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void filtersByEscapedPrefixScoreAndYear() {
+        save("/browse/电影/高分", 85, 2020, 1);
+        save("/browse/电影/低分", 50, 2021, 2);
+        save("/browse/电影/无分", null, 2021, 3);
+        save("/browse/电影/100%_合集/甲", 70, 1990, 4);
+        save("/browse/电影/100abc/乙", 70, 2022, 5);
+        save("/browse/剧集/丙", 90, 2022, 6);
+
+        assertThat(paths(TvBoxService.metaFilter(List.of("/browse/电影/100%_合集"), "", "")))
+                .containsExactly("/browse/电影/100%_合集/甲");
+        assertThat(paths(TvBoxService.metaFilter(List.of("/browse/电影", "/browse/剧集"), "high", "")))
+                .containsExactlyInAnyOrder("/browse/电影/高分", "/browse/剧集/丙");
+        assertThat(paths(TvBoxService.metaFilter(List.of("/browse/电影"), "low", "2021")))
+                .containsExactly("/browse/电影/低分");
+        assertThat(paths(TvBoxService.metaFilter(List.of("/browse/电影"), "no", "")))
+                .containsExactly("/browse/电影/无分");
+        assertThat(paths(TvBoxService.metaFilter(List.of("/browse"), "", "others")))
+                .containsExactly("/browse/电影/100%_合集/甲");
+    }
+
+    @Test
+    void searchMatchesNameAndAppliesFilters() {
+        Meta renamed = save("/browse/电影/abc.2020.1080p", 85, 2020, 1);
+        renamed.setName("流浪地球");
+        metaRepository.saveAndFlush(renamed);
+        save("/browse/电影/流浪地球2", 60, 2023, 2);
+        save("/browse/电影/其他", 90, 2020, 3);
+
+        assertThat(paths(TvBoxService.keywordFilter("流浪地球")))
+                .containsExactlyInAnyOrder("/browse/电影/abc.2020.1080p", "/browse/电影/流浪地球2");
+        assertThat(paths(TvBoxService.keywordFilter("流浪地球").and(TvBoxService.scoreYearFilter("high", ""))))
+                .containsExactly("/browse/电影/abc.2020.1080p");
+        assertThat(paths(TvBoxService.keywordFilter("流浪地球").and(TvBoxService.scoreYearFilter("", "2023"))))
+                .containsExactly("/browse/电影/流浪地球2");
+        assertThat(paths(TvBoxService.keywordFilter("100%"))).isEmpty();
+    }
+
+    @Test
+    void keysetPagesMatchOffsetPages() {
+        for (int i = 1; i <= 7; i++) {
+            // 相同时间的数据按ID区分
+            save("/browse/电影/" + i, null, 2020, i / 2);
+        }
+        Specification<Meta> spec = TvBoxService.metaFilter(List.of("/browse/电影"), "", "");
+
+        List<Integer> keyset = new ArrayList<>();
+        ScrollPosition position = ScrollPosition.keyset();
+        int pages = 0;
+        while (true) {
+            ScrollPosition start = position;
+            Window<Meta> window = metaRepository.findBy(spec, q -> q.sortBy(KEYSET_SORT).limit(3).scroll(start));
+            window.getContent().forEach(meta -> keyset.add(meta.getId()));
+            pages++;
+            if (!window.hasNext()) {
+                break;
+            }
+            Meta last = window.getContent().get(window.size() - 1);
+            position = ScrollPosition.forward(Map.of("time", last.getTime(), "id", last.getId()));
+        }
+
+        List<Integer> offset = new ArrayList<>();
+        for (int page = 0; page < 3; page++) {
+            metaRepository.findAll(spec, PageRequest.of(page, 3, KEYSET_SORT)).forEach(meta -> offset.add(meta.getId()));
+        }
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(keyset).hasSize(7).doesNotHaveDuplicates().isEqualTo(offset);
+        assertThat(metaRepository.findAll(spec, PageRequest.of(0, 3, KEYSET_SORT)).getTotalPages()).isEqualTo(3);
+    }
+
+    @Test
+    void missingTimesAreDetectedAndFilled() {
+        Meta meta = save("/browse/电影/无时间", null, 2020, 1);
+        save("/browse/电影/有时间", null, 2020, 0);
+        jdbcTemplate.update("UPDATE meta SET time = NULL WHERE id = ?", meta.getId());
+
+        assertThat(metaRepository.existsByTimeIsNull()).isTrue();
+        assertThat(metaRepository.fillMissingTime()).isEqualTo(1);
+        assertThat(metaRepository.existsByTimeIsNull()).isFalse();
+        // 补的是旧时间，不会排到最新列表前面
+        assertThat(jdbcTemplate.queryForList("SELECT path FROM meta WHERE path LIKE '/browse/电影/%时间' ORDER BY time DESC", String.class))
+                .containsExactly("/browse/电影/有时间", "/browse/电影/无时间");
+    }
+
+    @Test
+    void persistFillsMissingTime() {
+        Meta meta = new Meta();
+        meta.setPath("/browse/电影/新增");
+        meta.setTime(null);
+
+        assertThat(metaRepository.saveAndFlush(meta).getTime()).isNotNull();
+        assertThat(metaRepository.existsByTimeIsNull()).isFalse();
+    }
+
+    private Meta save(String path, Integer score, Integer year, int time) {
+        Meta meta = new Meta();
+        meta.setPath(path);
+        meta.setScore(score);
+        meta.setYear(year);
+        meta.setTime(Instant.ofEpochSecond(1_700_000_000L + time));
+        return metaRepository.saveAndFlush(meta);
+    }
+
+    private List<String> paths(Specification<Meta> spec) {
+        return metaRepository.findAll(spec).stream().map(Meta::getPath).toList();
+    }
+}
@@ -0,0 +1,63 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.tvbox.MovieList;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetaListCacheTest {
+
+    @Test
+    void concurrentRequestsLoadOnce() throws Exception {
+        MetaListCache cache = new MetaListCache();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<MovieList> first = executor.submit(() -> cache.get("meta|1", () -> {
+                loads.incrementAndGet();
+                started.countDown();
+                await(release);
+                return new MovieList();
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<MovieList> second = executor.submit(() -> cache.get("meta|1", () -> {
+                loads.incrementAndGet();
+                return new MovieList();
+            }));
+            release.countDown();
+
+            assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(first.get(5, TimeUnit.SECONDS));
+        }
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void invalidateReloads() {
+        MetaListCache cache = new MetaListCache();
+        MovieList first = cache.get("recommend|1", MovieList::new);
+
+        assertThat(cache.get("recommend|1", MovieList::new)).isSameAs(first);
+
+        cache.invalidate();
+
+        assertThat(cache.get("recommend|1", MovieList::new)).isNotSameAs(first);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
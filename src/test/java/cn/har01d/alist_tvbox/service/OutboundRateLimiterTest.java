@@ -0,0 +1,62 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.config.AppProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboundRateLimiterTest {
+
+    @Test
+    void parseLimits() {
+        Map<String, OutboundRateLimiter.Limit> map = OutboundRateLimiter.parse("a.com=2:5, b.com=0.5,bad,c.com=x");
+
+        assertThat(map).hasSize(2);
+        assertThat(map.get("a.com")).isEqualTo(new OutboundRateLimiter.Limit(2, 5));
+        assertThat(map.get("b.com")).isEqualTo(new OutboundRateLimiter.Limit(0.5, 1));
+    }
+
+    @Test
+    void unknownHostIsNotLimited() throws Exception {
+        OutboundRateLimiter limiter = new OutboundRateLimiter(new AppProperties());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire("example.com");
+        }
+
+        assertThat(System.nanoTime() - start).isLessThan(1_000_000_000L);
+        assertThat(limiter.getStats()).isEmpty();
+    }
+
+    @Test
+    void zeroRateOverridesDefault() throws Exception {
+        AppProperties appProperties = new AppProperties();
+        appProperties.setOutboundRateLimits("index=0");
+        OutboundRateLimiter limiter = new OutboundRateLimiter(appProperties);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire("index");
+        }
+
+        assertThat(limiter.getStats()).isEmpty();
+    }
+
+    @Test
+    void waitsWhenBurstIsUsed() throws Exception {
+        AppProperties appProperties = new AppProperties();
+        appProperties.setOutboundRateLimits("test=20:2");
+        OutboundRateLimiter limiter = new OutboundRateLimiter(appProperties);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire("test");
+        }
+
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(80_000_000L);
+        assertThat(limiter.getStats()).singleElement()
+                .satisfies(stats -> assertThat(stats).containsEntry("acquired", 4L));
+    }
+}
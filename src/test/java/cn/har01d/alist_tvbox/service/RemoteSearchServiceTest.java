@@ -56,7 +56,8 @@ class RemoteSearchServiceTest {
                 mock(ShareService.class),
                 mock(TvBoxService.class),
                 offlineDownloadService,
-                mock(SubscriptionSourceService.class)
+                mock(SubscriptionSourceService.class),
+                new CircuitBreaker()
         );
 
         server.expect(once(), requestTo("http://pansou.example/api/health"))
@@ -95,7 +96,7 @@ class RemoteSearchServiceTest {
         RemoteSearchService service = new RemoteSearchService(
                 appProperties, restTemplateBuilder(restTemplate), objectMapper,
                 mock(TelegramChannelRepository.class), mock(ShareService.class),
-                mock(TvBoxService.class), offlineDownloadService, mock(SubscriptionSourceService.class));
+                mock(TvBoxService.class), offlineDownloadService, mock(SubscriptionSourceService.class), new CircuitBreaker());
 
         server.expect(once(), requestTo("http://pansou.example/api/health"))
                 .andRespond(withSuccess("""
@@ -139,7 +140,8 @@ class RemoteSearchServiceTest {
                 shareService,
                 tvBoxService,
                 offlineDownloadService,
-                mock(SubscriptionSourceService.class)
+                mock(SubscriptionSourceService.class),
+                new CircuitBreaker()
         );
 
         server.expect(once(), requestTo("http://pansou.example/api/search"))
@@ -182,7 +184,8 @@ class RemoteSearchServiceTest {
                 mock(ShareService.class),
                 mock(TvBoxService.class),
                 mock(OfflineDownloadService.class),
-                mock(SubscriptionSourceService.class)
+                mock(SubscriptionSourceService.class),
+                new CircuitBreaker()
         );
 
         server.expect(once(), requestTo("http://pansou.example/api/health"))
@@ -203,7 +206,7 @@ class RemoteSearchServiceTest {
         RemoteSearchService service = new RemoteSearchService(
                 appProperties, restTemplateBuilder(new RestTemplate()), objectMapper,
                 mock(TelegramChannelRepository.class), mock(ShareService.class),
-                mock(TvBoxService.class), mock(OfflineDownloadService.class), mock(SubscriptionSourceService.class));
+                mock(TvBoxService.class), mock(OfflineDownloadService.class), mock(SubscriptionSourceService.class), new CircuitBreaker());
 
         // Only quark selected -> baidu (unselected) and pikpak (not in supported 9) are NOT checkable.
         List<Message> checkable = service.selectCheckable(List.of(
@@ -221,7 +224,7 @@ class RemoteSearchServiceTest {
         RemoteSearchService service = new RemoteSearchService(
                 appProperties, restTemplateBuilder(new RestTemplate()), objectMapper,
                 mock(TelegramChannelRepository.class), mock(ShareService.class),
-                mock(TvBoxService.class), mock(OfflineDownloadService.class), mock(SubscriptionSourceService.class));
+                mock(TvBoxService.class), mock(OfflineDownloadService.class), mock(SubscriptionSourceService.class), new CircuitBreaker());
 
         // Unset -> all supported types checkable; pikpak (not supported) still excluded.
         List<Message> checkable = service.selectCheckable(List.of(
@@ -248,7 +251,7 @@ class RemoteSearchServiceTest {
         RemoteSearchService service = new RemoteSearchService(
                 appProperties, restTemplateBuilder(restTemplate), objectMapper,
                 telegramChannelRepository, mock(ShareService.class),
-                mock(TvBoxService.class), offlineDownloadService, mock(SubscriptionSourceService.class));
+                mock(TvBoxService.class), offlineDownloadService, mock(SubscriptionSourceService.class), new CircuitBreaker());
 
         server.expect(once(), requestTo("http://pansou.example/api/search"))
                 .andRespond(withSuccess("""
@@ -301,7 +304,7 @@ class RemoteSearchServiceTest {
         RemoteSearchService service = new RemoteSearchService(
                 appProperties, restTemplateBuilder(restTemplate), objectMapper,
                 mock(TelegramChannelRepository.class), mock(ShareService.class),
-                mock(TvBoxService.class), offlineDownloadService, subscriptionSourceService);
+                mock(TvBoxService.class), offlineDownloadService, subscriptionSourceService, new CircuitBreaker());
 
         server.expect(once(), requestTo("http://pansou.example/api/search"))
                 .andExpect(content().json("""
@@ -335,7 +338,7 @@ class RemoteSearchServiceTest {
         RemoteSearchService service = new RemoteSearchService(
                 appProperties, restTemplateBuilder(restTemplate), objectMapper,
                 mock(TelegramChannelRepository.class), mock(ShareService.class),
-                mock(TvBoxService.class), offlineDownloadService, subscriptionSourceService);
+                mock(TvBoxService.class), offlineDownloadService, subscriptionSourceService, new CircuitBreaker());
 
         server.expect(once(), requestTo("http://pansou.example/api/search"))
                 .andExpect(content().json("""
@@ -488,7 +491,7 @@ class RemoteSearchServiceTest {
         return new RemoteSearchService(
                 appProperties, restTemplateBuilder(restTemplate), objectMapper,
                 mock(TelegramChannelRepository.class), mock(ShareService.class),
-                mock(TvBoxService.class), mock(OfflineDownloadService.class), mock(SubscriptionSourceService.class));
+                mock(TvBoxService.class), mock(OfflineDownloadService.class), mock(SubscriptionSourceService.class), new CircuitBreaker());
     }
 
     private static Message message(String type, String link) {
@@ -33,6 +33,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -92,7 +93,7 @@ class ShareLinkTest {
         Mockito.when(builder.rootUri(any())).thenReturn(builder);
         Mockito.when(builder.build()).thenReturn(restTemplate);
         shareService = new ShareService(appProperties, shareRepository, metaRepository, aliasRepository, settingRepository, siteRepository, accountRepository, driverAccountRepository, aListService, driverAccountService, accountService, aListLocalService, configFileService, pikPakService, offlineDownloadService
-                , builder, environment, objectMapper);
+                , builder, environment, objectMapper, new MetaListCache());
     }
 
     @Test
@@ -327,14 +328,14 @@ class ShareLinkTest {
         dto.setContent("/AT分享/天翼/电视剧/凡人修仙传(2025) https://cloud.189.cn/t/aEZNj2nYBVFz\n" +
                 "/AT分享/天翼/电视剧/定风波(2025) https://cloud.189.cn/t/ri6FbmquUNRz?pwd=1234");
 
-        Mockito.when(restTemplate.exchange(anyString(), any(), any(), any(Class.class))).thenReturn(new ResponseEntity<>(Map.of("code", 200), HttpStatus.OK));
-        Mockito.when(shareRepository.existsByPath(any())).thenReturn(false);
+        Mockito.doReturn(new ResponseEntity<>(Map.of("code", 200), HttpStatus.OK)).when(accountService).exchangeAdmin(any(), anyString(), any(), any(), any(), any());
         int count = shareService.importShares(dto);
         assertEquals(2, count);
 
-        ArgumentCaptor<Share> captor = ArgumentCaptor.forClass(Share.class);
-        Mockito.verify(shareRepository, Mockito.times(2)).save(captor.capture());
-        Share share = captor.getValue();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Share>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(shareRepository, Mockito.times(1)).saveAll(captor.capture());
+        Share share = captor.getValue().get(1);
         assertEquals(9, share.getType());
         assertEquals("ri6FbmquUNRz", share.getShareId());
         assertEquals("1234", share.getPassword());
@@ -344,8 +345,8 @@ class ShareLinkTest {
                 "/AT分享/天翼/电视剧/定风波(2025) 9:ri6FbmquUNRz 7744 1234");
         count = shareService.importShares(dto);
         assertEquals(2, count);
-        Mockito.verify(shareRepository, Mockito.times(4)).save(captor.capture());
-        share = captor.getValue();
+        Mockito.verify(shareRepository, Mockito.times(2)).saveAll(captor.capture());
+        share = captor.getValue().get(1);
         assertEquals(9, share.getType());
         assertEquals("ri6FbmquUNRz", share.getShareId());
         assertEquals("7744", share.getFolderId());
@@ -356,8 +357,8 @@ class ShareLinkTest {
                 "/AT分享/天翼/电视剧/定风波(2025) NrUZRf26fABj root asdf");
         count = shareService.importShares(dto);
         assertEquals(2, count);
-        Mockito.verify(shareRepository, Mockito.times(6)).save(captor.capture());
-        share = captor.getValue();
+        Mockito.verify(shareRepository, Mockito.times(3)).saveAll(captor.capture());
+        share = captor.getValue().get(1);
         assertEquals(9, share.getType());
         assertEquals("NrUZRf26fABj", share.getShareId());
         assertEquals("asdf", share.getPassword());
@@ -367,8 +368,8 @@ class ShareLinkTest {
                 "/AT分享/天翼/电视剧/定风波(2025) FJriMrei26v2");
         count = shareService.importShares(dto);
         assertEquals(2, count);
-        Mockito.verify(shareRepository, Mockito.times(8)).save(captor.capture());
-        share = captor.getValue();
+        Mockito.verify(shareRepository, Mockito.times(4)).saveAll(captor.capture());
+        share = captor.getValue().get(1);
         assertEquals(9, share.getType());
         assertEquals("FJriMrei26v2", share.getShareId());
         assertEquals("", share.getPassword());
@@ -378,8 +379,8 @@ class ShareLinkTest {
                 "/AT分享/天翼/电视剧/定风波(2025) https://cloud.189.cn/t/ri6FbmquUNRz");
         count = shareService.importShares(dto);
         assertEquals(2, count);
-        Mockito.verify(shareRepository, Mockito.times(10)).save(captor.capture());
-        share = captor.getValue();
+        Mockito.verify(shareRepository, Mockito.times(5)).saveAll(captor.capture());
+        share = captor.getValue().get(1);
         assertEquals(9, share.getType());
         assertEquals("ri6FbmquUNRz", share.getShareId());
         assertEquals("", share.getPassword());
@@ -454,8 +455,8 @@ class ShareLinkTest {
 
         Mockito.when(settingRepository.findById(ALIST_LOGIN)).thenReturn(Optional.of(new Setting(ALIST_LOGIN, "true")));
         Mockito.when(accountService.login()).thenReturn("token");
-        Mockito.when(restTemplate.exchange(anyString(), any(), any(), any(Class.class)))
-                .thenReturn(new ResponseEntity<>(Map.of("code", 200), HttpStatus.OK));
+        Mockito.doReturn(new ResponseEntity<>(Map.of("code", 200), HttpStatus.OK))
+                .when(accountService).exchangeAdmin(any(), anyString(), any(), any(), any(), any());
 
         shareService.create(share);
 
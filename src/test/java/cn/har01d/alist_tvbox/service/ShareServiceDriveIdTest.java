@@ -21,13 +21,19 @@ import org.springframework.boot.restclient.RestTemplateBuilder;
 import org.springframework.core.env.Environment;
 import org.springframework.mock.web.MockHttpServletResponse;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -38,6 +44,7 @@ class ShareServiceDriveIdTest {
     private ShareRepository shareRepository;
     private SiteRepository siteRepository;
     private AListService aListService;
+    private AListLocalService aListLocalService;
     private ShareService service;
 
     @BeforeEach
@@ -46,7 +53,7 @@ class ShareServiceDriveIdTest {
         shareRepository = mock(ShareRepository.class);
         siteRepository = mock(SiteRepository.class);
         aListService = mock(AListService.class);
-        AListLocalService aListLocalService = mock(AListLocalService.class);
+        aListLocalService = mock(AListLocalService.class);
         when(aListLocalService.getInternalPort()).thenReturn(4567);
 
         service = spy(new ShareService(
@@ -67,10 +74,11 @@ class ShareServiceDriveIdTest {
                 mock(OfflineDownloadService.class),
                 new RestTemplateBuilder(),
                 mock(Environment.class),
-                new ObjectMapper()));
+                new ObjectMapper(),
+                new MetaListCache()));
 
         doAnswer(invocation -> invocation.getArgument(0)).when(service).create(any(Share.class));
-        when(shareRepository.existsByPath(any())).thenReturn(false);
+        doReturn(null).when(service).enableStorage(any(), any());
     }
 
     @Test
@@ -81,9 +89,7 @@ class ShareServiceDriveIdTest {
 
         int count = service.importShares(dto);
 
-        ArgumentCaptor<Share> captor = ArgumentCaptor.forClass(Share.class);
-        verify(service).create(captor.capture());
-        Share share = captor.getValue();
+        Share share = importedShares().get(0);
         assertThat(count).isEqualTo(1);
         assertThat(share.getType()).isEqualTo(5);
         assertThat(share.getShareId()).isEqualTo("abc");
@@ -96,9 +102,7 @@ class ShareServiceDriveIdTest {
 
         int count = service.importShares(dto);
 
-        ArgumentCaptor<Share> captor = ArgumentCaptor.forClass(Share.class);
-        verify(service).create(captor.capture());
-        Share share = captor.getValue();
+        Share share = importedShares().get(0);
         assertThat(count).isEqualTo(1);
         assertThat(share.getType()).isEqualTo(0);
         assertThat(share.getShareId()).isEqualTo("abc");
@@ -112,13 +116,54 @@ class ShareServiceDriveIdTest {
 
         int count = service.importShares(dto);
 
-        ArgumentCaptor<Share> captor = ArgumentCaptor.forClass(Share.class);
-        verify(service, times(2)).create(captor.capture());
-        assertThat(captor.getAllValues()).extracting(Share::getType).containsExactly(5, 10);
-        assertThat(captor.getAllValues()).extracting(Share::getShareId).containsExactly("qid", "bdid");
+        List<Share> shares = importedShares();
+        assertThat(shares).extracting(Share::getType).containsExactly(5, 10);
+        assertThat(shares).extracting(Share::getShareId).containsExactly("qid", "bdid");
         assertThat(count).isEqualTo(2);
     }
 
+    @Test
+    void importSkipsExistingDuplicateAndInvalidLines() {
+        SharesDto dto = new SharesDto();
+        dto.setType("quark");
+        dto.setContent("/Old old root\n/New new root\n/New again root\n/Bad xyz:bad root\n/Other other root");
+        when(shareRepository.findPathsByPathIn(any())).thenAnswer(invocation -> {
+            Collection<String> paths = invocation.getArgument(0);
+            return paths.stream().filter(path -> path.endsWith("/Old")).toList();
+        });
+
+        int count = service.importShares(dto);
+
+        List<Share> shares = importedShares();
+        assertThat(count).isEqualTo(2);
+        assertThat(shares).extracting(Share::getShareId).containsExactly("new", "other");
+        assertThat(shares).extracting(Share::getId).doesNotHaveDuplicates();
+        verify(shareRepository).findPathsByPathIn(any());
+        verify(shareRepository, never()).existsByPath(any());
+    }
+
+    @Test
+    void importFallsBackToOneByOneWhenBatchSaveFails() {
+        SharesDto dto = new SharesDto();
+        dto.setType("quark");
+        dto.setContent("/A a root\n/B b root\n/C c root");
+        doThrow(new IllegalStateException("UNIQUE constraint failed")).when(aListLocalService).saveStorages(any());
+        doThrow(new IllegalStateException("UNIQUE constraint failed")).when(aListLocalService)
+                .saveStorage(argThat(storage -> storage.getPath().endsWith("/B")));
+
+        int count = service.importShares(dto);
+
+        ArgumentCaptor<Share> saved = ArgumentCaptor.forClass(Share.class);
+        verify(shareRepository, times(3)).save(saved.capture());
+        verify(aListLocalService, times(3)).saveStorage(any());
+        ArgumentCaptor<Share> deleted = ArgumentCaptor.forClass(Share.class);
+        verify(shareRepository).delete(deleted.capture());
+        assertThat(count).isEqualTo(2);
+        assertThat(saved.getAllValues()).extracting(Share::getShareId).containsExactly("a", "b", "c");
+        assertThat(deleted.getValue().getShareId()).isEqualTo("b");
+        verify(service, never()).enableStorage(eq(deleted.getValue().getId()), any());
+    }
+
     @Test
     void exportsDriveIdentifierPrefixesInsteadOfNumericTypePrefixes() {
         Share share = new Share();
@@ -160,4 +205,11 @@ class ShareServiceDriveIdTest {
         assertThat(captor.getValue().getPath()).contains("/temp/quark@qid@");
         assertThat(captor.getValue().getPath()).doesNotContain("/temp/5@qid@");
     }
+
+    @SuppressWarnings("unchecked")
+    private List<Share> importedShares() {
+        ArgumentCaptor<List<Share>> captor = ArgumentCaptor.forClass(List.class);
+        verify(shareRepository).saveAll(captor.capture());
+        return captor.getValue();
+    }
 }
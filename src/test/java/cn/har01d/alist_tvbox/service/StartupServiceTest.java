@@ -0,0 +1,47 @@
+package cn.har01d.alist_tvbox.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class StartupServiceTest {
+    private final AccountService accountService = mock(AccountService.class);
+    private final ShareService shareService = mock(ShareService.class);
+    private final StartupService startupService = new StartupService(accountService, shareService,
+            mock(PluginFileSyncService.class), mock(IndexService.class), mock(DoubanService.class));
+
+    @AfterEach
+    void tearDown() {
+        startupService.shutdown();
+    }
+
+    @Test
+    void sharesRunAfterFailedAccounts() throws Exception {
+        doThrow(new IllegalStateException("login failed")).when(accountService).warmup();
+
+        assertThat(startupService.isReady()).isFalse();
+        startupService.warmup();
+
+        verify(shareService, timeout(5000)).setup();
+        for (int i = 0; i < 100 && !startupService.isReady(); i++) {
+            Thread.sleep(50);
+        }
+
+        assertThat(startupService.isReady()).isTrue();
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> phases = (List<Map<String, Object>>) startupService.getStatus().get("phases");
+        assertThat(phases).hasSize(5);
+        assertThat(phases.get(0)).containsEntry("name", "accounts")
+                .containsEntry("status", StartupService.Status.FAILED)
+                .containsEntry("error", "login failed");
+        assertThat(phases.get(1)).containsEntry("status", StartupService.Status.DONE);
+    }
+}
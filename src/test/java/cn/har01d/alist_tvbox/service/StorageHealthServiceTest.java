@@ -0,0 +1,69 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.config.AppProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.restclient.RestTemplateBuilder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StorageHealthServiceTest {
+    @Mock
+    private ShareService shareService;
+    @Mock
+    private AccountService accountService;
+    @Mock
+    private AListLocalService aListLocalService;
+    @Mock
+    private RestTemplateBuilder builder;
+    @Mock
+    private RestTemplate restTemplate;
+
+    private StorageHealthService service;
+
+    @BeforeEach
+    void setUp() {
+        when(builder.rootUri(anyString())).thenReturn(builder);
+        when(builder.build()).thenReturn(restTemplate);
+        service = new StorageHealthService(new AppProperties(), shareService, accountService, aListLocalService, builder);
+    }
+
+    @Test
+    void sweepDeletesInvalidSharesInOneBatchAndCachesReport() throws Exception {
+        JsonNode body = new ObjectMapper().readTree("""
+                {"code":200,"data":{"content":[
+                  {"id":1,"mount_path":"/a","driver":"Quark","status":"share_link is expired"},
+                  {"id":2,"mount_path":"/b","driver":"Quark","status":"network timeout"},
+                  {"id":3,"mount_path":"/c","driver":"AliyunShare","status":"分享已取消"}
+                ]}}
+                """);
+        when(accountService.login()).thenReturn("token");
+        when(accountService.exchangeAdmin(restTemplate, "/api/admin/storage/failed?page=1&per_page=500", HttpMethod.GET, null, JsonNode.class, "token"))
+                .thenReturn(ResponseEntity.ok(body));
+
+        StorageHealthService.Report report = service.sweep();
+
+        assertThat(report.failed()).isEqualTo(3);
+        assertThat(report.deleted()).isEqualTo(2);
+        assertThat(report.storages()).filteredOn(StorageHealthService.StorageStatus::invalid)
+                .extracting(StorageHealthService.StorageStatus::id).containsExactly(1, 3);
+        assertThat(service.getReport()).isSameAs(report);
+        verify(shareService).deleteShares(List.of(1, 3), "token");
+        verify(accountService, times(1)).login();
+    }
+}
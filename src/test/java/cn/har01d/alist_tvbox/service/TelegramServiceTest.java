@@ -395,7 +395,10 @@ class TelegramServiceTest {
                         .messageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
                         .detectRequestFactory(false)
                         .requestFactory(() -> restTemplate.getRequestFactory()),
-                objectMapper
+                objectMapper,
+                new UpstreamExecutor(),
+                new CircuitBreaker(),
+                new OutboundRateLimiter(appProperties)
         );
     }
 }
@@ -1,5 +1,6 @@
 package cn.har01d.alist_tvbox.service;
 
+import cn.har01d.alist_tvbox.config.AppProperties;
 import cn.har01d.alist_tvbox.domain.TaskResult;
 import cn.har01d.alist_tvbox.domain.TaskStatus;
 import cn.har01d.alist_tvbox.entity.Meta;
@@ -19,16 +20,23 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.restclient.RestTemplateBuilder;
 
 import java.lang.reflect.Field;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
@@ -63,7 +71,10 @@ class TmdbServiceTest {
                 siteService,
                 taskService,
                 new RestTemplateBuilder(),
-                new ObjectMapper()
+                new ObjectMapper(),
+                new CircuitBreaker(),
+                new OutboundRateLimiter(new AppProperties()),
+                new UpstreamExecutor()
         );
         when(tmdbRepository.getByName("天才，女友")).thenReturn(List.of(movie("天才，女友")));
 
@@ -85,7 +96,10 @@ class TmdbServiceTest {
                     siteService,
                     taskService,
                     new RestTemplateBuilder(),
-                    new ObjectMapper()
+                    new ObjectMapper(),
+                    new CircuitBreaker(),
+                    new OutboundRateLimiter(new AppProperties()),
+                    new UpstreamExecutor()
             );
 
             Task task1 = runningTask(1);
@@ -93,7 +107,7 @@ class TmdbServiceTest {
 
             when(taskService.getById(1)).thenReturn(task1);
             when(taskService.getById(2)).thenReturn(task2);
-            when(metaRepository.existsByPath(anyString())).thenReturn(false);
+            when(metaRepository.findPathsByPathIn(anyCollection())).thenReturn(List.of());
             when(tmdbMetaRepository.findByPath(anyString())).thenReturn(null);
             when(metaRepository.findByPath(anyString())).thenReturn(null);
             when(metaRepository.save(any(Meta.class))).thenAnswer(invocation -> invocation.getArgument(0));
@@ -159,6 +173,124 @@ class TmdbServiceTest {
         }
     }
 
+    @Test
+    void scrapeIndexFileBatchesExistsChecksAndAppendsFailures() throws Exception {
+        System.setProperty("atv.data.dir", tempDir.toString());
+        try {
+            TmdbService service = new TmdbService(
+                    tmdbRepository,
+                    tmdbMetaRepository,
+                    metaRepository,
+                    settingRepository,
+                    siteService,
+                    taskService,
+                    new RestTemplateBuilder(),
+                    new ObjectMapper(),
+                    new CircuitBreaker(),
+                    new OutboundRateLimiter(new AppProperties()),
+                    new UpstreamExecutor()
+            );
+            Files.createDirectories(tempDir.resolve("atv"));
+            Files.writeString(tempDir.resolve("atv/tmdb_failed.txt"), "失败的剧\n");
+            Task task = runningTask(1);
+            when(taskService.getById(1)).thenReturn(task);
+            when(metaRepository.findPathsByPathIn(anyCollection())).thenReturn(List.of("/已刮削"));
+            when(tmdbRepository.getByName(anyString())).thenAnswer(invocation ->
+                    "成功的剧".equals(invocation.getArgument(0)) ? List.of(movie("成功的剧")) : List.of());
+
+            service.scrapeIndexFile(task, List.of("/已刮削#已刮削", "/失败#失败的剧", "-/忽略", "/成功#成功的剧"), false);
+
+            verify(metaRepository).findPathsByPathIn(Set.of("/已刮削", "/失败", "/成功"));
+            verify(taskService).updateTaskSummary(1, "1:/已刮削#已刮削");
+            verify(taskService).updateTaskData(1, "成功刮削数量：1");
+            verify(taskService).completeTask(1);
+            assertEquals(List.of("/失败"), Files.readAllLines(tempDir.resolve("atv/tmdb_paths.txt")));
+            assertEquals(List.of("失败的剧"), Files.readAllLines(tempDir.resolve("atv/tmdb_failed.txt")));
+        } finally {
+            System.clearProperty("atv.data.dir");
+        }
+    }
+
+    @Test
+    void getByIdFetchesDetailsOnceForConcurrentLookups() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TmdbService service = new TmdbService(
+                tmdbRepository,
+                tmdbMetaRepository,
+                metaRepository,
+                settingRepository,
+                siteService,
+                taskService,
+                new RestTemplateBuilder(),
+                new ObjectMapper(),
+                new CircuitBreaker(),
+                new OutboundRateLimiter(new AppProperties()),
+                new UpstreamExecutor()
+        ) {
+            @Override
+            public Tmdb getDetails(String type, Integer id) {
+                calls.incrementAndGet();
+                started.countDown();
+                try {
+                    assertTrue(release.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return movie("同名影片");
+            }
+        };
+        CountDownLatch secondLookup = new CountDownLatch(3);
+        when(tmdbRepository.findByTypeAndTmdbId("movie", 42)).thenAnswer(invocation -> {
+            secondLookup.countDown();
+            return Optional.empty();
+        });
+
+        CompletableFuture<Tmdb> first = CompletableFuture.supplyAsync(() -> service.getById("movie", 42));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Tmdb> second = CompletableFuture.supplyAsync(() -> service.getById("movie", 42));
+        assertTrue(secondLookup.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void scrapeIndexFileRunsInlineWhenLaneRejects() throws Exception {
+        System.setProperty("atv.data.dir", tempDir.toString());
+        try {
+            UpstreamExecutor upstreamExecutor = new UpstreamExecutor();
+            TmdbService service = new TmdbService(
+                    tmdbRepository,
+                    tmdbMetaRepository,
+                    metaRepository,
+                    settingRepository,
+                    siteService,
+                    taskService,
+                    new RestTemplateBuilder(),
+                    new ObjectMapper(),
+                    new CircuitBreaker(),
+                    new OutboundRateLimiter(new AppProperties()),
+                    upstreamExecutor
+            );
+            upstreamExecutor.lane("tmdb-scrape", 4, 200).shutdown();
+            Task task = runningTask(1);
+            when(taskService.getById(1)).thenReturn(task);
+            when(metaRepository.findPathsByPathIn(anyCollection())).thenReturn(List.of());
+            when(tmdbRepository.getByName(anyString())).thenAnswer(invocation -> List.of(movie(invocation.getArgument(0))));
+
+            service.scrapeIndexFile(task, List.of("/成功#成功的剧"), false);
+
+            verify(taskService).updateTaskData(1, "成功刮削数量：1");
+            verify(taskService).completeTask(1);
+        } finally {
+            System.clearProperty("atv.data.dir");
+        }
+    }
+
     private static Task runningTask(int id) {
         Task task = new Task();
         task.setId(id);
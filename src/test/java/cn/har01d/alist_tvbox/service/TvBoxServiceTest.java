@@ -7,26 +7,53 @@ import cn.har01d.alist_tvbox.entity.AListAliasRepository;
 import cn.har01d.alist_tvbox.entity.DeviceRepository;
 import cn.har01d.alist_tvbox.entity.DriverAccount;
 import cn.har01d.alist_tvbox.entity.DriverAccountRepository;
+import cn.har01d.alist_tvbox.entity.Meta;
 import cn.har01d.alist_tvbox.entity.MetaRepository;
 import cn.har01d.alist_tvbox.entity.PikPakAccountRepository;
 import cn.har01d.alist_tvbox.entity.ShareRepository;
 import cn.har01d.alist_tvbox.entity.Site;
 import cn.har01d.alist_tvbox.model.FsDetail;
+import cn.har01d.alist_tvbox.tvbox.Category;
+import cn.har01d.alist_tvbox.tvbox.CategoryList;
+import cn.har01d.alist_tvbox.tvbox.MovieDetail;
+import cn.har01d.alist_tvbox.tvbox.MovieList;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.restclient.RestTemplateBuilder;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -73,6 +100,8 @@ class TvBoxServiceTest {
     private cn.har01d.alist_tvbox.service.Index115TvBoxAdapter index115Adapter;
     @Mock
     private PikPakAccountRepository pikPakAccountRepository;
+    @Mock
+    private MetaSearchIndex metaSearchIndex;
 
     private TvBoxService tvBoxService;
 
@@ -101,7 +130,10 @@ class TvBoxServiceTest {
                 proxyService,
                 index115Adapter,
                 new RestTemplateBuilder(),
-                pikPakAccountRepository
+                pikPakAccountRepository,
+                new UpstreamExecutor(),
+                metaSearchIndex,
+                new MetaListCache()
         );
     }
 
@@ -393,4 +425,167 @@ class TvBoxServiceTest {
                 "天才，女友",
                 "T 忝財钕伖");
     }
+
+    @Test
+    void getCategoryListCachesParsedCategoryFileUntilInvalidated(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("category.txt"), "电影\n电视剧:剧集\n");
+        System.setProperty("atv.data.dir", dir.toString());
+        try {
+            Site site = new Site();
+            site.setId(1);
+            site.setName("小雅");
+            site.setSearchable(true);
+            when(siteService.list()).thenReturn(List.of(site));
+
+            CategoryList first = tvBoxService.getCategoryList(0);
+            String etag = tvBoxService.getCategoryETag(0);
+            assertThat(etag).startsWith("W/\"");
+
+            assertThat(tvBoxService.getCategoryList(0)).isSameAs(first);
+            assertThat(tvBoxService.getCategoryETag(0)).isEqualTo(etag);
+            assertThat(first.getCategories()).extracting(Category::getType_name)
+                    .containsExactly("\uD83C\uDFAC小雅", "电影", "剧集");
+            verify(aliasRepository, times(2)).findByPath(anyString());
+
+            tvBoxService.invalidateCategoryCache();
+
+            assertThat(tvBoxService.getCategoryETag(0)).isNotEqualTo(etag);
+            assertThat(tvBoxService.getCategoryList(0)).isNotSameAs(first);
+            verify(aliasRepository, times(4)).findByPath(anyString());
+        } finally {
+            System.clearProperty("atv.data.dir");
+        }
+    }
+
+    @Test
+    void m3u8IsCachedUntilFolderIsModified() {
+        setRequest("192.168.1.2", 4567);
+        Site site = new Site();
+        site.setId(1);
+        FsDetail folder = new FsDetail();
+        folder.setModified("2024-05-15T11:41:45+08:00");
+        when(proxyService.getPath(2)).thenReturn("/电视剧/某剧/01.mp4");
+        when(siteService.getById(1)).thenReturn(site);
+        when(tenantService.valid("/电视剧/某剧")).thenReturn(true);
+        when(aListService.getFile(site, "/电视剧/某剧")).thenReturn(folder);
+        TvBoxService service = spy(tvBoxService);
+        MovieDetail detail = new MovieDetail();
+        detail.setVod_name("某剧");
+        detail.setVod_play_from("某剧");
+        detail.setVod_play_url("01$1@2@0@0#02$1@3@0@1");
+        MovieList playlist = new MovieList();
+        playlist.setList(List.of(detail));
+        doReturn(playlist).when(service).getPlaylist("detail", site, "/电视剧/某剧/01.mp4");
+
+        TvBoxService.M3u8 first = service.m3u8("1$2");
+        TvBoxService.M3u8 second = service.m3u8("1$2");
+        folder.setModified("2024-05-16T08:00:00+08:00");
+        TvBoxService.M3u8 third = service.m3u8("1$2");
+
+        assertThat(first.content()).isEqualTo("#EXTM3U\n#EXTINF:3600000,某剧 01\n1@2@0@0\n#EXTINF:3600000,某剧 02\n1@3@0@1");
+        assertThat(first.lastModified()).isEqualTo(1715744505000L);
+        assertThat(second).isSameAs(first);
+        assertThat(third.etag()).isNotEqualTo(first.etag());
+        verify(service, times(2)).getPlaylist("detail", site, "/电视剧/某剧/01.mp4");
+    }
+
+    @Test
+    void m3u8IsCachedPerClientHostAndToken() {
+        Site site = new Site();
+        site.setId(1);
+        FsDetail folder = new FsDetail();
+        folder.setModified("2024-05-15T11:41:45+08:00");
+        when(proxyService.getPath(2)).thenReturn("/电视剧/某剧/01.mp4");
+        when(siteService.getById(1)).thenReturn(site);
+        when(tenantService.valid("/电视剧/某剧")).thenReturn(true);
+        when(aListService.getFile(site, "/电视剧/某剧")).thenReturn(folder);
+        AtomicReference<String> token = new AtomicReference<>("token-a");
+        when(subscriptionService.getCurrentToken()).thenAnswer(i -> token.get());
+        TvBoxService service = spy(tvBoxService);
+        doAnswer(i -> {
+            String host = ServletUriComponentsBuilder.fromCurrentRequest().replacePath(null).replaceQuery(null).build().toUriString();
+            MovieDetail detail = new MovieDetail();
+            detail.setVod_name("某剧");
+            detail.setVod_play_from("某剧");
+            detail.setVod_play_url("01$" + host + "/p/" + subscriptionService.getCurrentToken() + "/1@2");
+            MovieList playlist = new MovieList();
+            playlist.setList(List.of(detail));
+            return playlist;
+        }).when(service).getPlaylist("detail", site, "/电视剧/某剧/01.mp4");
+
+        setRequest("192.168.1.2", 4567);
+        TvBoxService.M3u8 lan = service.m3u8("1$2");
+        setRequest("tv.example.com", 80);
+        TvBoxService.M3u8 remote = service.m3u8("1$2");
+        token.set("token-b");
+        TvBoxService.M3u8 otherToken = service.m3u8("1$2");
+
+        assertThat(lan.content()).contains("http://192.168.1.2:4567/p/token-a/1@2");
+        assertThat(remote.content()).contains("http://tv.example.com/p/token-a/1@2").doesNotContain("192.168.1.2");
+        assertThat(otherToken.content()).contains("/p/token-b/1@2").doesNotContain("token-a");
+        assertThat(remote.etag()).isNotEqualTo(lan.etag());
+        assertThat(otherToken.etag()).isNotEqualTo(remote.etag());
+    }
+
+    private static void setRequest(String host, int port) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/m3u8/token");
+        request.setScheme("http");
+        request.setServerName(host);
+        request.setServerPort(port);
+        org.springframework.web.context.request.RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @Test
+    void metaListPagesByKeysetWhenSortedByTime() {
+        when(tenantService.valid("/电影")).thenReturn(true);
+        doReturn(Window.from(metas(1, 60), i -> ScrollPosition.offset(), true))
+                .doReturn(Window.from(metas(61, 10), i -> ScrollPosition.offset(), false))
+                .when(metaRepository).findBy(any(Specification.class), any());
+
+        MovieList first = tvBoxService.getMetaList("list", "1$/电影", null, null, 1);
+        MovieList second = tvBoxService.getMetaList("list", "1$/电影", null, null, 2);
+
+        assertThat(first.getList()).hasSize(60);
+        assertThat(first.getPagecount()).isEqualTo(2);
+        assertThat(first.getTotal()).isEqualTo(60);
+        assertThat(second.getList()).hasSize(10);
+        assertThat(second.getPagecount()).isEqualTo(2);
+        assertThat(second.getTotal()).isEqualTo(70);
+        verify(metaRepository, times(2)).findBy(any(Specification.class), any());
+        verify(metaRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+    }
+
+    @Test
+    void metaListUsesOffsetWithoutCursorOrWhenTimeIsMissing() {
+        when(tenantService.valid("/电影")).thenReturn(true);
+        when(metaRepository.findAll(any(Specification.class), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(metas(121, 60), PageRequest.of(2, 60), 200));
+
+        MovieList page = tvBoxService.getMetaList("list", "1$/电影", null, null, 3);
+
+        assertThat(page.getList()).hasSize(60);
+        assertThat(page.getTotal()).isEqualTo(200);
+        assertThat(page.getPagecount()).isEqualTo(5);
+
+        when(metaRepository.existsByTimeIsNull()).thenReturn(true);
+        when(metaRepository.findAll(any(Specification.class), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(metas(1, 60), PageRequest.of(0, 60), 200));
+
+        tvBoxService.getMetaList("list", "1$/电影", "{\"score\":\"high\"}", null, 1);
+
+        verify(metaRepository, never()).findBy(any(Specification.class), any());
+        verify(metaRepository, times(2)).findAll(any(Specification.class), any(Pageable.class));
+    }
+
+    private static List<Meta> metas(int start, int count) {
+        List<Meta> list = new java.util.ArrayList<>();
+        for (int i = start; i < start + count; i++) {
+            Meta meta = new Meta();
+            meta.setId(i);
+            meta.setPath("/电影/movie" + i);
+            meta.setTime(Instant.ofEpochSecond(1_700_000_000L - i));
+            list.add(meta);
+        }
+        return list;
+    }
 }
@@ -0,0 +1,126 @@
+package cn.har01d.alist_tvbox.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UpstreamExecutorTest {
+    private final UpstreamExecutor executor = new UpstreamExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.cleanup();
+    }
+
+    @Test
+    void laneLimitsConcurrency() throws Exception {
+        var lane = executor.lane("test", 2, 100);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger max = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(lane.submit(() -> {
+                max.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(max.get()).isEqualTo(2);
+    }
+
+    @Test
+    void serialLaneRunsTasksInSubmissionOrder() throws Exception {
+        var lane = executor.lane("serial", 1, 100);
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        lane.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            int n = i;
+            futures.add(lane.submit(() -> order.add(n)));
+        }
+        latch.countDown();
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(order).isEqualTo(IntStream.range(0, 50).boxed().toList());
+        assertThat(lane.getStats()).containsEntry("peak", 1).containsEntry("queued", 0);
+    }
+
+    @Test
+    void shutdownNowReturnsQueuedTasks() throws Exception {
+        var lane = executor.lane("drain", 1, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        lane.execute(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await(5, TimeUnit.SECONDS);
+        lane.execute(() -> {
+        });
+        lane.execute(() -> {
+        });
+
+        assertThat(lane.shutdownNow()).hasSize(2);
+        assertThat(lane.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void laneRejectsWhenQueueIsFull() throws Exception {
+        var lane = executor.lane("full", 1, 1);
+        CountDownLatch latch = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        lane.execute(() -> {
+            started.countDown();
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await(5, TimeUnit.SECONDS);
+        lane.execute(() -> {
+        });
+
+        assertThrows(RejectedExecutionException.class, () -> lane.execute(() -> {
+        }));
+        assertThat(lane.getStats()).containsEntry("rejected", 1L);
+        latch.countDown();
+    }
+
+    @Test
+    void sameNameReturnsSameLane() {
+        assertThat(executor.lane("a", 1, 1)).isSameAs(executor.lane("a", 4, 10));
+    }
+}
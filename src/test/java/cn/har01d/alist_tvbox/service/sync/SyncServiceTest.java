@@ -299,6 +299,53 @@ class SyncServiceTest {
         assertEquals(0, result.getFailed());
     }
 
+    @Test
+    void testDiff_OnlyChangedRowsAndTombstones() {
+        // Given
+        Site same = site(2, "Same", "http://same.example.com");
+        Site changed = site(3, "Changed", "http://changed.example.com");
+        Site added = site(4, "Added", "http://added.example.com");
+        when(siteRepository.findAll()).thenReturn(List.of(same, changed));
+        SyncManifest remote = syncService.exportManifest(List.of("sites"));
+        remote.getModules().get("sites").put("http://gone.example.com", "0");
+
+        changed.setName("Changed again");
+        SyncData full = new SyncData();
+        full.setAppVersion("1.0");
+        full.setSites(List.of(site(7, "Same", "http://same.example.com"), changed, added));
+
+        // When
+        SyncData delta = syncService.diff(full, remote.getModules());
+
+        // Then
+        assertEquals(List.of("http://changed.example.com", "http://added.example.com"),
+                delta.getSites().stream().map(Site::getUrl).toList());
+        assertEquals(List.of("http://gone.example.com"), delta.getDeleted().get("sites"));
+    }
+
+    @Test
+    void testImportData_DeltaOverwriteDeletesTombstonesOnly() {
+        // Given
+        Setting versionSetting = new Setting("app_version", "1.0");
+        when(settingRepository.findById("app_version")).thenReturn(Optional.of(versionSetting));
+        Site builtIn = site(1, "AList", "http://127.0.0.1:5244");
+        Site gone = site(2, "Gone", "http://gone.example.com");
+        Site kept = site(3, "Kept", "http://kept.example.com");
+        when(siteRepository.findAll()).thenReturn(List.of(builtIn, gone, kept));
+
+        SyncData data = new SyncData();
+        data.setAppVersion("1.0");
+        data.setSites(List.of());
+        data.setDeleted(Map.of("sites", List.of("http://gone.example.com", "http://127.0.0.1:5244")));
+
+        // When
+        Map<String, SyncResult> results = syncService.importData(data, MergeStrategy.OVERWRITE, false);
+
+        // Then
+        verify(siteRepository).deleteAll(List.of(gone));
+        assertEquals(1, results.get("sites").getDeleted());
+    }
+
     private Site site(Integer id, String name, String url) {
         Site site = new Site();
         site.setId(id);
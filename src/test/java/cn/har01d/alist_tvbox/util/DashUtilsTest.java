@@ -0,0 +1,74 @@
+package cn.har01d.alist_tvbox.util;
+
+import cn.har01d.alist_tvbox.dto.bili.Dash;
+import cn.har01d.alist_tvbox.dto.bili.Data;
+import cn.har01d.alist_tvbox.dto.bili.Media;
+import cn.har01d.alist_tvbox.dto.bili.Resp;
+import cn.har01d.alist_tvbox.dto.bili.Segment;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DashUtilsTest {
+
+    @Test
+    void convertToMpd() {
+        Map<String, Object> map = DashUtils.convert(resp(), List.of("80"), "open");
+
+        String mpd = (String) map.get("mpd");
+        assertEquals("application/dash+xml", map.get("format"));
+        assertTrue(mpd.startsWith("<MPD "));
+        assertTrue(mpd.contains("mediaPresentationDuration=\"PT120S\""));
+        assertTrue(mpd.contains("<Representation id=\"80_7\" bandwidth=\"1000\" codecs=\"avc1\" mimeType=\"video/mp4\" height='1080' width='1920' frameRate='25' sar='1:1' startWithSAP=\"1\">"));
+        assertTrue(mpd.contains("<BaseURL>http://v/1.m4s?a=1&amp;deadline=1700000000</BaseURL>"));
+        assertTrue(mpd.contains("numChannels='2' sampleRate='132000'"));
+        assertFalse(mpd.contains("64_7"));
+        assertTrue(mpd.endsWith("</Period>\n</MPD>"));
+    }
+
+    @Test
+    void getDeadline() {
+        assertEquals(1700000000L, DashUtils.getDeadline(resp()));
+        assertEquals(0L, DashUtils.getDeadline(new Resp()));
+    }
+
+    private Resp resp() {
+        Dash dash = new Dash();
+        dash.setDuration("120");
+        dash.setMinBufferTime("1.5");
+        dash.setVideo(List.of(media("80", "video/mp4", "http://v/1.m4s?a=1&deadline=1700000000"),
+                media("64", "video/mp4", "http://v/2.m4s")));
+        dash.setAudio(List.of(media("30232", "audio/mp4", "http://a/1.m4s")));
+
+        Data data = new Data();
+        data.setDash(dash);
+        data.setAcceptQuality(List.of(80, 64));
+        data.setAcceptDescription(List.of("1080P", "720P"));
+        Resp resp = new Resp();
+        resp.setData(data);
+        return resp;
+    }
+
+    private Media media(String id, String mimeType, String url) {
+        Segment segment = new Segment();
+        segment.setIndexRange("100-200");
+        segment.setInitialization("0-99");
+        Media media = new Media();
+        media.setId(id);
+        media.setMimeType(mimeType);
+        media.setBaseUrl(url);
+        media.setBandwidth("1000");
+        media.setCodecs("avc1");
+        media.setCodecid("7");
+        media.setWidth("1920");
+        media.setHeight("1080");
+        media.setFrameRate("25");
+        media.setSar("1:1");
+        media.setStartWithSap("1");
+        media.setSegmentBase(segment);
+        return media;
+    }
+}
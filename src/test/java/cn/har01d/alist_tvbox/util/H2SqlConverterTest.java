@@ -11,6 +11,7 @@ import java.nio.file.Path;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class H2SqlConverterTest {
@@ -154,6 +155,34 @@ class H2SqlConverterTest {
         assertEquals(Dialect.H2, H2SqlConverter.detect(new MockEnvironment()));
     }
 
+    @Test
+    void toShadow_redirectsMovieAndAliasOnly() {
+        String shadow = H2SqlConverter.toShadow(DELETE);
+        assertEquals("DELETE FROM \"PUBLIC\".\"MOVIE_SHADOW\" WHERE id = 38433264;", shadow);
+        assertEquals("DELETE FROM movie_shadow WHERE id = 38433264", H2SqlConverter.convert(shadow, Dialect.MYSQL));
+        assertEquals(META_INSERT, H2SqlConverter.toShadow(META_INSERT));
+        assertEquals("CREATE INDEX X ON \"PUBLIC\".\"MOVIE\"(NAME);",
+                H2SqlConverter.toShadow("CREATE INDEX X ON \"PUBLIC\".\"MOVIE\"(NAME);"));
+    }
+
+    @Test
+    void toShadow_redirectsUpdatesAndRejectsOtherLiveWrites() {
+        String update = "UPDATE \"PUBLIC\".\"MOVIE\" SET DB_SCORE = '85' WHERE ID = 1;";
+        assertEquals("UPDATE \"PUBLIC\".\"MOVIE_SHADOW\" SET DB_SCORE = '85' WHERE ID = 1;", H2SqlConverter.toShadow(update));
+        assertEquals("UPDATE movie_shadow SET DB_SCORE = '85' WHERE ID = 1",
+                H2SqlConverter.convert(H2SqlConverter.toShadow(update), Dialect.POSTGRESQL));
+        assertThrows(IllegalArgumentException.class, () -> H2SqlConverter.toShadow("UPDATE movie SET name = 'x';"));
+        assertThrows(IllegalArgumentException.class, () -> H2SqlConverter.toShadow("TRUNCATE TABLE \"PUBLIC\".\"ALIAS\";"));
+        assertEquals("UPDATE \"PUBLIC\".\"META\" SET SCORE = 1;", H2SqlConverter.toShadow("UPDATE \"PUBLIC\".\"META\" SET SCORE = 1;"));
+    }
+
+    @Test
+    void toShadow_keepsColumnListForShadowInsert() {
+        String sql = H2SqlConverter.convert(H2SqlConverter.toShadow(MOVIE_INSERT), Dialect.POSTGRESQL);
+        assertTrue(sql.startsWith("INSERT INTO movie_shadow (id,actors,country,cover,db_score,description,"
+                + "directors,editors,genre,language,name,\"year\") VALUES("), sql);
+    }
+
     /**
      * Smoke test against the real xiaoya-douban export. Enabled only when
      * {@code -Datv.data.sql=/abs/path/to/data.sql} points at the file, so it is a
@@ -2,6 +2,7 @@ package cn.har01d.alist_tvbox.web;
 
 import cn.har01d.alist_tvbox.config.RestErrorHandler;
 import cn.har01d.alist_tvbox.exception.BadRequestException;
+import cn.har01d.alist_tvbox.service.PluginContentCache;
 import cn.har01d.alist_tvbox.service.PluginService;
 import cn.har01d.alist_tvbox.service.SubscriptionService;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,10 +15,12 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,7 +34,7 @@ class PluginContentControllerTest {
 
     @BeforeEach
     void setUp() {
-        PluginContentController controller = new PluginContentController(subscriptionService, pluginService);
+        PluginContentController controller = new PluginContentController(subscriptionService, pluginService, new PluginContentCache());
         mockMvc = MockMvcBuilders.standaloneSetup(controller)
                 .setControllerAdvice(new RestErrorHandler())
                 .build();
@@ -50,6 +53,25 @@ class PluginContentControllerTest {
         verify(pluginService).readContent(7);
     }
 
+    @Test
+    void contentShouldBeCachedAndRevalidatedWithETag() throws Exception {
+        when(pluginService.readContent(7)).thenReturn("var spider = {};\n".repeat(200));
+
+        String etag = mockMvc.perform(get("/plugins/test-token/7.txt").header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/plugins/test-token/7.txt").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/plugins/test-token/7.txt"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string("var spider = {};\n".repeat(200)));
+
+        verify(pluginService, times(1)).readContent(7);
+    }
+
     @Test
     void pythonContentShouldNotReadPluginWhenTokenIsRejected() throws Exception {
         doThrow(new BadRequestException("Token不正确"))
@@ -21,6 +21,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -63,7 +64,7 @@ class TvBoxControllerTest {
 
     @Test
     void m3u8ShouldReadIdQueryParameter() throws Exception {
-        when(tvBoxService.m3u8("1$2$3")).thenReturn("#EXTM3U");
+        when(tvBoxService.m3u8("1$2$3")).thenReturn(new TvBoxService.M3u8("#EXTM3U", null, -1));
 
         mockMvc.perform(get("/m3u8/test-token").param("id", "1$2$3"))
                 .andExpect(status().isOk())
@@ -72,4 +73,16 @@ class TvBoxControllerTest {
         verify(subscriptionService).checkToken("test-token");
         verify(tvBoxService).m3u8("1$2$3");
     }
+
+    @Test
+    void m3u8ShouldReturnNotModifiedForMatchingETag() throws Exception {
+        when(tvBoxService.m3u8("1$2$3")).thenReturn(new TvBoxService.M3u8("#EXTM3U", "\"abc\"", 1700000000000L));
+
+        mockMvc.perform(get("/m3u8/test-token").param("id", "1$2$3").header("If-None-Match", "\"abc\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/m3u8/test-token").param("id", "1$2$3"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc\""))
+                .andExpect(content().string("#EXTM3U"));
+    }
 }